@@ -0,0 +1,30 @@
+package cmsc433.p4.messages;
+
+import cmsc433.p4.enums.AccessRequestRejectionReason;
+
+/**
+ * Answer to an access request the manager gave up on, for reasons outside the
+ * usual denial reasons.  The user holds nothing for it.
+ */
+public class AccessRequestRejectedMsg {
+	private final AccessRequestMsg request;
+	private final AccessRequestRejectionReason reason;
+	
+	public AccessRequestRejectedMsg (AccessRequestMsg request, AccessRequestRejectionReason reason) {
+		this.request = request;
+		this.reason = reason;
+	}
+	
+	public AccessRequestMsg getRequest () {
+		return request;
+	}
+	
+	public AccessRequestRejectionReason getReason () {
+		return reason;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Rejected: " + request + " (" + reason + ")";
+	}
+}
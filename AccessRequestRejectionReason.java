@@ -0,0 +1,10 @@
+package cmsc433.p4.enums;
+
+/**
+ * Why a manager gave up on an access request, for reasons outside the usual
+ * denial reasons.
+ */
+public enum AccessRequestRejectionReason {
+	WAIT_TIMEOUT,		// Still queued when the request's maximum wait ran out
+	OVERLOADED			// Would have been queued, but a queue limit was reached
+}
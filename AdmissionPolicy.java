@@ -0,0 +1,11 @@
+package cmsc433.p4.enums;
+
+/**
+ * Order in which a resource manager admits blocked access requests once the
+ * current holders release a resource.
+ */
+public enum AdmissionPolicy {
+	FIFO,				// Grant the head of the queue and any reads directly behind it
+	READER_BATCH,		// Additionally grant every queued read that is compatible, even behind a write
+	WRITER_PREFERRED	// Grant the oldest queued write first; new reads wait while writes are queued
+}
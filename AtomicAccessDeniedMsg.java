@@ -0,0 +1,52 @@
+package cmsc433.p4.messages;
+
+import cmsc433.p4.enums.AccessRequestDenialReason;
+import cmsc433.p4.enums.AccessRequestRejectionReason;
+import cmsc433.p4.util.AccessRequest;
+
+/**
+ * An AtomicAccessRequestMsg could not be granted as a whole.  Anything already
+ * acquired for it has been released again.
+ */
+public class AtomicAccessDeniedMsg {
+	private final AtomicAccessRequestMsg request;
+	private final AccessRequest failed;			// First request that was denied
+	private final AccessRequestDenialReason reason;
+	private final AccessRequestRejectionReason rejection;	// Why the failed request was shed, or null
+	
+	public AtomicAccessDeniedMsg (AtomicAccessRequestMsg request, AccessRequest failed, AccessRequestDenialReason reason) {
+		this(request, failed, reason, null);
+	}
+	
+	public AtomicAccessDeniedMsg (AtomicAccessRequestMsg request, AccessRequest failed, AccessRequestDenialReason reason,
+			AccessRequestRejectionReason rejection) {
+		this.request = request;
+		this.failed = failed;
+		this.reason = reason;
+		this.rejection = rejection;
+	}
+	
+	public AtomicAccessRequestMsg getRequest () {
+		return request;
+	}
+	
+	public AccessRequest getFailedRequest () {
+		return failed;
+	}
+	
+	public AccessRequestDenialReason getReason () {
+		return reason;
+	}
+	
+	/**
+	 * @return  OVERLOADED if a queue limit shed the failed request, so it is worth retrying later; otherwise null
+	 */
+	public AccessRequestRejectionReason getRejection () {
+		return rejection;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Denied: " + request + " (" + (rejection == null ? reason : rejection) + ")";
+	}
+}
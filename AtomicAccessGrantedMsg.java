@@ -0,0 +1,22 @@
+package cmsc433.p4.messages;
+
+/**
+ * Every request of an AtomicAccessRequestMsg has been granted.  Each resource
+ * is released on its own with an AccessReleaseMsg, as usual.
+ */
+public class AtomicAccessGrantedMsg {
+	private final AtomicAccessRequestMsg request;
+	
+	public AtomicAccessGrantedMsg (AtomicAccessRequestMsg request) {
+		this.request = request;
+	}
+	
+	public AtomicAccessRequestMsg getRequest () {
+		return request;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Granted: " + request;
+	}
+}
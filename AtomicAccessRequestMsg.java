@@ -0,0 +1,37 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import akka.actor.ActorRef;
+import cmsc433.p4.util.AccessRequest;
+
+/**
+ * Asks for a set of resources, possibly owned by different managers, as one
+ * unit: either every request is granted or none is held.  The manager takes
+ * the resources in a fixed global order so that two such requests can never
+ * wait on each other.  Answered with AtomicAccessGrantedMsg or AtomicAccessDeniedMsg.
+ */
+public class AtomicAccessRequestMsg {
+	private final List<AccessRequest> requests;
+	private final ActorRef replyTo;
+	
+	public AtomicAccessRequestMsg (List<AccessRequest> requests, ActorRef replyTo) {
+		this.requests = Collections.unmodifiableList(new ArrayList<AccessRequest>(requests));
+		this.replyTo = replyTo;
+	}
+	
+	public List<AccessRequest> getRequests () {
+		return requests;
+	}
+	
+	public ActorRef getReplyTo () {
+		return replyTo;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Atomic request for " + requests.size() + " resources";
+	}
+}
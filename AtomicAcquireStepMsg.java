@@ -0,0 +1,44 @@
+package cmsc433.p4.messages;
+
+import akka.actor.ActorRef;
+import cmsc433.p4.util.AccessRequest;
+
+/**
+ * One resource of an atomic acquisition, sent by the coordinating manager to
+ * the manager owning the resource.  Access is granted to the holder, but the
+ * outcome is reported to the coordinator with an AtomicAcquireStepResultMsg.
+ */
+public class AtomicAcquireStepMsg {
+	private final long transactionId;
+	private final AccessRequest request;
+	private final ActorRef holder;
+	private final ActorRef coordinator;
+	
+	public AtomicAcquireStepMsg (long transactionId, AccessRequest request, ActorRef holder, ActorRef coordinator) {
+		this.transactionId = transactionId;
+		this.request = request;
+		this.holder = holder;
+		this.coordinator = coordinator;
+	}
+	
+	public long getTransactionId () {
+		return transactionId;
+	}
+	
+	public AccessRequest getRequest () {
+		return request;
+	}
+	
+	public ActorRef getHolder () {
+		return holder;
+	}
+	
+	public ActorRef getCoordinator () {
+		return coordinator;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Step " + transactionId + ": " + request;
+	}
+}
@@ -0,0 +1,54 @@
+package cmsc433.p4.messages;
+
+import cmsc433.p4.enums.AccessRequestDenialReason;
+import cmsc433.p4.enums.AccessRequestRejectionReason;
+import cmsc433.p4.util.AccessRequest;
+
+/**
+ * Outcome of an AtomicAcquireStepMsg, sent to the coordinating manager.
+ */
+public class AtomicAcquireStepResultMsg {
+	private final long transactionId;
+	private final AccessRequest request;
+	private final AccessRequestDenialReason reason;	// null if the step was granted
+	private final AccessRequestRejectionReason rejection;	// Why a denied step was shed, or null
+	
+	public AtomicAcquireStepResultMsg (AtomicAcquireStepMsg step, AccessRequestDenialReason reason) {
+		this(step, reason, null);
+	}
+	
+	public AtomicAcquireStepResultMsg (AtomicAcquireStepMsg step, AccessRequestDenialReason reason, AccessRequestRejectionReason rejection) {
+		this.transactionId = step.getTransactionId();
+		this.request = step.getRequest();
+		this.reason = reason;
+		this.rejection = rejection;
+	}
+	
+	public long getTransactionId () {
+		return transactionId;
+	}
+	
+	public AccessRequest getRequest () {
+		return request;
+	}
+	
+	public boolean isGranted () {
+		return reason == null;
+	}
+	
+	public AccessRequestDenialReason getReason () {
+		return reason;
+	}
+	
+	/**
+	 * @return  OVERLOADED if a queue limit shed the step, otherwise null
+	 */
+	public AccessRequestRejectionReason getRejection () {
+		return rejection;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Step " + transactionId + (reason == null ? " granted" : " denied (" + (rejection == null ? reason : rejection) + ")");
+	}
+}
@@ -0,0 +1,68 @@
+package cmsc433.p4.actors;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import cmsc433.p4.enums.*;
+import cmsc433.p4.messages.*;
+import cmsc433.p4.util.*;
+
+/**
+ * Progress of an atomic multi-resource acquisition coordinated by this manager.
+ * Requests are taken one at a time in canonical order, and each is only sent
+ * once the previous one is held.
+ */
+class AtomicAcquisition {
+
+	/**
+	 * Global acquisition order: by resource name, and for the same resource a
+	 * write before a read so the write never waits on the holder's own read.
+	 */
+	static final Comparator<AccessRequest> CANONICAL_ORDER = new Comparator<AccessRequest>() {
+		public int compare(AccessRequest a, AccessRequest b) {
+			int byName = a.getResourceName().compareTo(b.getResourceName());
+			if(byName != 0)
+			{
+				return byName;
+			}
+			return Boolean.compare(isRead(a), isRead(b));
+		}
+	};
+
+	final long transactionId;
+	final AtomicAccessRequestMsg requestMsg;
+	final ArrayList<AccessRequest> ordered;
+	final ArrayList<AccessRequest> acquired = new ArrayList<AccessRequest>();	// Held so far, for rollback
+
+	/**
+	 * Constructor
+	 *
+	 * @param transactionId		Id carried by every step
+	 * @param requestMsg		User's request
+	 */
+	AtomicAcquisition(long transactionId, AtomicAccessRequestMsg requestMsg) {
+		this.transactionId = transactionId;
+		this.requestMsg = requestMsg;
+		this.ordered = new ArrayList<AccessRequest>(requestMsg.getRequests());
+		Collections.sort(ordered, CANONICAL_ORDER);
+	}
+
+	/**
+	 * @return  the next request to acquire, or null once all are held
+	 */
+	AccessRequest next() {
+		return acquired.size() < ordered.size() ? ordered.get(acquired.size()) : null;
+	}
+
+	static boolean isRead(AccessRequest request) {
+		return request.getType() == AccessRequestType.CONCURRENT_READ_BLOCKING ||
+				request.getType() == AccessRequestType.CONCURRENT_READ_NONBLOCKING;
+	}
+
+	/**
+	 * @param request			Granted request
+	 * @return					the release that gives it back
+	 */
+	static AccessRelease releaseOf(AccessRequest request) {
+		return new AccessRelease(request.getResourceName(), isRead(request) ? AccessType.CONCURRENT_READ : AccessType.EXCLUSIVE_WRITE);
+	}
+}
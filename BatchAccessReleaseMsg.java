@@ -0,0 +1,35 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import akka.actor.ActorRef;
+import cmsc433.p4.util.AccessRelease;
+
+/**
+ * Several access releases from one user, handled by a resource manager in a
+ * single step.
+ */
+public class BatchAccessReleaseMsg {
+	private final List<AccessRelease> releases;
+	private final ActorRef sender;
+	
+	public BatchAccessReleaseMsg (List<AccessRelease> releases, ActorRef sender) {
+		this.releases = Collections.unmodifiableList(new ArrayList<AccessRelease>(releases));
+		this.sender = sender;
+	}
+	
+	public List<AccessRelease> getReleases () {
+		return releases;
+	}
+	
+	public ActorRef getSender () {
+		return sender;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Batch of " + releases.size() + " access releases";
+	}
+}
@@ -0,0 +1,53 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import akka.actor.ActorRef;
+import cmsc433.p4.util.AccessRequest;
+
+/**
+ * Several access requests from one user, handled by a resource manager in a
+ * single step.  The user gets one BatchAccessResultMsg back; requests that had
+ * to be queued, or whose resource had to be discovered first, are answered
+ * later with the usual AccessRequestGrantedMsg or AccessRequestDeniedMsg.
+ */
+public class BatchAccessRequestMsg {
+	private final List<AccessRequest> requests;
+	private final ActorRef replyTo;
+	private final long batchId;					// Set when one manager forwards part of a batch to another
+	private final ActorRef aggregator;			// Manager collecting the parts, or null
+	
+	public BatchAccessRequestMsg (List<AccessRequest> requests, ActorRef replyTo) {
+		this(requests, replyTo, 0, null);
+	}
+	
+	public BatchAccessRequestMsg (List<AccessRequest> requests, ActorRef replyTo, long batchId, ActorRef aggregator) {
+		this.requests = Collections.unmodifiableList(new ArrayList<AccessRequest>(requests));
+		this.replyTo = replyTo;
+		this.batchId = batchId;
+		this.aggregator = aggregator;
+	}
+	
+	public List<AccessRequest> getRequests () {
+		return requests;
+	}
+	
+	public ActorRef getReplyTo () {
+		return replyTo;
+	}
+	
+	public long getBatchId () {
+		return batchId;
+	}
+	
+	public ActorRef getAggregator () {
+		return aggregator;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Batch of " + requests.size() + " access requests";
+	}
+}
@@ -0,0 +1,90 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import akka.actor.ActorRef;
+import cmsc433.p4.enums.AccessRequestDenialReason;
+import cmsc433.p4.enums.AccessRequestRejectionReason;
+import cmsc433.p4.util.AccessRequest;
+
+/**
+ * Answer to a BatchAccessRequestMsg.  Every request of the batch appears in
+ * exactly one list.  Pending requests were queued behind other users or sent
+ * off for discovery, and are answered individually when they are decided.
+ * Rejected requests were shed by a queue limit and are worth retrying later.
+ */
+public class BatchAccessResultMsg {
+	private final long batchId;
+	private final List<AccessRequest> granted;
+	private final List<AccessRequest> denied;
+	private final List<AccessRequestDenialReason> denialReasons;	// Parallel to denied
+	private final List<AccessRequest> pending;
+	private final List<AccessRequest> rejected;
+	private final List<AccessRequestRejectionReason> rejectionReasons;	// Parallel to rejected
+	private final ActorRef user;				// User the requests belong to, or null
+	
+	public BatchAccessResultMsg (long batchId, List<AccessRequest> granted, List<AccessRequest> denied,
+			List<AccessRequestDenialReason> denialReasons, List<AccessRequest> pending) {
+		this(batchId, granted, denied, denialReasons, pending,
+				Collections.<AccessRequest>emptyList(), Collections.<AccessRequestRejectionReason>emptyList());
+	}
+	
+	public BatchAccessResultMsg (long batchId, List<AccessRequest> granted, List<AccessRequest> denied,
+			List<AccessRequestDenialReason> denialReasons, List<AccessRequest> pending,
+			List<AccessRequest> rejected, List<AccessRequestRejectionReason> rejectionReasons) {
+		this(batchId, granted, denied, denialReasons, pending, rejected, rejectionReasons, null);
+	}
+	
+	public BatchAccessResultMsg (long batchId, List<AccessRequest> granted, List<AccessRequest> denied,
+			List<AccessRequestDenialReason> denialReasons, List<AccessRequest> pending,
+			List<AccessRequest> rejected, List<AccessRequestRejectionReason> rejectionReasons, ActorRef user) {
+		this.batchId = batchId;
+		this.granted = Collections.unmodifiableList(new ArrayList<AccessRequest>(granted));
+		this.denied = Collections.unmodifiableList(new ArrayList<AccessRequest>(denied));
+		this.denialReasons = Collections.unmodifiableList(new ArrayList<AccessRequestDenialReason>(denialReasons));
+		this.pending = Collections.unmodifiableList(new ArrayList<AccessRequest>(pending));
+		this.rejected = Collections.unmodifiableList(new ArrayList<AccessRequest>(rejected));
+		this.rejectionReasons = Collections.unmodifiableList(new ArrayList<AccessRequestRejectionReason>(rejectionReasons));
+		this.user = user;
+	}
+	
+	public long getBatchId () {
+		return batchId;
+	}
+	
+	public List<AccessRequest> getGranted () {
+		return granted;
+	}
+	
+	public List<AccessRequest> getDenied () {
+		return denied;
+	}
+	
+	public List<AccessRequestDenialReason> getDenialReasons () {
+		return denialReasons;
+	}
+	
+	public List<AccessRequest> getPending () {
+		return pending;
+	}
+	
+	public List<AccessRequest> getRejected () {
+		return rejected;
+	}
+	
+	public List<AccessRequestRejectionReason> getRejectionReasons () {
+		return rejectionReasons;
+	}
+	
+	public ActorRef getUser () {
+		return user;
+	}
+	
+	@Override 
+	public String toString () {
+		return granted.size() + " granted, " + denied.size() + " denied, " + pending.size() + " pending, "
+				+ rejected.size() + " rejected";
+	}
+}
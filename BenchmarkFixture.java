@@ -0,0 +1,135 @@
+package cmsc433.p4.bench;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import cmsc433.p4.actors.ResourceManagerActor;
+import cmsc433.p4.actors.ResourceManagerSettings;
+import cmsc433.p4.enums.*;
+import cmsc433.p4.messages.*;
+import cmsc433.p4.util.*;
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+
+/**
+ * Shared setup of the manager benchmarks: a logger that drops everything, so
+ * the logger never is the bottleneck being measured, and blocking helpers
+ * that wait for a manager's replies on the benchmark thread.
+ */
+final class BenchmarkFixture {
+
+	private static final long REPLY_TIMEOUT_SECONDS = 10;
+
+	/**
+	 * Logger that drops every message.
+	 */
+	public static final class NullLogger extends AbstractActor {
+		@Override
+		public Receive createReceive() {
+			return receiveBuilder()
+					.matchAny(msg -> {
+					})
+					.build();
+		}
+	}
+
+	private BenchmarkFixture() {
+	}
+
+	static ActorRef nullLogger(ActorSystem system) {
+		return system.actorOf(Props.create(NullLogger.class));
+	}
+
+	/**
+	 * Creates managers and introduces them to each other and to their resources
+	 * @param system			System to create the managers in
+	 * @param settings			Settings of every manager
+	 * @param resources			Names of each manager's resources, one list per manager
+	 * @param probe				User the setup replies go to
+	 * @param replies			Queue the probe reports to
+	 * @return					the managers, in the order of the resource lists
+	 */
+	static List<ActorRef> managers(ActorSystem system, ResourceManagerSettings settings, List<List<String>> resources,
+			ActorRef probe, BlockingQueue<Object> replies) throws InterruptedException {
+		ActorRef logger = nullLogger(system);
+		ArrayList<ActorRef> managers = new ArrayList<ActorRef>();
+		for(int i = 0; i < resources.size(); i++)
+		{
+			managers.add(ResourceManagerActor.makeResourceManager(logger, system, settings));
+		}
+		for(int i = 0; i < managers.size(); i++)
+		{
+			ArrayList<ActorRef> peers = new ArrayList<ActorRef>(managers);
+			peers.remove(i);
+			managers.get(i).tell(new AddRemoteManagersRequestMsg(peers, probe), probe);
+			await(replies, AddRemoteManagersResponseMsg.class);
+			managers.get(i).tell(new AddLocalUsersRequestMsg(Collections.singletonList(probe), probe), probe);
+			await(replies, AddLocalUsersResponseMsg.class);
+			reset(managers.get(i), resources.get(i), probe, replies);
+		}
+		return managers;
+	}
+
+	/**
+	 * Replaces a manager's resources with fresh, enabled ones, dropping every
+	 * holder and queued request
+	 */
+	static void reset(ActorRef manager, List<String> names, ActorRef probe, BlockingQueue<Object> replies) throws InterruptedException {
+		ArrayList<Resource> resources = new ArrayList<Resource>();
+		for(String name : names)
+		{
+			resources.add(new Resource(name));
+		}
+		manager.tell(new AddInitialLocalResourcesRequestMsg(resources, probe), probe);
+		await(replies, AddInitialLocalResourcesResponseMsg.class);
+	}
+
+	/**
+	 * Waits until a manager has handled everything sent to it from this thread
+	 * so far, by asking for a queue depth and waiting for the answer
+	 * @return					requests queued for the resource
+	 */
+	static int sync(ActorRef manager, String resourceName, ActorRef probe, BlockingQueue<Object> replies) throws InterruptedException {
+		manager.tell(new QueueDepthRequestMsg(resourceName, probe), ActorRef.noSender());
+		return await(replies, QueueDepthResponseMsg.class).getResourceDepth();
+	}
+
+	/**
+	 * Sends an access request on behalf of a user
+	 */
+	static void request(ActorRef manager, ActorRef user, String resourceName, AccessRequestType type) {
+		manager.tell(new AccessRequestMsg(new AccessRequest(resourceName, type), user), ActorRef.noSender());
+	}
+
+	/**
+	 * Sends a release on behalf of a user
+	 */
+	static void release(ActorRef manager, ActorRef user, String resourceName, AccessType type) {
+		manager.tell(new AccessReleaseMsg(new AccessRelease(resourceName, type), user), ActorRef.noSender());
+	}
+
+	/**
+	 * @return  the release giving back what a granted request acquired
+	 */
+	static AccessRelease releaseOf(AccessRequest request) {
+		AccessRequestType type = request.getType();
+		boolean read = (type == AccessRequestType.CONCURRENT_READ_BLOCKING || type == AccessRequestType.CONCURRENT_READ_NONBLOCKING);
+		return new AccessRelease(request.getResourceName(), read ? AccessType.CONCURRENT_READ : AccessType.EXCLUSIVE_WRITE);
+	}
+
+	/**
+	 * Takes the next reply from a queue, which must be of the expected type
+	 * @throws IllegalStateException if no reply comes in time, or another reply does
+	 */
+	static <T> T await(BlockingQueue<Object> replies, Class<T> type) throws InterruptedException {
+		Object reply = replies.poll(REPLY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		if(!type.isInstance(reply))
+		{
+			throw new IllegalStateException("Expected " + type.getSimpleName() + " but got " + reply);
+		}
+		return type.cast(reply);
+	}
+}
@@ -0,0 +1,36 @@
+package cmsc433.p4.bench;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the manager benchmarks with the GC profiler, which adds the allocation
+ * rate and bytes allocated per operation to the throughput and the latency
+ * percentiles of every benchmark.
+ *
+ * The benchmarks are compiled with the rest of the sources.  JMH's annotation
+ * processor generates the benchmark classes and META-INF/BenchmarkList while
+ * they compile.  Put these on the class path CP: the project's dependencies
+ * (Akka and the cmsc433.p4 util classes), jmh-core, jmh-generator-annprocess,
+ * jopt-simple and commons-math3.  Then, from the source directory:
+ *
+ *   javac -cp "$CP" -processor org.openjdk.jmh.generators.BenchmarkProcessor -d bench-classes *.java
+ *   java -cp "bench-classes:$CP" cmsc433.p4.bench.BenchmarkRunner [regexp of benchmarks to run]
+ *
+ * JMH forks the measured JVMs with the same class path.
+ */
+public final class BenchmarkRunner {
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : "cmsc433\\.p4\\.bench\\..*")
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,46 @@
+package cmsc433.p4.bench;
+import java.util.concurrent.BlockingQueue;
+import cmsc433.p4.enums.*;
+import cmsc433.p4.messages.*;
+import cmsc433.p4.util.*;
+import akka.actor.AbstractActor;
+import akka.actor.Props;
+
+/**
+ * User actor driven by a benchmark thread.  Every reply it receives is handed
+ * to the thread through a queue; the queue is the only state shared with the
+ * actor and is only used by the benchmarks, never between actors.  A releasing
+ * user gives back each grant to the manager that sent it before reporting it,
+ * so a queue of them drains on its own.
+ */
+public class BenchmarkUser extends AbstractActor {
+
+	private final BlockingQueue<Object> replies;
+	private final boolean releasing;
+
+	static Props props(BlockingQueue<Object> replies, boolean releasing) {
+		return Props.create(BenchmarkUser.class, replies, releasing);
+	}
+
+	public BenchmarkUser(BlockingQueue<Object> replies, boolean releasing) {
+		this.replies = replies;
+		this.releasing = releasing;
+	}
+
+	@Override
+	public Receive createReceive() {
+		return receiveBuilder()
+				.match(AccessRequestGrantedMsg.class, this::granted)
+				.matchAny(replies::add)
+				.build();
+	}
+
+	private void granted(AccessRequestGrantedMsg msg) {
+		if(releasing)
+		{
+			AccessRequest request = msg.getAccessRequest();
+			getSender().tell(new AccessReleaseMsg(BenchmarkFixture.releaseOf(request), getSelf()), getSelf());
+		}
+		replies.add(msg);
+	}
+}
@@ -0,0 +1,239 @@
+package cmsc433.p4.actors;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import cmsc433.p4.enums.*;
+import akka.actor.ActorRef;
+
+/**
+ * Append-only audit trail of a manager's log events, written as fixed-size
+ * binary records into memory-mapped segment files.  Resource names and actor
+ * paths are interned: each distinct string is written once to a dictionary
+ * file and records refer to it by number.  Appending an event whose strings
+ * have been seen before allocates nothing.  Reopening a directory continues
+ * where the previous writer stopped, so the trail survives manager restarts.
+ * BinaryEventLogDecoder turns a directory back into text.
+ *
+ * Record layout, 24 bytes, big-endian:
+ * <pre>
+ *   0  byte   event type code (0 marks unused space)
+ *   1  byte   request type, ordinal + 1, or 0
+ *   2  byte   denial reason or resource status, ordinal + 1, or 0
+ *   3  byte   unused
+ *   4  int    resource id
+ *   8  int    actor id (user, or the other manager of forward and discovery events)
+ *  12  int    manager id
+ *  16  long   System.currentTimeMillis()
+ * </pre>
+ * String id 0 stands for none.
+ */
+class BinaryEventLog {
+
+	static final int RECORD_SIZE = 24;
+	static final String DICTIONARY_FILE = "strings.dict";
+	static final String SEGMENT_PREFIX = "segment-";
+	static final String SEGMENT_SUFFIX = ".bin";
+
+	private final File directory;
+	private final int segmentRecords;
+	private final HashMap<String, Integer> stringIds = new HashMap<String, Integer>();
+	private final HashMap<ActorRef, Integer> actorIds = new HashMap<ActorRef, Integer>();
+	private final DataOutputStream dictionary;
+	private int segmentIndex;
+	private MappedByteBuffer segment;
+
+	/**
+	 * Opens or creates an audit log
+	 *
+	 * @param directory			Directory holding this log's files; one log per directory
+	 * @param segmentBytes		Size of each segment file, rounded down to whole records
+	 * @throws IOException		if the files cannot be read, created or mapped
+	 */
+	BinaryEventLog(File directory, int segmentBytes) throws IOException {
+		this.directory = directory;
+		this.segmentRecords = Math.max(1, segmentBytes / RECORD_SIZE);
+		if(!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Cannot create " + directory);
+		}
+
+		File dictionaryFile = new File(directory, DICTIONARY_FILE);
+		for(String value : readDictionary(dictionaryFile, true))
+		{
+			stringIds.put(value, stringIds.size() + 1);
+		}
+		this.dictionary = new DataOutputStream(new FileOutputStream(dictionaryFile, true));
+
+		//continue in the newest segment, after its last record
+		segmentIndex = 0;
+		while(segmentFile(directory, segmentIndex + 1).exists())
+		{
+			segmentIndex++;
+		}
+		segment = map(segmentIndex);
+		segment.position(firstFreeRecord(segment) * RECORD_SIZE);
+	}
+
+	/**
+	 * Appends one event
+	 * @param event				Event type
+	 * @param kind				Request type code, ordinal + 1, or 0
+	 * @param detail			Reason or status code, ordinal + 1, or 0
+	 * @param resourceName		Resource the event is about, or null
+	 * @param actor				User or other manager involved, or null
+	 * @param manager			Manager logging the event
+	 */
+	void append(LogEventType event, int kind, int detail, String resourceName, ActorRef actor, ActorRef manager) {
+		try
+		{
+			int resourceId = (resourceName == null) ? 0 : intern(resourceName);
+			int actorId = idOf(actor);
+			int managerId = idOf(manager);
+			if(!segment.hasRemaining())
+			{
+				segment = map(++segmentIndex);
+			}
+			segment.put((byte) event.code);
+			segment.put((byte) kind);
+			segment.put((byte) detail);
+			segment.put((byte) 0);
+			segment.putInt(resourceId);
+			segment.putInt(actorId);
+			segment.putInt(managerId);
+			segment.putLong(System.currentTimeMillis());
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Forces written records to disk and closes the dictionary
+	 */
+	void close() {
+		segment.force();
+		try
+		{
+			dictionary.close();
+		}
+		catch(IOException e)
+		{
+			System.out.println("Error closing audit log: " + e);
+		}
+	}
+
+	private int idOf(ActorRef actor) throws IOException {
+		if(actor == null)
+		{
+			return 0;
+		}
+		Integer id = actorIds.get(actor);
+		if(id == null)
+		{
+			id = intern(actor.path().toString());
+			actorIds.put(actor, id);
+		}
+		return id;
+	}
+
+	private int intern(String value) throws IOException {
+		Integer id = stringIds.get(value);
+		if(id == null)
+		{
+			//written before any record uses it, so a decoder always finds it
+			id = stringIds.size() + 1;
+			dictionary.writeUTF(value);
+			dictionary.flush();
+			stringIds.put(value, id);
+		}
+		return id;
+	}
+
+	private MappedByteBuffer map(int index) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(segmentFile(directory, index), "rw");
+		try
+		{
+			//the mapping stays valid after the file is closed
+			return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE);
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	/**
+	 * Records are written in order and unused space is zero, so the used part
+	 * of a segment is found by binary search on the type byte.
+	 */
+	private int firstFreeRecord(MappedByteBuffer buffer) {
+		int low = 0;
+		int high = buffer.capacity() / RECORD_SIZE;
+		while(low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if(buffer.get(mid * RECORD_SIZE) != 0)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	static File segmentFile(File directory, int index) {
+		return new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+	}
+
+	/**
+	 * @param file				Dictionary file, which may not exist yet
+	 * @param repair			true to cut off a torn last entry left by a crash
+	 * @return					its strings in id order, id 1 first
+	 * @throws IOException		if the file cannot be read
+	 */
+	static ArrayList<String> readDictionary(File file, boolean repair) throws IOException {
+		ArrayList<String> values = new ArrayList<String>();
+		if(!file.exists())
+		{
+			return values;
+		}
+		RandomAccessFile in = new RandomAccessFile(file, repair ? "rw" : "r");
+		try
+		{
+			long valid = 0;
+			try
+			{
+				while(true)
+				{
+					values.add(in.readUTF());
+					valid = in.getFilePointer();
+				}
+			}
+			catch(EOFException e)
+			{
+				//end of the dictionary, possibly inside a torn entry
+			}
+			if(repair && valid < in.length())
+			{
+				in.setLength(valid);
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+		return values;
+	}
+}
@@ -0,0 +1,101 @@
+package cmsc433.p4.actors;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import cmsc433.p4.enums.*;
+
+/**
+ * Prints a binary audit log written by BinaryEventLog as text, one event per
+ * line, oldest first.
+ *
+ * Usage: java cmsc433.p4.actors.BinaryEventLogDecoder &lt;log directory&gt;
+ */
+public class BinaryEventLogDecoder {
+
+	public static void main(String[] args) throws IOException {
+		if(args.length != 1)
+		{
+			System.err.println("Usage: BinaryEventLogDecoder <log directory>");
+			System.exit(2);
+		}
+		File directory = new File(args[0]);
+		ArrayList<String> strings = BinaryEventLog.readDictionary(new File(directory, BinaryEventLog.DICTIONARY_FILE), false);
+		SimpleDateFormat time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+		StringBuilder line = new StringBuilder();
+
+		for(int index = 0; ; index++)
+		{
+			File file = BinaryEventLog.segmentFile(directory, index);
+			if(!file.exists())
+			{
+				break;
+			}
+			ByteBuffer segment = read(file);
+			while(segment.remaining() >= BinaryEventLog.RECORD_SIZE)
+			{
+				int code = segment.get();
+				if(code == 0)
+				{
+					//rest of the segment is unused
+					break;
+				}
+				int kind = segment.get();
+				int detail = segment.get();
+				segment.get();
+				int resource = segment.getInt();
+				int actor = segment.getInt();
+				int manager = segment.getInt();
+				long timestamp = segment.getLong();
+				LogEventType event = LogEventType.fromCode(code);
+
+				line.setLength(0);
+				line.append(time.format(new Date(timestamp))).append(' ');
+				line.append(event == null ? "UNKNOWN(" + code + ")" : event.name());
+				line.append(" manager=").append(lookup(strings, manager));
+				if(actor != 0)
+				{
+					line.append(" actor=").append(lookup(strings, actor));
+				}
+				if(resource != 0)
+				{
+					line.append(" resource=").append(lookup(strings, resource));
+				}
+				if(event != null && event.kind != null && kind != 0)
+				{
+					line.append(" type=").append(constant(event.kind, kind));
+				}
+				if(event != null && event.detail != null && detail != 0)
+				{
+					line.append(event.detail == ResourceStatus.class ? " status=" : " reason=").append(constant(event.detail, detail));
+				}
+				System.out.println(line);
+			}
+		}
+	}
+
+	private static ByteBuffer read(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try
+		{
+			return in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	private static String lookup(ArrayList<String> strings, int id) {
+		return (id > 0 && id <= strings.size()) ? strings.get(id - 1) : "#" + id;
+	}
+
+	private static String constant(Class<? extends Enum<?>> type, int code) {
+		Enum<?>[] constants = type.getEnumConstants();
+		return (code > 0 && code <= constants.length) ? constants[code - 1].name() : "#" + code;
+	}
+}
@@ -0,0 +1,66 @@
+package cmsc433.p4.actors;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import akka.actor.ActorRef;
+
+/**
+ * Consistent-hash ring over a set of resource managers.  Every manager builds
+ * its own copy from the same membership, and since positions depend only on
+ * actor paths and resource names, all copies agree on the home manager of any
+ * resource name.  Each manager is placed at several virtual points to even out
+ * the share of names it receives.
+ */
+class ConsistentHashRing {
+
+	private final TreeMap<Long, ActorRef> points = new TreeMap<Long, ActorRef>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param managers			Ring members; duplicates are ignored
+	 * @param virtualNodes		Points placed on the ring per manager
+	 */
+	ConsistentHashRing(Collection<ActorRef> managers, int virtualNodes) {
+		for(ActorRef manager : managers)
+		{
+			String path = manager.path().toString();
+			for(int i = 0; i < virtualNodes; i++)
+			{
+				points.put(hash(path + "#" + i), manager);
+			}
+		}
+	}
+
+	/**
+	 * @param resourceName		Resource name
+	 * @return					the manager the name is placed on, or null if the ring is empty
+	 */
+	ActorRef home(String resourceName) {
+		if(points.isEmpty())
+		{
+			return null;
+		}
+		Map.Entry<Long, ActorRef> point = points.ceilingEntry(hash(resourceName));
+		return (point != null) ? point.getValue() : points.firstEntry().getValue();
+	}
+
+	/**
+	 * 64-bit FNV-1a over the string's characters, followed by a final avalanche
+	 * so that similar names land far apart.  Stable across JVMs.
+	 */
+	static long hash(String key) {
+		long h = 0xcbf29ce484222325L;
+		for(int i = 0; i < key.length(); i++)
+		{
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= (h >>> 33);
+		h *= 0xff51afd7ed558ccdL;
+		h ^= (h >>> 33);
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= (h >>> 33);
+		return h;
+	}
+}
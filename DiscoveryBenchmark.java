@@ -0,0 +1,97 @@
+package cmsc433.p4.bench;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import cmsc433.p4.actors.ResourceManagerSettings;
+import cmsc433.p4.enums.*;
+import cmsc433.p4.messages.*;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Requests for a resource held by another manager of the same system.  The
+ * user always asks the first manager for a resource of the last one, and
+ * releases straight to the owner that granted it.  Forwarding uses a manager
+ * that remembers the owner; discovery uses managers without a directory, so
+ * every request broadcasts a WhoHasResource to all the other managers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiscoveryBenchmark {
+
+	private static final String FAR = "far";
+
+	@Param({ "2", "4", "16" })
+	public int managers;
+
+	private ActorSystem system;
+	private ActorRef forwarding;				// First manager of a group that remembers owners
+	private ActorRef discovering;				// First manager of a group that remembers nothing
+	private ActorRef user;
+	private final BlockingQueue<Object> replies = new LinkedBlockingQueue<Object>();
+
+	@Setup
+	public void start() throws InterruptedException {
+		system = ActorSystem.create("discovery-benchmark");
+		user = system.actorOf(BenchmarkUser.props(replies, true));
+
+		ResourceManagerSettings noDirectory = ResourceManagerSettings.defaults().withDirectory(0, 0, 0);
+		forwarding = group(ResourceManagerSettings.defaults()).get(0);
+		discovering = group(noDirectory).get(0);
+
+		//the first request discovers the owner; later ones are only forwarded
+		request(forwarding);
+	}
+
+	@TearDown
+	public void stop() {
+		system.terminate();
+	}
+
+	@Benchmark
+	public AccessRequestGrantedMsg forwardToKnownOwner() throws InterruptedException {
+		return request(forwarding);
+	}
+
+	@Benchmark
+	public AccessRequestGrantedMsg discoverOwner() throws InterruptedException {
+		return request(discovering);
+	}
+
+	/**
+	 * @return  managers that know each other, the last one holding FAR
+	 */
+	private List<ActorRef> group(ResourceManagerSettings settings) throws InterruptedException {
+		List<List<String>> resources = new ArrayList<List<String>>();
+		for(int i = 0; i < managers; i++)
+		{
+			resources.add(i == managers - 1 ? Collections.singletonList(FAR) : Collections.<String>emptyList());
+		}
+		return BenchmarkFixture.managers(system, settings, resources, user, replies);
+	}
+
+	private AccessRequestGrantedMsg request(ActorRef manager) throws InterruptedException {
+		//the user releases the grant itself, to the owner that sent it
+		BenchmarkFixture.request(manager, user, FAR, AccessRequestType.CONCURRENT_READ_BLOCKING);
+		return BenchmarkFixture.await(replies, AccessRequestGrantedMsg.class);
+	}
+}
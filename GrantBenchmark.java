@@ -0,0 +1,90 @@
+package cmsc433.p4.bench;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import cmsc433.p4.actors.ResourceManagerSettings;
+import cmsc433.p4.enums.*;
+import cmsc433.p4.messages.*;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Grant paths that never queue: one user asks a local resource for access and
+ * gives it back.  Each operation is a request, its grant arriving at the user,
+ * and the release.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GrantBenchmark {
+
+	private static final String READ = "read";
+	private static final String WRITE = "write";
+	private static final String HELD = "held";
+
+	private ActorSystem system;
+	private ActorRef manager;
+	private ActorRef user;
+	private final BlockingQueue<Object> replies = new LinkedBlockingQueue<Object>();
+
+	@Setup
+	public void start() throws InterruptedException {
+		system = ActorSystem.create("grant-benchmark");
+		user = system.actorOf(BenchmarkUser.props(replies, false));
+		List<List<String>> resources = Collections.singletonList(Arrays.asList(READ, WRITE, HELD));
+		manager = BenchmarkFixture.managers(system, ResourceManagerSettings.defaults(), resources, user, replies).get(0);
+
+		//the user keeps one write hold on HELD, so every grant there is re-entrant
+		BenchmarkFixture.request(manager, user, HELD, AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		BenchmarkFixture.await(replies, AccessRequestGrantedMsg.class);
+	}
+
+	@TearDown
+	public void stop() {
+		system.terminate();
+	}
+
+	@Benchmark
+	public AccessRequestGrantedMsg uncontendedRead() throws InterruptedException {
+		return grantAndRelease(READ, AccessRequestType.CONCURRENT_READ_BLOCKING, AccessType.CONCURRENT_READ);
+	}
+
+	@Benchmark
+	public AccessRequestGrantedMsg uncontendedWrite() throws InterruptedException {
+		return grantAndRelease(WRITE, AccessRequestType.EXCLUSIVE_WRITE_BLOCKING, AccessType.EXCLUSIVE_WRITE);
+	}
+
+	@Benchmark
+	public AccessRequestGrantedMsg reentrantWrite() throws InterruptedException {
+		return grantAndRelease(HELD, AccessRequestType.EXCLUSIVE_WRITE_BLOCKING, AccessType.EXCLUSIVE_WRITE);
+	}
+
+	@Benchmark
+	public AccessRequestGrantedMsg reentrantReadUnderWrite() throws InterruptedException {
+		return grantAndRelease(HELD, AccessRequestType.CONCURRENT_READ_BLOCKING, AccessType.CONCURRENT_READ);
+	}
+
+	private AccessRequestGrantedMsg grantAndRelease(String resourceName, AccessRequestType request, AccessType release) throws InterruptedException {
+		BenchmarkFixture.request(manager, user, resourceName, request);
+		AccessRequestGrantedMsg granted = BenchmarkFixture.await(replies, AccessRequestGrantedMsg.class);
+		BenchmarkFixture.release(manager, user, resourceName, release);
+		return granted;
+	}
+}
@@ -0,0 +1,108 @@
+package cmsc433.p4.actors;
+import java.util.HashMap;
+import java.util.Set;
+import akka.actor.ActorRef;
+
+/**
+ * Multiset of users holding the same kind of access to a resource.  Each user
+ * maps to the number of times it has been granted access without releasing it,
+ * so re-entrant grants and releases are a single hash lookup.
+ */
+class HolderSet {
+
+	/**
+	 * Hold count of a single user.  Mutable so re-entrant grants do not box a new Integer.
+	 */
+	static final class Hold {
+		int count;
+		long since;								// System.nanoTime() of the user's first hold
+	}
+
+	private final HashMap<ActorRef, Hold> holds = new HashMap<ActorRef, Hold>();
+	private int total = 0;						// Sum of all hold counts
+
+	/**
+	 * Records one more hold for a user
+	 * @param user				User being granted access
+	 * @return					true if the user did not hold access before
+	 */
+	boolean acquire(ActorRef user) {
+		Hold hold = holds.get(user);
+		boolean first = (hold == null);
+		if(first)
+		{
+			hold = new Hold();
+			hold.since = System.nanoTime();
+			holds.put(user, hold);
+		}
+		hold.count++;
+		total++;
+		return first;
+	}
+
+	/**
+	 * Drops one hold of a user
+	 * @param user				User releasing access
+	 * @return					the user's hold, with a count of 0 if this was its last,
+	 * 							or null if the user held no access
+	 */
+	Hold release(ActorRef user) {
+		Hold hold = holds.get(user);
+		if(hold == null)
+		{
+			return null;
+		}
+		if(--hold.count == 0)
+		{
+			holds.remove(user);
+		}
+		total--;
+		return hold;
+	}
+
+	/**
+	 * @param user				User to look up
+	 * @return					number of unreleased grants the user holds
+	 */
+	int holds(ActorRef user) {
+		Hold hold = holds.get(user);
+		return hold == null ? 0 : hold.count;
+	}
+
+	boolean contains(ActorRef user) {
+		return holds.containsKey(user);
+	}
+
+	/**
+	 * @param user				User to look up
+	 * @return					true if the user is the only holder
+	 */
+	boolean heldOnlyBy(ActorRef user) {
+		return holds.size() == 1 && holds.containsKey(user);
+	}
+
+	/**
+	 * @return  number of distinct holders
+	 */
+	int holders() {
+		return holds.size();
+	}
+
+	/**
+	 * @return  total number of unreleased grants across all holders
+	 */
+	int total() {
+		return total;
+	}
+
+	/**
+	 * @return  every user holding access, for snapshots; not to be modified
+	 */
+	Set<ActorRef> users() {
+		return holds.keySet();
+	}
+
+	boolean isEmpty() {
+		return total == 0;
+	}
+}
@@ -0,0 +1,200 @@
+package cmsc433.p4.actors;
+import java.util.ArrayList;
+
+/**
+ * Finds the most contended resources of a manager in fixed memory, however
+ * many resources it has.  Count-min sketches estimate per name how many
+ * requests arrived, how many found the resource held, and how many queued
+ * requests left the queue after how long; the estimates only ever overcount, and only by names that
+ * collide in every row.  The names with the highest contention estimate are
+ * kept in a small top list.  Every counter is halved now and then, so the
+ * list follows recent contention rather than the whole history.
+ * Recording hashes the name's cached hashCode and never allocates.
+ */
+class HotResourceTracker {
+
+	private static final int DEPTH = 4;				// Rows per sketch, one hash each
+	private static final int[] SEEDS = { 0x9e3779b9, 0x7f4a7c15, 0x2545f491, 0x5bd1e995 };	// Per-row hash seeds
+	private static final long DECAY_EVERY = 1 << 16;	// Contention events between halvings
+
+	/**
+	 * Estimates of one of the top names, as of a report.
+	 */
+	static final class Estimate {
+		final String resourceName;
+		final long requests;
+		final long contended;
+		final long waits;						// Requests that left its queue
+		final long waitNanos;					// Total time they spent queued
+
+		Estimate(String resourceName, long requests, long contended, long waits, long waitNanos) {
+			this.resourceName = resourceName;
+			this.requests = requests;
+			this.contended = contended;
+			this.waits = waits;
+			this.waitNanos = waitNanos;
+		}
+	}
+
+	private final int mask;						// Sketch width - 1; the width is a power of two
+	private final long[] requests;				// DEPTH rows of width counters, row after row
+	private final long[] contended;
+	private final long[] waits;
+	private final long[] waitNanos;
+	private long sinceDecay = 0;
+
+	//top names by contention estimate, unsorted; a null name is a free slot
+	private final String[] topNames;
+	private final long[] topScores;
+
+	/**
+	 * Constructor
+	 *
+	 * @param topCount			Names kept in the top list
+	 * @param width				Counters per sketch row, rounded up to a power of two
+	 */
+	HotResourceTracker(int topCount, int width) {
+		int size = Integer.highestOneBit(Math.max(2, width) - 1) << 1;
+		this.mask = size - 1;
+		this.requests = new long[DEPTH * size];
+		this.contended = new long[DEPTH * size];
+		this.waits = new long[DEPTH * size];
+		this.waitNanos = new long[DEPTH * size];
+		this.topNames = new String[topCount];
+		this.topScores = new long[topCount];
+	}
+
+	/**
+	 * @param resourceName		Resource an access request arrived for
+	 */
+	void requested(String resourceName) {
+		add(requests, resourceName.hashCode(), 1);
+	}
+
+	/**
+	 * @param resourceName		Resource a request found held, and was queued or denied for
+	 */
+	void contended(String resourceName) {
+		offer(resourceName, add(contended, resourceName.hashCode(), 1));
+		if(++sinceDecay >= DECAY_EVERY)
+		{
+			decay();
+		}
+	}
+
+	/**
+	 * @param resourceName		Resource a request left the queue of
+	 * @param nanos				Time the request spent queued
+	 */
+	void waited(String resourceName, long nanos) {
+		int hash = resourceName.hashCode();
+		add(waits, hash, 1);
+		add(waitNanos, hash, Math.max(0, nanos));
+	}
+
+	/**
+	 * @return  estimates for the top names, most contended first
+	 */
+	ArrayList<Estimate> top() {
+		ArrayList<Estimate> top = new ArrayList<Estimate>(topNames.length);
+		for(String name : topNames)
+		{
+			if(name != null)
+			{
+				int hash = name.hashCode();
+				top.add(new Estimate(name, estimate(requests, hash), estimate(contended, hash),
+						estimate(waits, hash), estimate(waitNanos, hash)));
+			}
+		}
+		top.sort((a, b) -> Long.compare(b.contended, a.contended));
+		return top;
+	}
+
+	/**
+	 * Keeps a name in the top list if its estimate beats the smallest one there
+	 */
+	private void offer(String resourceName, long score) {
+		int smallest = 0;
+		for(int i = 0; i < topNames.length; i++)
+		{
+			if(resourceName.equals(topNames[i]))
+			{
+				topScores[i] = score;
+				return;
+			}
+			if(rank(i) < rank(smallest))
+			{
+				smallest = i;
+			}
+		}
+		if(topNames.length > 0 && score > rank(smallest))
+		{
+			topNames[smallest] = resourceName;
+			topScores[smallest] = score;
+		}
+	}
+
+	/**
+	 * @return  score of a slot of the top list, below any real score if the slot is free
+	 */
+	private long rank(int slot) {
+		return (topNames[slot] == null) ? -1 : topScores[slot];
+	}
+
+	/**
+	 * Adds to every row's counter for a hash
+	 * @return					the new estimate: the smallest of those counters
+	 */
+	private long add(long[] sketch, int hash, long amount) {
+		long estimate = Long.MAX_VALUE;
+		for(int row = 0; row < DEPTH; row++)
+		{
+			int slot = slot(row, hash);
+			sketch[slot] += amount;
+			estimate = Math.min(estimate, sketch[slot]);
+		}
+		return estimate;
+	}
+
+	private long estimate(long[] sketch, int hash) {
+		long estimate = Long.MAX_VALUE;
+		for(int row = 0; row < DEPTH; row++)
+		{
+			estimate = Math.min(estimate, sketch[slot(row, hash)]);
+		}
+		return estimate;
+	}
+
+	/**
+	 * Each row scrambles the hashCode differently, so names colliding in one
+	 * row are unlikely to collide in the others
+	 */
+	private int slot(int row, int hash) {
+		hash ^= SEEDS[row];
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return row * (mask + 1) + (hash & mask);
+	}
+
+	private void decay() {
+		sinceDecay = 0;
+		halve(requests);
+		halve(contended);
+		halve(waits);
+		halve(waitNanos);
+		for(int i = 0; i < topScores.length; i++)
+		{
+			topScores[i] >>>= 1;
+		}
+	}
+
+	private static void halve(long[] sketch) {
+		for(int i = 0; i < sketch.length; i++)
+		{
+			sketch[i] >>>= 1;
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package cmsc433.p4.messages;
+
+import akka.actor.ActorRef;
+
+/**
+ * Asks a manager for its most contended resources.  Answered with a
+ * HotResourcesResponseMsg sent to replyTo.  A sharded manager has each of
+ * its shards answer as well, since the shards see the contention.  The
+ * answer is empty unless the manager was given withHotResources settings.
+ */
+public class HotResourcesRequestMsg {
+	private final ActorRef replyTo;
+	
+	public HotResourcesRequestMsg (ActorRef replyTo) {
+		this.replyTo = replyTo;
+	}
+	
+	public ActorRef getReplyTo () {
+		return replyTo;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Hot resources?";
+	}
+}
@@ -0,0 +1,105 @@
+package cmsc433.p4.messages;
+
+import java.util.Collections;
+import java.util.List;
+
+import akka.actor.ActorRef;
+
+/**
+ * The most contended resources of a manager, most contended first.  Counts
+ * are sketch estimates: never too low, and too high only when names collide.
+ * They are halved from time to time, so they describe recent traffic.
+ * Empty if the manager does not track contention.
+ */
+public class HotResourcesResponseMsg {
+	
+	/**
+	 * One contended resource.
+	 */
+	public static class HotResource {
+		private final String resourceName;
+		private final long requests;
+		private final long contended;
+		private final int queueDepth;
+		private final long meanWaitNanos;
+		
+		public HotResource (String resourceName, long requests, long contended, int queueDepth, long meanWaitNanos) {
+			this.resourceName = resourceName;
+			this.requests = requests;
+			this.contended = contended;
+			this.queueDepth = queueDepth;
+			this.meanWaitNanos = meanWaitNanos;
+		}
+		
+		public String getResourceName () {
+			return resourceName;
+		}
+		
+		/**
+		 * @return  access requests that arrived for the resource
+		 */
+		public long getRequests () {
+			return requests;
+		}
+		
+		/**
+		 * @return  requests that found the resource held and were queued, denied or shed
+		 */
+		public long getContended () {
+			return contended;
+		}
+		
+		/**
+		 * @return  requests queued for the resource right now
+		 */
+		public int getQueueDepth () {
+			return queueDepth;
+		}
+		
+		/**
+		 * @return  average time a queued request waited before it was granted or denied
+		 */
+		public long getMeanWaitNanos () {
+			return meanWaitNanos;
+		}
+		
+		@Override 
+		public String toString () {
+			return resourceName + ": " + contended + " of " + requests + " contended, " + queueDepth + " queued, "
+					+ (meanWaitNanos / 1000) + " us mean wait";
+		}
+	}
+	
+	private final ActorRef source;
+	private final List<HotResource> resources;
+	private final List<ActorRef> shards;
+	
+	public HotResourcesResponseMsg (ActorRef source, List<HotResource> resources, List<ActorRef> shards) {
+		this.source = source;
+		this.resources = Collections.unmodifiableList(resources);
+		this.shards = Collections.unmodifiableList(shards);
+	}
+	
+	/**
+	 * @return  the manager, or the shard, the report belongs to
+	 */
+	public ActorRef getSource () {
+		return source;
+	}
+	
+	public List<HotResource> getResources () {
+		return resources;
+	}
+	
+	/**
+	 * @return  shards answering with their own reports, empty unless sharded
+	 */
+	public List<ActorRef> getShards () {
+		return shards;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Hot resources of " + source.path().name() + ": " + resources;
+	}
+}
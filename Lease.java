@@ -0,0 +1,24 @@
+package cmsc433.p4.actors;
+import akka.actor.ActorRef;
+
+/**
+ * Time limit on everything one user holds on one local resource.  Granting the
+ * user more access or a RenewLeaseMsg pushes the deadline back; when it passes,
+ * the manager releases all of the user's holds on the resource.
+ */
+class Lease extends TimerWheel.Timer {
+
+	final ResourceLockState state;
+	final ActorRef user;
+
+	/**
+	 * Constructor
+	 *
+	 * @param state				Lock state of the leased resource
+	 * @param user				Holder of the lease
+	 */
+	Lease(ResourceLockState state, ActorRef user) {
+		this.state = state;
+		this.user = user;
+	}
+}
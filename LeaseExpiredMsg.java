@@ -0,0 +1,22 @@
+package cmsc433.p4.messages;
+
+/**
+ * Tells a user that its lease on a resource ran out and everything it held
+ * there has been released.
+ */
+public class LeaseExpiredMsg {
+	private final String resourceName;
+	
+	public LeaseExpiredMsg (String resourceName) {
+		this.resourceName = resourceName;
+	}
+	
+	public String getResourceName () {
+		return resourceName;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Lease expired on " + resourceName;
+	}
+}
@@ -0,0 +1,552 @@
+package cmsc433.p4.actors;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import cmsc433.p4.enums.*;
+import cmsc433.p4.messages.*;
+import cmsc433.p4.util.*;
+import akka.actor.ActorRef;
+
+/**
+ * Write-ahead journal of a manager's lock state, so a manager started again
+ * over the same directory, in this process or a new one, comes back with the
+ * same holders, queues, wait deadlines and resource status.  Every change is
+ * appended to the current journal file; after a number of changes the whole
+ * lock table is written as a snapshot and a new, empty journal is started.
+ * Recovery reads the snapshot and replays only the journal written after it,
+ * so it takes time proportional to the state, not to its history.
+ *
+ * Each snapshot names the generation of the journal that follows it.  A crash
+ * between writing a snapshot and starting its journal therefore never replays
+ * an older journal on top of a newer snapshot.  Records are buffered and
+ * written out and synced to the disk once per handled message by flush(); the
+ * manager holds back its replies until then.  Wait deadlines are recorded in
+ * wall-clock time, since System.nanoTime() means nothing to another process.
+ */
+class LockJournal {
+
+	/**
+	 * Turns a recorded actor path back into a reference.
+	 */
+	interface Resolver {
+		ActorRef resolve(String path);
+	}
+
+	private static final int SNAPSHOT_MAGIC = 0x4c4b534e;
+	private static final String SNAPSHOT_FILE = "snapshot.bin";
+
+	//journal record types
+	private static final byte GRANTED = 1;
+	private static final byte RELEASED = 2;
+	private static final byte ENQUEUED = 3;
+	private static final byte DEQUEUED = 4;
+	private static final byte STATUS_CHANGED = 5;
+	private static final byte DISABLE_PENDING = 6;
+	private static final byte WAIT_DEADLINE = 7;
+
+	private final File directory;
+	private final int snapshotEvery;
+	private final HashMap<ActorRef, String> paths = new HashMap<ActorRef, String>();
+	private long generation = 0;
+	private FileOutputStream file;				// Current journal file, synced by flush()
+	private DataOutputStream journal;			// Buffered writer over it
+	private boolean unsynced = false;			// Records written since the last sync
+	private int records = 0;					// Records in the current journal
+	private AccessRequestMsg lastEnqueued = null;	// Replay: request a WAIT_DEADLINE record belongs to
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory			Directory holding this manager's journal; one manager per directory
+	 * @param snapshotEvery		Journal records written before the next snapshot
+	 * @throws IOException		if the directory cannot be created
+	 */
+	LockJournal(File directory, int snapshotEvery) throws IOException {
+		this.directory = directory;
+		this.snapshotEvery = Math.max(1, snapshotEvery);
+		if(!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Cannot create " + directory);
+		}
+	}
+
+	/**
+	 * Rebuilds the lock table from the latest snapshot and the journal after it,
+	 * then opens that journal for appending.  Must be called once, before any change is recorded.
+	 * Queued requests with a deadline come back with an unscheduled WaitTimer.
+	 * @param resolver			Turns recorded actor paths into references
+	 * @return					the recovered lock table, empty if nothing was recorded
+	 * @throws IOException		if the files cannot be read
+	 */
+	HashMap<String, ResourceLockState> recover(Resolver resolver) throws IOException {
+		HashMap<String, ResourceLockState> table = new HashMap<String, ResourceLockState>();
+		File snapshotFile = new File(directory, SNAPSHOT_FILE);
+		if(snapshotFile.exists())
+		{
+			readSnapshot(new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(snapshotFile.toPath()))), table, resolver);
+		}
+
+		File journalFile = journalFile(generation);
+		if(journalFile.exists())
+		{
+			byte[] bytes = Files.readAllBytes(journalFile.toPath());
+			ByteArrayInputStream buffer = new ByteArrayInputStream(bytes);
+			DataInputStream in = new DataInputStream(buffer);
+			long valid = 0;
+			try
+			{
+				while(buffer.available() > 0)
+				{
+					replay(in, table, resolver);
+					valid = bytes.length - buffer.available();
+					records++;
+				}
+			}
+			catch(EOFException e)
+			{
+				//torn last record, cut off below
+			}
+			if(valid < bytes.length)
+			{
+				RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+				try
+				{
+					file.setLength(valid);
+				}
+				finally
+				{
+					file.close();
+				}
+			}
+		}
+		journal = open(generation);
+		return table;
+	}
+
+	void granted(String resourceName, ActorRef user, boolean write) {
+		try
+		{
+			unsynced = true;
+			journal.writeByte(GRANTED);
+			journal.writeUTF(resourceName);
+			journal.writeUTF(pathOf(user));
+			journal.writeBoolean(write);
+			records++;
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	void released(String resourceName, ActorRef user, boolean write) {
+		try
+		{
+			unsynced = true;
+			journal.writeByte(RELEASED);
+			journal.writeUTF(resourceName);
+			journal.writeUTF(pathOf(user));
+			journal.writeBoolean(write);
+			records++;
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @param accessMsg			Request added to the back of the resource's queue
+	 * @param step				Atomic acquisition step the request belongs to, or null
+	 */
+	void enqueued(AccessRequestMsg accessMsg, AtomicAcquireStepMsg step) {
+		try
+		{
+			unsynced = true;
+			journal.writeByte(ENQUEUED);
+			writeQueued(journal, accessMsg, step, 0);
+			records++;
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @param accessMsg			Request taken out of the resource's queue, granted or denied
+	 */
+	void dequeued(AccessRequestMsg accessMsg) {
+		try
+		{
+			unsynced = true;
+			journal.writeByte(DEQUEUED);
+			journal.writeUTF(accessMsg.getAccessRequest().getResourceName());
+			journal.writeUTF(pathOf(accessMsg.getReplyTo()));
+			journal.writeByte(accessMsg.getAccessRequest().getType().ordinal());
+			records++;
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	void statusChanged(String resourceName, ResourceStatus status) {
+		try
+		{
+			unsynced = true;
+			journal.writeByte(STATUS_CHANGED);
+			journal.writeUTF(resourceName);
+			journal.writeByte(status.ordinal());
+			records++;
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @param requestMsg		Disable request waiting for the resource to become free
+	 */
+	void disablePending(ManagementRequestMsg requestMsg) {
+		try
+		{
+			unsynced = true;
+			journal.writeByte(DISABLE_PENDING);
+			journal.writeUTF(requestMsg.getRequest().getResourceName());
+			journal.writeUTF(pathOf(requestMsg.getReplyTo()));
+			records++;
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Records the deadline of the request just enqueued
+	 * @param accessMsg			Request recorded by the last enqueued()
+	 * @param deadlineMillis	System.currentTimeMillis() the request gives up
+	 */
+	void waitDeadline(AccessRequestMsg accessMsg, long deadlineMillis) {
+		try
+		{
+			unsynced = true;
+			journal.writeByte(WAIT_DEADLINE);
+			journal.writeUTF(accessMsg.getAccessRequest().getResourceName());
+			journal.writeLong(deadlineMillis);
+			records++;
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes the records of the message just handled to the file and syncs it
+	 * to the disk, so they survive a crash of the process or the machine
+	 */
+	void flush() {
+		if(!unsynced)
+		{
+			return;
+		}
+		try
+		{
+			journal.flush();
+			file.getFD().sync();
+			unsynced = false;
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	boolean needsSnapshot() {
+		return records >= snapshotEvery;
+	}
+
+	/**
+	 * Writes the whole lock table as the new snapshot and starts an empty journal
+	 * @param states			Lock state of every local resource
+	 * @throws IOException		if the snapshot cannot be written
+	 */
+	void snapshot(Collection<ResourceLockState> states) throws IOException {
+		journal.close();
+		unsynced = false;
+		long next = generation + 1;
+
+		File temp = new File(directory, SNAPSHOT_FILE + ".tmp");
+		FileOutputStream tempFile = new FileOutputStream(temp);
+		try
+		{
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(tempFile));
+			writeSnapshot(out, next, states);
+			out.flush();
+			tempFile.getFD().sync();
+		}
+		finally
+		{
+			tempFile.close();
+		}
+		Files.move(temp.toPath(), new File(directory, SNAPSHOT_FILE).toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		journal = open(next);
+		journalFile(generation).delete();
+		generation = next;
+		records = 0;
+	}
+
+	void close() throws IOException {
+		journal.close();
+	}
+
+	private DataOutputStream open(long gen) throws IOException {
+		file = new FileOutputStream(journalFile(gen), true);
+		return new DataOutputStream(new BufferedOutputStream(file));
+	}
+
+	private File journalFile(long gen) {
+		return new File(directory, "journal-" + gen + ".log");
+	}
+
+	private String pathOf(ActorRef actor) {
+		if(actor == null)
+		{
+			return "";
+		}
+		String path = paths.get(actor);
+		if(path == null)
+		{
+			path = actor.path().toString();
+			paths.put(actor, path);
+		}
+		return path;
+	}
+
+	/**
+	 * @param deadlineMillis	System.currentTimeMillis() the request gives up, 0 for no deadline
+	 */
+	private void writeQueued(DataOutputStream out, AccessRequestMsg accessMsg, AtomicAcquireStepMsg step, long deadlineMillis) throws IOException {
+		out.writeUTF(accessMsg.getAccessRequest().getResourceName());
+		out.writeUTF(pathOf(accessMsg.getReplyTo()));
+		out.writeByte(accessMsg.getAccessRequest().getType().ordinal());
+		out.writeUTF(step == null ? "" : pathOf(step.getCoordinator()));
+		out.writeLong(step == null ? 0 : step.getTransactionId());
+		out.writeLong(deadlineMillis);
+	}
+
+	private void writeSnapshot(DataOutputStream out, long gen, Collection<ResourceLockState> states) throws IOException {
+		out.writeInt(SNAPSHOT_MAGIC);
+		out.writeLong(gen);
+		out.writeInt(states.size());
+		for(ResourceLockState state : states)
+		{
+			out.writeUTF(state.resource.getName());
+			out.writeByte(state.resource.getStatus().ordinal());
+			out.writeBoolean(state.pendingDisable);
+			out.writeInt(state.readers.holders());
+			for(ActorRef reader : state.readers.users())
+			{
+				out.writeUTF(pathOf(reader));
+				out.writeInt(state.readers.holds(reader));
+			}
+			out.writeUTF(pathOf(state.writer));
+			out.writeInt(state.writeHolds);
+			ArrayList<AccessRequestMsg> queued = state.waiters.toList();
+			out.writeInt(queued.size());
+			for(AccessRequestMsg accessMsg : queued)
+			{
+				WaitTimer timer = state.waitTimers.get(accessMsg);
+				writeQueued(out, accessMsg, state.queuedSteps.get(accessMsg), (timer == null) ? 0 : timer.deadlineMillis);
+			}
+			out.writeInt(state.disableWaiters.size());
+			for(ManagementRequestMsg requestMsg : state.disableWaiters)
+			{
+				out.writeUTF(pathOf(requestMsg.getReplyTo()));
+			}
+		}
+	}
+
+	private void readSnapshot(DataInputStream in, HashMap<String, ResourceLockState> table, Resolver resolver) throws IOException {
+		if(in.readInt() != SNAPSHOT_MAGIC)
+		{
+			throw new IOException("Not a lock snapshot");
+		}
+		generation = in.readLong();
+		int resources = in.readInt();
+		for(int r = 0; r < resources; r++)
+		{
+			Resource resource = new Resource(in.readUTF());
+			if(ResourceStatus.values()[in.readByte()] == ResourceStatus.ENABLED)
+			{
+				resource.enable();
+			}
+			else
+			{
+				resource.disable();
+			}
+			ResourceLockState state = new ResourceLockState(resource);
+			state.pendingDisable = in.readBoolean();
+			int readers = in.readInt();
+			for(int i = 0; i < readers; i++)
+			{
+				ActorRef reader = resolver.resolve(in.readUTF());
+				for(int holds = in.readInt(); holds > 0; holds--)
+				{
+					state.acquireRead(reader);
+				}
+			}
+			String writer = in.readUTF();
+			int writeHolds = in.readInt();
+			if(writeHolds > 0)
+			{
+				state.writer = resolver.resolve(writer);
+				state.writeHolds = writeHolds;
+			}
+			int queued = in.readInt();
+			for(int i = 0; i < queued; i++)
+			{
+				readQueued(in, table, state, resolver);
+			}
+			int disableWaiters = in.readInt();
+			for(int i = 0; i < disableWaiters; i++)
+			{
+				state.disableWaiters.add(disableRequest(resource.getName(), resolver.resolve(in.readUTF())));
+			}
+			table.put(resource.getName(), state);
+		}
+	}
+
+	/**
+	 * Reads a queued request and appends it to its resource's queue
+	 * @param state				Lock state to add to, or null to look it up by the recorded name
+	 */
+	private void readQueued(DataInputStream in, HashMap<String, ResourceLockState> table, ResourceLockState state, Resolver resolver) throws IOException {
+		String resourceName = in.readUTF();
+		ActorRef user = resolver.resolve(in.readUTF());
+		AccessRequest request = new AccessRequest(resourceName, AccessRequestType.values()[in.readByte()]);
+		String coordinator = in.readUTF();
+		long transactionId = in.readLong();
+		long deadlineMillis = in.readLong();
+		if(state == null)
+		{
+			state = table.get(resourceName);
+		}
+		AccessRequestMsg accessMsg = new AccessRequestMsg(request, user);
+		state.waiters.add(accessMsg);
+		if(!coordinator.isEmpty())
+		{
+			state.queuedSteps.put(accessMsg, new AtomicAcquireStepMsg(transactionId, request, user, resolver.resolve(coordinator)));
+		}
+		if(deadlineMillis > 0)
+		{
+			state.waitTimers.put(accessMsg, new WaitTimer(state, accessMsg, System.nanoTime(), deadlineMillis));
+		}
+		lastEnqueued = accessMsg;
+	}
+
+	private void replay(DataInputStream in, HashMap<String, ResourceLockState> table, Resolver resolver) throws IOException {
+		byte type = in.readByte();
+		if(type == ENQUEUED)
+		{
+			readQueued(in, table, null, resolver);
+			return;
+		}
+		ResourceLockState state = table.get(in.readUTF());
+		switch(type)
+		{
+		case GRANTED:
+		{
+			ActorRef user = resolver.resolve(in.readUTF());
+			if(in.readBoolean())
+			{
+				state.acquireWrite(user);
+			}
+			else
+			{
+				state.acquireRead(user);
+			}
+			break;
+		}
+		case RELEASED:
+		{
+			ActorRef user = resolver.resolve(in.readUTF());
+			if(in.readBoolean())
+			{
+				state.releaseWrite(user);
+			}
+			else
+			{
+				state.releaseRead(user);
+			}
+			break;
+		}
+		case DEQUEUED:
+		{
+			//equal requests of one user are interchangeable, so the first match is the one removed
+			final ActorRef user = resolver.resolve(in.readUTF());
+			final AccessRequestType requestType = AccessRequestType.values()[in.readByte()];
+			final ResourceLockState queueState = state;
+			final boolean[] found = { false };
+			state.waiters.removeMatching(new WaitQueue.Filter() {
+				public boolean take(AccessRequestMsg accessMsg) {
+					if(found[0] || accessMsg.getAccessRequest().getType() != requestType || !accessMsg.getReplyTo().equals(user))
+					{
+						return false;
+					}
+					found[0] = true;
+					queueState.takeStep(accessMsg);
+					queueState.waitTimers.remove(accessMsg);
+					return true;
+				}
+			});
+			break;
+		}
+		case STATUS_CHANGED:
+			if(ResourceStatus.values()[in.readByte()] == ResourceStatus.ENABLED)
+			{
+				state.resource.enable();
+				state.pendingDisable = false;
+			}
+			else
+			{
+				state.resource.disable();
+				state.pendingDisable = true;
+				state.disableWaiters.clear();
+			}
+			break;
+		case DISABLE_PENDING:
+			state.pendingDisable = true;
+			state.disableWaiters.add(disableRequest(state.resource.getName(), resolver.resolve(in.readUTF())));
+			break;
+		case WAIT_DEADLINE:
+			//always follows the ENQUEUED record of its request
+			state.waitTimers.put(lastEnqueued, new WaitTimer(state, lastEnqueued, System.nanoTime(), in.readLong()));
+			break;
+		default:
+			throw new IOException("Unknown journal record " + type);
+		}
+	}
+
+	private static ManagementRequestMsg disableRequest(String resourceName, ActorRef user) {
+		return new ManagementRequestMsg(new ManagementRequest(resourceName, ManagementRequestType.DISABLE), user);
+	}
+}
@@ -0,0 +1,28 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import cmsc433.p4.util.LogMsg;
+
+/**
+ * Several log events sent to the logger in one message, oldest first.  Only
+ * sent by managers with log batching turned on.
+ */
+public class LogBatchMsg {
+	private final List<LogMsg> events;
+	
+	public LogBatchMsg (List<LogMsg> events) {
+		this.events = Collections.unmodifiableList(new ArrayList<LogMsg>(events));
+	}
+	
+	public List<LogMsg> getEvents () {
+		return events;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Log batch of " + events.size() + " events";
+	}
+}
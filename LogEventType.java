@@ -0,0 +1,52 @@
+package cmsc433.p4.enums;
+
+/**
+ * Kinds of events a resource manager logs.  The code identifies the event in
+ * binary audit logs and must never change once assigned.
+ */
+public enum LogEventType {
+	LOCAL_RESOURCE_CREATED			(1, LogLevel.INFO, null, null),
+	ACCESS_REQUEST_RECEIVED			(2, LogLevel.TRACE, AccessRequestType.class, null),
+	ACCESS_REQUEST_GRANTED			(3, LogLevel.INFO, AccessRequestType.class, null),
+	ACCESS_REQUEST_DENIED			(4, LogLevel.INFO, AccessRequestType.class, AccessRequestDenialReason.class),
+	ACCESS_REQUEST_FORWARDED		(5, LogLevel.TRACE, AccessRequestType.class, null),
+	MANAGEMENT_REQUEST_RECEIVED		(6, LogLevel.TRACE, ManagementRequestType.class, null),
+	MANAGEMENT_REQUEST_GRANTED		(7, LogLevel.INFO, ManagementRequestType.class, null),
+	MANAGEMENT_REQUEST_DENIED		(8, LogLevel.INFO, ManagementRequestType.class, ManagementRequestDenialReason.class),
+	MANAGEMENT_REQUEST_FORWARDED	(9, LogLevel.TRACE, ManagementRequestType.class, null),
+	RESOURCE_STATUS_CHANGED			(10, LogLevel.INFO, null, ResourceStatus.class),
+	ACCESS_RELEASE_RECEIVED			(11, LogLevel.TRACE, AccessType.class, null),
+	ACCESS_RELEASE_IGNORED			(12, LogLevel.INFO, AccessType.class, null),
+	ACCESS_RELEASED					(13, LogLevel.INFO, AccessType.class, null),
+	ACCESS_RELEASE_FORWARDED		(14, LogLevel.TRACE, AccessType.class, null),
+	REMOTE_RESOURCE_DISCOVERED		(15, LogLevel.TRACE, null, null),
+	ACCESS_REQUEST_REJECTED			(16, LogLevel.INFO, AccessRequestType.class, AccessRequestRejectionReason.class);	// Audit log and metrics only
+	
+	private static final LogEventType[] BY_CODE = new LogEventType[17];
+	static {
+		for(LogEventType type : values())
+		{
+			BY_CODE[type.code] = type;
+		}
+	}
+	
+	public final int code;
+	public final LogLevel level;
+	public final Class<? extends Enum<?>> kind;		// Enum of the request type recorded with the event, or null
+	public final Class<? extends Enum<?>> detail;	// Enum of the reason or status recorded with the event, or null
+	
+	LogEventType(int code, LogLevel level, Class<? extends Enum<?>> kind, Class<? extends Enum<?>> detail) {
+		this.code = code;
+		this.level = level;
+		this.kind = kind;
+		this.detail = detail;
+	}
+	
+	/**
+	 * @param code				Code read from an audit log
+	 * @return					the event type with that code, or null if there is none
+	 */
+	public static LogEventType fromCode(int code) {
+		return (code > 0 && code < BY_CODE.length) ? BY_CODE[code] : null;
+	}
+}
@@ -0,0 +1,11 @@
+package cmsc433.p4.enums;
+
+/**
+ * Importance of a manager's log events, lowest first.  A manager logs the
+ * events at or above its configured level.
+ */
+public enum LogLevel {
+	TRACE,				// Requests and releases received or forwarded, resources discovered
+	INFO,				// Grants, denials, releases and resource status changes
+	OFF					// Nothing is logged
+}
@@ -0,0 +1,149 @@
+package cmsc433.p4.actors;
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative long values, such as latencies in nanoseconds.
+ * Every power of two is split into 16 equal buckets, so any recorded value is
+ * known to within 1/16 of itself while the whole range of a long fits in
+ * under a thousand counters.  Recording is a few shifts and one array
+ * increment.  Not thread-safe: each actor keeps its own and hands out copies.
+ */
+public final class LogLinearHistogram {
+
+	private static final int SUB_BITS = 4;
+	private static final int SUB_COUNT = 1 << SUB_BITS;		// Linear buckets per power of two
+	private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB_COUNT;	// Up to Long.MAX_VALUE
+
+	private final long[] counts = new long[BUCKETS];
+	private long total = 0;
+	private long sum = 0;
+	private long max = 0;
+
+	/**
+	 * @param value				Value to count; negative values count as 0
+	 */
+	public void record(long value) {
+		if(value < 0)
+		{
+			value = 0;
+		}
+		counts[index(value)]++;
+		total++;
+		sum += value;
+		if(value > max)
+		{
+			max = value;
+		}
+	}
+
+	/**
+	 * Adds every value recorded in another histogram to this one
+	 * @param other				Histogram to add
+	 */
+	public void add(LogLinearHistogram other) {
+		for(int i = 0; i < BUCKETS; i++)
+		{
+			counts[i] += other.counts[i];
+		}
+		total += other.total;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * @return  an independent copy of this histogram
+	 */
+	public LogLinearHistogram copy() {
+		LogLinearHistogram copy = new LogLinearHistogram();
+		copy.add(this);
+		return copy;
+	}
+
+	public void reset() {
+		Arrays.fill(counts, 0);
+		total = 0;
+		sum = 0;
+		max = 0;
+	}
+
+	public long count() {
+		return total;
+	}
+
+	public long max() {
+		return max;
+	}
+
+	public double mean() {
+		return total == 0 ? 0 : (double) sum / total;
+	}
+
+	/**
+	 * @param percent			Percentile between 0 and 100
+	 * @return					the highest value the bucket holding that percentile can hold,
+	 * 							capped at the largest recorded value, or 0 if nothing was recorded
+	 */
+	public long percentile(double percent) {
+		if(total == 0)
+		{
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percent / 100.0 * total));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++)
+		{
+			seen += counts[i];
+			if(seen >= rank)
+			{
+				return Math.min(max, upperBound(i));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return  number of buckets, for walking the histogram with countAt and lowerBound
+	 */
+	public static int buckets() {
+		return BUCKETS;
+	}
+
+	public long countAt(int bucket) {
+		return counts[bucket];
+	}
+
+	/**
+	 * @param bucket			Bucket index
+	 * @return					smallest value counted in the bucket
+	 */
+	public static long lowerBound(int bucket) {
+		int group = bucket >>> SUB_BITS;
+		int sub = bucket & (SUB_COUNT - 1);
+		if(group == 0)
+		{
+			return sub;
+		}
+		return ((long) (SUB_COUNT | sub)) << (group - 1);
+	}
+
+	/**
+	 * @param bucket			Bucket index
+	 * @return					largest value counted in the bucket
+	 */
+	public static long upperBound(int bucket) {
+		return (bucket == BUCKETS - 1) ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+	}
+
+	/**
+	 * Values below 16 get a bucket each; above that the top five bits select the bucket
+	 */
+	static int index(long value) {
+		if(value < SUB_COUNT)
+		{
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		int sub = (int) (value >>> shift) & (SUB_COUNT - 1);
+		return (shift + 1) * SUB_COUNT + sub;
+	}
+}
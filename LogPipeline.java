@@ -0,0 +1,91 @@
+package cmsc433.p4.actors;
+import java.util.ArrayList;
+import cmsc433.p4.enums.*;
+import cmsc433.p4.util.*;
+import akka.actor.Cancellable;
+
+/**
+ * Decides which of a manager's log events are kept and buffers the kept ones
+ * until they are sent to the logger as one batch.  With a batch size of one
+ * nothing is buffered and every event goes out on its own, as before.
+ */
+class LogPipeline {
+
+	private final LogLevel level;
+	private final int sampleEvery;				// Keep one TRACE event out of this many
+	private final int batchSize;
+	private final ArrayList<LogMsg> buffer;
+	private int traceCount = 0;
+	Cancellable flushTimer;						// Pending flush of a partial batch, or null
+
+	/**
+	 * Constructor
+	 *
+	 * @param level				Lowest level logged
+	 * @param sampleEvery		Keep one TRACE event out of this many, 1 to keep all
+	 * @param batchSize			Events sent to the logger per message
+	 */
+	LogPipeline(LogLevel level, int sampleEvery, int batchSize) {
+		this.level = level;
+		this.sampleEvery = Math.max(1, sampleEvery);
+		this.batchSize = Math.max(1, batchSize);
+		this.buffer = new ArrayList<LogMsg>(this.batchSize);
+	}
+
+	/**
+	 * Checked before building an event, so dropped events cost no allocation.
+	 * Each TRACE check counts towards the sample.
+	 * @param eventLevel		Level of the event about to be logged
+	 * @return					true if the event should be logged
+	 */
+	boolean accepts(LogLevel eventLevel) {
+		if(eventLevel.compareTo(level) < 0)
+		{
+			return false;
+		}
+		if(eventLevel == LogLevel.TRACE && sampleEvery > 1)
+		{
+			return traceCount++ % sampleEvery == 0;
+		}
+		return true;
+	}
+
+	boolean isBatching() {
+		return batchSize > 1;
+	}
+
+	/**
+	 * Buffers an event
+	 * @param msg				Event to send later
+	 * @return					true if the batch is now full and should be flushed
+	 */
+	boolean add(LogMsg msg) {
+		buffer.add(msg);
+		return buffer.size() >= batchSize;
+	}
+
+	boolean isEmpty() {
+		return buffer.isEmpty();
+	}
+
+	/**
+	 * Empties the buffer
+	 * @return  the buffered events, oldest first
+	 */
+	ArrayList<LogMsg> drain() {
+		ArrayList<LogMsg> events = new ArrayList<LogMsg>(buffer);
+		buffer.clear();
+		return events;
+	}
+
+	/**
+	 * Cancels the pending flush timer, if any
+	 */
+	void cancelTimer() {
+		if(flushTimer != null)
+		{
+			flushTimer.cancel();
+			flushTimer = null;
+		}
+	}
+}
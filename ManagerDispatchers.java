@@ -0,0 +1,102 @@
+package cmsc433.p4.actors;
+import akka.actor.Props;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/**
+ * Dispatcher and mailbox configuration that keeps managers and the logger off
+ * the default dispatcher the user actors run on.  Pass config() to
+ * ActorSystem.create, then name the dispatcher and mailbox in the managers'
+ * settings and create the logger through onLoggerDispatcher:
+ *
+ * <pre>
+ * ActorSystem system = ActorSystem.create("p4", ManagerDispatchers.config(4, 20, 10000));
+ * ActorRef logger = system.actorOf(ManagerDispatchers.onLoggerDispatcher(loggerProps));
+ * ResourceManagerSettings settings = ResourceManagerSettings.defaults()
+ * 		.withDispatcher(ManagerDispatchers.MANAGER_DISPATCHER)
+ * 		.withMailbox(ManagerDispatchers.MANAGER_MAILBOX);
+ * </pre>
+ */
+public final class ManagerDispatchers {
+
+	/** Fork-join pool shared by the managers */
+	public static final String MANAGER_DISPATCHER = "resource-manager-dispatcher";
+	/** One thread per manager, for a few managers with heavy traffic */
+	public static final String PINNED_DISPATCHER = "resource-manager-pinned-dispatcher";
+	/** One thread for the logger, so a slow logger never holds a manager's thread */
+	public static final String LOGGER_DISPATCHER = "resource-logger-dispatcher";
+	/** ManagerPriorityMailbox */
+	public static final String MANAGER_MAILBOX = "resource-manager-mailbox";
+	/**
+	 * Bounded FIFO mailbox for the logger, only used when asked for.  Once it is
+	 * full, new log events go to dead letters and are lost rather than block a manager.
+	 */
+	public static final String LOGGER_MAILBOX = "resource-logger-mailbox";
+
+	private ManagerDispatchers() {
+	}
+
+	/**
+	 * Manager mailboxes are deliberately unbounded: a full mailbox would drop
+	 * releases, migrations and answers from other managers along with new
+	 * requests.  Overload is handled at admission instead, see
+	 * ResourceManagerSettings.withQueueLimits.
+	 * @param managerThreads	Threads in the managers' shared pool
+	 * @param throughput		Messages an actor processes before giving up its thread
+	 * @param loggerCapacity	Log messages queued for a logger with a dropping mailbox
+	 * 							before new ones are lost
+	 * @return					Configuration defining the dispatchers and mailboxes above,
+	 * 							falling back to the application's own configuration
+	 */
+	public static Config config(int managerThreads, int throughput, int loggerCapacity) {
+		StringBuilder text = new StringBuilder();
+		text.append(MANAGER_DISPATCHER).append(" {\n")
+			.append("  type = Dispatcher\n")
+			.append("  executor = \"fork-join-executor\"\n")
+			.append("  fork-join-executor {\n")
+			.append("    parallelism-min = ").append(managerThreads).append("\n")
+			.append("    parallelism-factor = 1.0\n")
+			.append("    parallelism-max = ").append(managerThreads).append("\n")
+			.append("  }\n")
+			.append("  throughput = ").append(throughput).append("\n")
+			.append("}\n");
+		text.append(PINNED_DISPATCHER).append(" {\n")
+			.append("  type = PinnedDispatcher\n")
+			.append("  executor = \"thread-pool-executor\"\n")
+			.append("  throughput = ").append(throughput).append("\n")
+			.append("}\n");
+		text.append(LOGGER_DISPATCHER).append(" {\n")
+			.append("  type = PinnedDispatcher\n")
+			.append("  executor = \"thread-pool-executor\"\n")
+			.append("  throughput = ").append(throughput).append("\n")
+			.append("}\n");
+		text.append(MANAGER_MAILBOX).append(" {\n")
+			.append("  mailbox-type = \"").append(ManagerPriorityMailbox.class.getName()).append("\"\n")
+			.append("}\n");
+		text.append(LOGGER_MAILBOX).append(" {\n")
+			.append("  mailbox-type = \"akka.dispatch.BoundedMailbox\"\n")
+			.append("  mailbox-capacity = ").append(loggerCapacity).append("\n")
+			.append("  mailbox-push-timeout-time = 0s\n")
+			.append("}\n");
+		return ConfigFactory.parseString(text.toString()).withFallback(ConfigFactory.load());
+	}
+
+	/**
+	 * @param loggerProps		Props of the logger actor
+	 * @return					the same props on the logger's own thread, keeping every log event
+	 */
+	public static Props onLoggerDispatcher(Props loggerProps) {
+		return onLoggerDispatcher(loggerProps, false);
+	}
+
+	/**
+	 * @param loggerProps		Props of the logger actor
+	 * @param dropWhenFull		true to bound the logger's mailbox and lose the log
+	 * 							events that do not fit, false to keep them all
+	 * @return					the same props on the logger's own thread
+	 */
+	public static Props onLoggerDispatcher(Props loggerProps, boolean dropWhenFull) {
+		Props props = loggerProps.withDispatcher(LOGGER_DISPATCHER);
+		return dropWhenFull ? props.withMailbox(LOGGER_MAILBOX) : props;
+	}
+}
@@ -0,0 +1,68 @@
+package cmsc433.p4.actors;
+import java.util.ArrayList;
+import java.util.Collection;
+import cmsc433.p4.enums.*;
+import cmsc433.p4.messages.*;
+import akka.actor.ActorRef;
+
+/**
+ * Counters and latency histograms of one manager.  Everything is allocated up
+ * front, so recording is an array increment or a histogram record and never
+ * allocates; only taking a snapshot copies.  Updated by the manager's own
+ * thread only.
+ */
+class ManagerMetrics {
+
+	private final long[] events = new long[LogEventType.values().length];
+	private final long[] denials = new long[AccessRequestDenialReason.values().length];
+	private final long[] rejections = new long[AccessRequestRejectionReason.values().length];
+	private long discoveriesFailed = 0;
+
+	//nanoseconds a request spent queued, a user held access, and a discovery took to find the owner
+	final LogLinearHistogram queueTime = new LogLinearHistogram();
+	final LogLinearHistogram holdTime = new LogLinearHistogram();
+	final LogLinearHistogram discoveryTime = new LogLinearHistogram();
+
+	/**
+	 * Counts a logged event, and the denial reason if it is a denial
+	 * @param event				Event type
+	 * @param reason			Denial reason, or null
+	 */
+	void event(LogEventType event, AccessRequestDenialReason reason) {
+		events[event.ordinal()]++;
+		if(reason != null)
+		{
+			denials[reason.ordinal()]++;
+		}
+	}
+
+	void rejected(AccessRequestRejectionReason reason) {
+		rejections[reason.ordinal()]++;
+	}
+
+	void discoveryFailed() {
+		discoveriesFailed++;
+	}
+
+	/**
+	 * @param source			Manager or shard the metrics belong to
+	 * @param resources			Lock state of every local resource
+	 * @param queuedRequests	Requests queued at the manager right now
+	 * @param shards			Shards that keep their own metrics, empty unless sharded
+	 * @return					a copy of every counter and histogram
+	 */
+	MetricsSnapshotMsg snapshot(ActorRef source, Collection<ResourceLockState> resources, int queuedRequests, Collection<ActorRef> shards) {
+		ArrayList<MetricsSnapshotMsg.ResourceContention> contention = new ArrayList<MetricsSnapshotMsg.ResourceContention>();
+		for(ResourceLockState state : resources)
+		{
+			if(state.queuedCount > 0 || state.busyCount > 0)
+			{
+				contention.add(new MetricsSnapshotMsg.ResourceContention(state.resource.getName(),
+						state.queuedCount, state.busyCount, state.waiters.size()));
+			}
+		}
+		return new MetricsSnapshotMsg(source, events.clone(), denials.clone(), rejections.clone(), discoveriesFailed,
+				queueTime.copy(), holdTime.copy(), discoveryTime.copy(), queuedRequests,
+				contention, new ArrayList<ActorRef>(shards));
+	}
+}
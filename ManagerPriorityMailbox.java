@@ -0,0 +1,52 @@
+package cmsc433.p4.actors;
+import cmsc433.p4.messages.*;
+import akka.actor.ActorSystem;
+import akka.dispatch.PriorityGenerator;
+import akka.dispatch.UnboundedStablePriorityMailbox;
+import com.typesafe.config.Config;
+
+/**
+ * Mailbox for resource managers that takes releases first, then answers from
+ * other managers, then everything else, and new acquisitions last.  Under a
+ * backlog, holders give resources back before more requests queue up for them.
+ * Messages of the same priority keep the order they arrived in.  Management
+ * requests share the priority of acquisitions, so a client's enable or disable
+ * never overtakes the access requests it sent before; only releases and
+ * answers from other managers move ahead of a client's earlier requests.
+ * Selected by name in the configuration, see ManagerDispatchers.
+ */
+public class ManagerPriorityMailbox extends UnboundedStablePriorityMailbox {
+
+	static final PriorityGenerator PRIORITY = new PriorityGenerator() {
+		@Override
+		public int gen(Object message) {
+			if(message instanceof AccessReleaseMsg || message instanceof BatchAccessReleaseMsg
+					|| message instanceof ResourceTransferMsg)
+			{
+				//a migrated resource's state must not be overtaken by requests forwarded after it
+				return 0;
+			}
+			if(message instanceof WhoHasResourceResponseMsg || message instanceof ResourceLocationMsg
+					|| message instanceof ResourceMovedMsg || message instanceof ResourceTransferAckMsg
+					|| message instanceof BatchAccessResultMsg || message instanceof AtomicAcquireStepResultMsg)
+			{
+				return 1;
+			}
+			if(message instanceof AccessRequestMsg || message instanceof TimedAccessRequestMsg
+					|| message instanceof BatchAccessRequestMsg || message instanceof AtomicAccessRequestMsg
+					|| message instanceof AtomicAcquireStepMsg || message instanceof ManagementRequestMsg)
+			{
+				return 3;
+			}
+			//setup, renewals, queries and the manager's own timers
+			return 2;
+		}
+	};
+
+	/**
+	 * Constructor called by Akka
+	 */
+	public ManagerPriorityMailbox(ActorSystem.Settings settings, Config config) {
+		super(PRIORITY);
+	}
+}
@@ -0,0 +1,25 @@
+package cmsc433.p4.messages;
+
+import akka.actor.ActorRef;
+
+/**
+ * Asks a manager for a copy of its metrics.  Answered with a
+ * MetricsSnapshotMsg sent to replyTo.  A sharded manager answers for itself
+ * and has each of its shards answer too.
+ */
+public class MetricsRequestMsg {
+	private final ActorRef replyTo;
+	
+	public MetricsRequestMsg (ActorRef replyTo) {
+		this.replyTo = replyTo;
+	}
+	
+	public ActorRef getReplyTo () {
+		return replyTo;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Metrics?";
+	}
+}
@@ -0,0 +1,179 @@
+package cmsc433.p4.messages;
+
+import java.util.Collections;
+import java.util.List;
+
+import cmsc433.p4.actors.LogLinearHistogram;
+import cmsc433.p4.enums.AccessRequestDenialReason;
+import cmsc433.p4.enums.AccessRequestRejectionReason;
+import cmsc433.p4.enums.LogEventType;
+import akka.actor.ActorRef;
+
+/**
+ * Copy of a manager's metrics, counted since it started.  Event counts follow
+ * the log: every logged event is counted whether or not the log filter keeps
+ * it.  Rejected requests are counted as ACCESS_REQUEST_REJECTED events and
+ * by rejection reason, not as denials.  Times are in nanoseconds.  A sharded
+ * manager's snapshot covers only routing; its shards answer with their own.
+ */
+public class MetricsSnapshotMsg {
+	
+	/**
+	 * Contention on one local resource.
+	 */
+	public static class ResourceContention {
+		private final String resourceName;
+		private final long queued;
+		private final long busy;
+		private final int waiting;
+		
+		public ResourceContention (String resourceName, long queued, long busy, int waiting) {
+			this.resourceName = resourceName;
+			this.queued = queued;
+			this.busy = busy;
+			this.waiting = waiting;
+		}
+		
+		public String getResourceName () {
+			return resourceName;
+		}
+		
+		/**
+		 * @return  requests that found the resource held and were queued
+		 */
+		public long getQueued () {
+			return queued;
+		}
+		
+		/**
+		 * @return  requests that found the resource held and were denied or shed
+		 */
+		public long getBusy () {
+			return busy;
+		}
+		
+		/**
+		 * @return  requests queued for the resource right now
+		 */
+		public int getWaiting () {
+			return waiting;
+		}
+		
+		@Override 
+		public String toString () {
+			return resourceName + ": " + queued + " queued, " + busy + " busy, " + waiting + " waiting";
+		}
+	}
+	
+	private final ActorRef source;
+	private final long[] events;				// By LogEventType ordinal
+	private final long[] denials;				// By AccessRequestDenialReason ordinal
+	private final long[] rejections;			// By AccessRequestRejectionReason ordinal
+	private final long discoveriesFailed;
+	private final LogLinearHistogram queueTime;
+	private final LogLinearHistogram holdTime;
+	private final LogLinearHistogram discoveryTime;
+	private final int queuedRequests;
+	private final List<ResourceContention> contention;
+	private final List<ActorRef> shards;
+	
+	public MetricsSnapshotMsg (ActorRef source, long[] events, long[] denials, long[] rejections, long discoveriesFailed,
+			LogLinearHistogram queueTime, LogLinearHistogram holdTime, LogLinearHistogram discoveryTime,
+			int queuedRequests, List<ResourceContention> contention, List<ActorRef> shards) {
+		this.source = source;
+		this.events = events;
+		this.denials = denials;
+		this.rejections = rejections;
+		this.discoveriesFailed = discoveriesFailed;
+		this.queueTime = queueTime;
+		this.holdTime = holdTime;
+		this.discoveryTime = discoveryTime;
+		this.queuedRequests = queuedRequests;
+		this.contention = Collections.unmodifiableList(contention);
+		this.shards = Collections.unmodifiableList(shards);
+	}
+	
+	/**
+	 * @return  the manager, or the shard, the metrics belong to
+	 */
+	public ActorRef getSource () {
+		return source;
+	}
+	
+	public long getEvents (LogEventType event) {
+		return events[event.ordinal()];
+	}
+	
+	public long getDenials (AccessRequestDenialReason reason) {
+		return denials[reason.ordinal()];
+	}
+	
+	public long getRejections (AccessRequestRejectionReason reason) {
+		return rejections[reason.ordinal()];
+	}
+	
+	/**
+	 * @return  access requests, management requests and releases sent on to another manager
+	 */
+	public long getForwarded () {
+		return getEvents(LogEventType.ACCESS_REQUEST_FORWARDED) + getEvents(LogEventType.MANAGEMENT_REQUEST_FORWARDED)
+				+ getEvents(LogEventType.ACCESS_RELEASE_FORWARDED);
+	}
+	
+	/**
+	 * @return  discoveries that ended without finding an owner
+	 */
+	public long getDiscoveriesFailed () {
+		return discoveriesFailed;
+	}
+	
+	/**
+	 * @return  time from queueing a request to granting or denying it
+	 */
+	public LogLinearHistogram getQueueTime () {
+		return queueTime;
+	}
+	
+	/**
+	 * @return  time from a user's first hold on a resource to the release of its last
+	 */
+	public LogLinearHistogram getHoldTime () {
+		return holdTime;
+	}
+	
+	/**
+	 * @return  time from asking the other managers about a resource to learning its owner
+	 */
+	public LogLinearHistogram getDiscoveryTime () {
+		return discoveryTime;
+	}
+	
+	/**
+	 * @return  requests queued at the manager right now
+	 */
+	public int getQueuedRequests () {
+		return queuedRequests;
+	}
+	
+	/**
+	 * @return  local resources that have seen contention
+	 */
+	public List<ResourceContention> getContention () {
+		return contention;
+	}
+	
+	/**
+	 * @return  shards answering with their own snapshots, empty unless sharded
+	 */
+	public List<ActorRef> getShards () {
+		return shards;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Metrics of " + source.path().name() + ": " + getEvents(LogEventType.ACCESS_REQUEST_GRANTED) + " granted, "
+				+ getEvents(LogEventType.ACCESS_REQUEST_DENIED) + " denied, " + getEvents(LogEventType.ACCESS_REQUEST_REJECTED) + " rejected, "
+				+ getForwarded() + " forwarded, "
+				+ queuedRequests + " queued";
+	}
+}
@@ -0,0 +1,42 @@
+package cmsc433.p4.messages;
+
+import akka.actor.ActorRef;
+
+/**
+ * Asks the manager owning a resource to hand it, with everyone holding and
+ * waiting for it, to another manager.  May be sent to any manager; it is
+ * routed to the owner like any other request.  Answered with a
+ * ResourceMovedMsg once the target has taken over, or right away with the
+ * unchanged owner if the resource cannot move.
+ */
+public class MigrateResourceMsg {
+	private final String resourceName;
+	private final ActorRef target;
+	private final ActorRef replyTo;
+	
+	public MigrateResourceMsg (String resourceName, ActorRef target, ActorRef replyTo) {
+		this.resourceName = resourceName;
+		this.target = target;
+		this.replyTo = replyTo;
+	}
+	
+	public String getResourceName () {
+		return resourceName;
+	}
+	
+	/**
+	 * @return  manager that is to own the resource
+	 */
+	public ActorRef getTarget () {
+		return target;
+	}
+	
+	public ActorRef getReplyTo () {
+		return replyTo;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Move " + resourceName + " to " + target;
+	}
+}
@@ -0,0 +1,134 @@
+package cmsc433.p4.actors;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import cmsc433.p4.enums.*;
+import cmsc433.p4.messages.*;
+import cmsc433.p4.util.*;
+import akka.actor.ActorRef;
+import akka.actor.Cancellable;
+
+/**
+ * Outcome of a batch of access requests as it is being collected.  When parts of
+ * the batch were forwarded to other managers, the batch stays open until each of
+ * them has sent back its part of the result, or until it times out.  Each part
+ * is answered under its own id, so the parts still missing are known.
+ */
+class PendingBatch {
+
+	final long batchId;
+	final ActorRef replyTo;						// Where the finished result goes
+	final ActorRef requestingUser;				// User the requests belong to
+	Cancellable timeout;						// Pending BatchTimeout, or null
+
+	//forwarded parts not answered yet, by the id they are answered under
+	private final HashMap<Long, List<AccessRequest>> outstanding = new HashMap<Long, List<AccessRequest>>();
+
+	private final ArrayList<AccessRequest> granted = new ArrayList<AccessRequest>();
+	private final ArrayList<AccessRequest> denied = new ArrayList<AccessRequest>();
+	private final ArrayList<AccessRequestDenialReason> denialReasons = new ArrayList<AccessRequestDenialReason>();
+	private final ArrayList<AccessRequest> pending = new ArrayList<AccessRequest>();
+	private final ArrayList<AccessRequest> rejected = new ArrayList<AccessRequest>();
+	private final ArrayList<AccessRequestRejectionReason> rejectionReasons = new ArrayList<AccessRequestRejectionReason>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param batchId			Id echoed in the result
+	 * @param replyTo			Actor the finished result is sent to
+	 * @param requestingUser	User the requests belong to
+	 */
+	PendingBatch(long batchId, ActorRef replyTo, ActorRef requestingUser) {
+		this.batchId = batchId;
+		this.replyTo = replyTo;
+		this.requestingUser = requestingUser;
+	}
+
+	void granted(AccessRequest request) {
+		granted.add(request);
+	}
+
+	void denied(AccessRequest request, AccessRequestDenialReason reason) {
+		denied.add(request);
+		denialReasons.add(reason);
+	}
+
+	void pending(AccessRequest request) {
+		pending.add(request);
+	}
+
+	void rejected(AccessRequest request, AccessRequestRejectionReason reason) {
+		rejected.add(request);
+		rejectionReasons.add(reason);
+	}
+
+	/**
+	 * @param partId			Id the part will be answered under
+	 * @param part				Requests sent to another manager or shard
+	 */
+	void forwarded(long partId, List<AccessRequest> part) {
+		outstanding.put(partId, part);
+	}
+
+	/**
+	 * Adds a forwarded part's result to this batch
+	 * @param part				Result sent back by another manager
+	 */
+	void merge(BatchAccessResultMsg part) {
+		if(outstanding.remove(part.getBatchId()) == null)
+		{
+			return;
+		}
+		granted.addAll(part.getGranted());
+		denied.addAll(part.getDenied());
+		denialReasons.addAll(part.getDenialReasons());
+		pending.addAll(part.getPending());
+		rejected.addAll(part.getRejected());
+		rejectionReasons.addAll(part.getRejectionReasons());
+	}
+
+	/**
+	 * @return  ids of the forwarded parts not answered yet
+	 */
+	ArrayList<Long> outstandingParts() {
+		return new ArrayList<Long>(outstanding.keySet());
+	}
+
+	/**
+	 * Gives up on the forwarded parts not answered yet, denying their requests
+	 * @param reason			Denial reason given to each of them
+	 * @return					the requests denied
+	 */
+	ArrayList<AccessRequest> abandonOutstanding(AccessRequestDenialReason reason) {
+		ArrayList<AccessRequest> abandoned = new ArrayList<AccessRequest>();
+		for(List<AccessRequest> part : outstanding.values())
+		{
+			for(AccessRequest request : part)
+			{
+				denied(request, reason);
+				abandoned.add(request);
+			}
+		}
+		outstanding.clear();
+		return abandoned;
+	}
+
+	boolean isComplete() {
+		return outstanding.isEmpty();
+	}
+
+	/**
+	 * Cancels the pending timeout, if any
+	 */
+	void cancelTimeout() {
+		if(timeout != null)
+		{
+			timeout.cancel();
+			timeout = null;
+		}
+	}
+
+	BatchAccessResultMsg toResult() {
+		return new BatchAccessResultMsg(batchId, granted, denied, denialReasons, pending, rejected, rejectionReasons, requestingUser);
+	}
+}
@@ -0,0 +1,57 @@
+package cmsc433.p4.actors;
+import java.util.HashSet;
+import java.util.LinkedList;
+import akka.actor.ActorRef;
+import akka.actor.Cancellable;
+
+/**
+ * An outstanding WhoHasResource broadcast for one resource name.  Requests for
+ * the name that arrive while the broadcast is out are parked here instead of
+ * starting another broadcast, and are all forwarded or denied together.
+ */
+class PendingDiscovery {
+
+	final String resourceName;
+	final ActorRef requestingUser;				// User whose request started the discovery
+	final LinkedList<Object> parked = new LinkedList<Object>();	// Requests waiting on the answer
+	final HashSet<ActorRef> outstanding;		// Managers that have not answered yet
+	final long firstRequestId;					// Answers to older broadcasts for the same name are stale
+	final long startedAt;						// System.nanoTime() of the first round
+	long requestId;								// Id of the latest round sent
+	int retriesLeft;
+	Cancellable timeout;						// Pending DiscoveryTimeout, or null
+
+	/**
+	 * Constructor
+	 *
+	 * @param resourceName		Name being looked for
+	 * @param requestingUser	User whose request started the discovery
+	 * @param managers			Managers the question is sent to
+	 * @param requestId			Correlation id of the first round
+	 * @param retries			Rounds to resend to silent managers before giving up
+	 */
+	PendingDiscovery(String resourceName, ActorRef requestingUser, Iterable<ActorRef> managers, long requestId, int retries) {
+		this.resourceName = resourceName;
+		this.requestingUser = requestingUser;
+		this.outstanding = new HashSet<ActorRef>();
+		for(ActorRef manager : managers)
+		{
+			outstanding.add(manager);
+		}
+		this.firstRequestId = requestId;
+		this.startedAt = System.nanoTime();
+		this.requestId = requestId;
+		this.retriesLeft = retries;
+	}
+
+	/**
+	 * Cancels the pending timeout, if any
+	 */
+	void cancelTimeout() {
+		if(timeout != null)
+		{
+			timeout.cancel();
+			timeout = null;
+		}
+	}
+}
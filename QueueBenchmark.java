@@ -0,0 +1,137 @@
+package cmsc433.p4.bench;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import cmsc433.p4.actors.ResourceManagerSettings;
+import cmsc433.p4.enums.*;
+import cmsc433.p4.messages.*;
+import cmsc433.p4.util.*;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * Paths that drain a deep wait queue.  Before every operation one holder
+ * writes the resource and the given number of users queue behind it; the
+ * operation is whatever empties the queue, timed until the last queued user
+ * has its answer.  Queued users release each grant as soon as they get it.
+ *
+ * Only sampled latency is measured: refilling the queue before every
+ * operation takes longer than the operation itself, and JMH would count it
+ * against throughput.  Sampling times each operation alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueueBenchmark {
+
+	private static final String HOT = "hot";
+
+	@Param({ "1", "16", "256" })
+	public int waiters;
+
+	private ActorSystem system;
+	private ActorRef manager;
+	private ActorRef holder;
+	private ActorRef admin;
+	private final ArrayList<ActorRef> queued = new ArrayList<ActorRef>();
+	private final BlockingQueue<Object> holderReplies = new LinkedBlockingQueue<Object>();
+	private final BlockingQueue<Object> adminReplies = new LinkedBlockingQueue<Object>();
+	private final BlockingQueue<Object> waiterReplies = new LinkedBlockingQueue<Object>();
+
+	@Setup
+	public void start() throws InterruptedException {
+		system = ActorSystem.create("queue-benchmark");
+		holder = system.actorOf(BenchmarkUser.props(holderReplies, false));
+		admin = system.actorOf(BenchmarkUser.props(adminReplies, false));
+		for(int i = 0; i < waiters; i++)
+		{
+			queued.add(system.actorOf(BenchmarkUser.props(waiterReplies, true)));
+		}
+		List<List<String>> resources = Collections.singletonList(Collections.singletonList(HOT));
+		manager = BenchmarkFixture.managers(system, ResourceManagerSettings.defaults(), resources, holder, holderReplies).get(0);
+	}
+
+	/**
+	 * Starts every operation from a fresh resource with a writer and a full queue
+	 */
+	@Setup(Level.Invocation)
+	public void fillQueue(BenchmarkParams params) throws InterruptedException {
+		waiterReplies.clear();
+		adminReplies.clear();
+		BenchmarkFixture.reset(manager, Collections.singletonList(HOT), holder, holderReplies);
+		BenchmarkFixture.request(manager, holder, HOT, AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		BenchmarkFixture.await(holderReplies, AccessRequestGrantedMsg.class);
+
+		AccessRequestType type = params.getBenchmark().endsWith("readerWakeup")
+				? AccessRequestType.CONCURRENT_READ_BLOCKING : AccessRequestType.EXCLUSIVE_WRITE_BLOCKING;
+		for(ActorRef user : queued)
+		{
+			BenchmarkFixture.request(manager, user, HOT, type);
+		}
+		int depth = BenchmarkFixture.sync(manager, HOT, holder, holderReplies);
+		if(depth != waiters)
+		{
+			throw new IllegalStateException(depth + " requests queued, expected " + waiters);
+		}
+	}
+
+	@TearDown
+	public void stop() {
+		system.terminate();
+	}
+
+	/**
+	 * The writer releases and write access passes down the queue one waiter at a time
+	 */
+	@Benchmark
+	public void writerHandoff() throws InterruptedException {
+		BenchmarkFixture.release(manager, holder, HOT, AccessType.EXCLUSIVE_WRITE);
+		awaitAll(AccessRequestGrantedMsg.class);
+	}
+
+	/**
+	 * The writer releases and every queued reader is admitted in one pass
+	 */
+	@Benchmark
+	public void readerWakeup() throws InterruptedException {
+		BenchmarkFixture.release(manager, holder, HOT, AccessType.EXCLUSIVE_WRITE);
+		awaitAll(AccessRequestGrantedMsg.class);
+	}
+
+	/**
+	 * Another user disables the resource and every queued request is denied
+	 */
+	@Benchmark
+	public void disableDeepQueue() throws InterruptedException {
+		ManagementRequest disable = new ManagementRequest(HOT, ManagementRequestType.DISABLE);
+		manager.tell(new ManagementRequestMsg(disable, admin), ActorRef.noSender());
+		awaitAll(AccessRequestDeniedMsg.class);
+	}
+
+	private void awaitAll(Class<?> reply) throws InterruptedException {
+		for(int i = 0; i < waiters; i++)
+		{
+			BenchmarkFixture.await(waiterReplies, reply);
+		}
+	}
+}
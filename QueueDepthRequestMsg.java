@@ -0,0 +1,31 @@
+package cmsc433.p4.messages;
+
+import akka.actor.ActorRef;
+
+/**
+ * Asks the manager owning a resource how many access requests are waiting,
+ * so a client can back off before its requests are shed as overloaded.
+ * Answered with a QueueDepthResponseMsg.
+ */
+public class QueueDepthRequestMsg {
+	private final String resourceName;
+	private final ActorRef replyTo;
+	
+	public QueueDepthRequestMsg (String resourceName, ActorRef replyTo) {
+		this.resourceName = resourceName;
+		this.replyTo = replyTo;
+	}
+	
+	public String getResourceName () {
+		return resourceName;
+	}
+	
+	public ActorRef getReplyTo () {
+		return replyTo;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Queue depth of " + resourceName + "?";
+	}
+}
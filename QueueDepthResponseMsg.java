@@ -0,0 +1,52 @@
+package cmsc433.p4.messages;
+
+/**
+ * Queue depths at the manager owning a resource.  Both depths are -1 if no
+ * manager has the resource.  A limit of 0 means the queue is unbounded.
+ */
+public class QueueDepthResponseMsg {
+	private final String resourceName;
+	private final int resourceDepth;
+	private final int managerDepth;
+	private final int resourceLimit;
+	private final int managerLimit;
+	
+	public QueueDepthResponseMsg (String resourceName, int resourceDepth, int managerDepth, int resourceLimit, int managerLimit) {
+		this.resourceName = resourceName;
+		this.resourceDepth = resourceDepth;
+		this.managerDepth = managerDepth;
+		this.resourceLimit = resourceLimit;
+		this.managerLimit = managerLimit;
+	}
+	
+	public String getResourceName () {
+		return resourceName;
+	}
+	
+	/**
+	 * @return  requests waiting for the resource
+	 */
+	public int getResourceDepth () {
+		return resourceDepth;
+	}
+	
+	/**
+	 * @return  requests waiting for any resource of the owning manager, or of its shard
+	 */
+	public int getManagerDepth () {
+		return managerDepth;
+	}
+	
+	public int getResourceLimit () {
+		return resourceLimit;
+	}
+	
+	public int getManagerLimit () {
+		return managerLimit;
+	}
+	
+	@Override 
+	public String toString () {
+		return resourceName + ": " + resourceDepth + " queued, " + managerDepth + " at its manager";
+	}
+}
@@ -0,0 +1,27 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sent by a resource manager to the manager a set of its resources hash to,
+ * so that manager can route requests for them without a broadcast.  The sender
+ * of the message is the owning manager.
+ */
+public class RegisterResourcesMsg {
+	private final List<String> resource_names;
+	
+	public RegisterResourcesMsg (List<String> resourceNames) {
+		this.resource_names = Collections.unmodifiableList(new ArrayList<String>(resourceNames));
+	}
+	
+	public List<String> getResourceNames () {
+		return resource_names;
+	}
+	
+	@Override 
+	public String toString () {
+		return "I have " + resource_names;
+	}
+}
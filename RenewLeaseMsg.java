@@ -0,0 +1,30 @@
+package cmsc433.p4.messages;
+
+import akka.actor.ActorRef;
+
+/**
+ * Extends the lease on everything a user holds on a resource, for managers
+ * that grant access with leases.  Ignored if the user holds nothing there.
+ */
+public class RenewLeaseMsg {
+	private final String resourceName;
+	private final ActorRef user;
+	
+	public RenewLeaseMsg (String resourceName, ActorRef user) {
+		this.resourceName = resourceName;
+		this.user = user;
+	}
+	
+	public String getResourceName () {
+		return resourceName;
+	}
+	
+	public ActorRef getUser () {
+		return user;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Renew lease on " + resourceName;
+	}
+}
@@ -0,0 +1,97 @@
+package cmsc433.p4.bench;
+import java.util.IdentityHashMap;
+import java.util.concurrent.BlockingQueue;
+import cmsc433.p4.actors.LogLinearHistogram;
+import cmsc433.p4.messages.*;
+import cmsc433.p4.util.*;
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+
+/**
+ * Plays one user of a trace.  Sends each trace event it is given to its
+ * manager as itself, and times every access request until its answer.  On a
+ * Report it hands a copy of its counts to the replay driver.
+ */
+public class ReplayUser extends AbstractActor {
+
+	/**
+	 * Asks a user for its Stats.
+	 */
+	static final class Report {
+		static final Report INSTANCE = new Report();
+	}
+
+	/**
+	 * Copy of one user's counts at the time of a Report.
+	 */
+	static final class Stats {
+		final LogLinearHistogram grantLatency;	// Nanoseconds from sending a request to its grant
+		final long granted;
+		final long denied;
+		final long rejected;
+		final long unanswered;					// Access requests still waiting for an answer
+
+		Stats(LogLinearHistogram grantLatency, long granted, long denied, long rejected, long unanswered) {
+			this.grantLatency = grantLatency;
+			this.granted = granted;
+			this.denied = denied;
+			this.rejected = rejected;
+			this.unanswered = unanswered;
+		}
+	}
+
+	private final ActorRef manager;
+	private final BlockingQueue<Object> reports;	// Read by the driver thread only
+
+	private final IdentityHashMap<AccessRequest, Long> sentAt = new IdentityHashMap<AccessRequest, Long>();
+	private final LogLinearHistogram grantLatency = new LogLinearHistogram();
+	private long granted = 0;
+	private long denied = 0;
+	private long rejected = 0;
+
+	static Props props(ActorRef manager, BlockingQueue<Object> reports) {
+		return Props.create(ReplayUser.class, manager, reports);
+	}
+
+	public ReplayUser(ActorRef manager, BlockingQueue<Object> reports) {
+		this.manager = manager;
+		this.reports = reports;
+	}
+
+	@Override
+	public Receive createReceive() {
+		return receiveBuilder()
+				.match(TraceEvent.class, this::send)
+				.match(AccessRequestGrantedMsg.class, msg -> {
+					Long start = sentAt.remove(msg.getAccessRequest());
+					if(start != null)
+					{
+						grantLatency.record(System.nanoTime() - start);
+					}
+					granted++;
+				})
+				.match(AccessRequestDeniedMsg.class, msg -> {
+					sentAt.remove(msg.getAccessRequest());
+					denied++;
+				})
+				.match(AccessRequestRejectedMsg.class, msg -> {
+					sentAt.remove(msg.getRequest().getAccessRequest());
+					rejected++;
+				})
+				.match(Report.class, msg -> reports.add(new Stats(grantLatency.copy(), granted, denied, rejected, sentAt.size())))
+				.matchAny(msg -> {
+					//management answers and lease notices are not measured
+				})
+				.build();
+	}
+
+	private void send(TraceEvent event) {
+		Object msg = event.toMessage(getSelf());
+		if(msg instanceof AccessRequestMsg)
+		{
+			sentAt.put(((AccessRequestMsg) msg).getAccessRequest(), System.nanoTime());
+		}
+		manager.tell(msg, getSelf());
+	}
+}
@@ -0,0 +1,29 @@
+package cmsc433.p4.messages;
+
+import java.util.Collection;
+
+/**
+ * Sent once by a resource manager to each of its peers with the names of all
+ * of its local resources, so peers can route to them without a WhoHasResource
+ * round-trip.  The sender of the message is the owning manager.
+ */
+public class ResourceAdvertisementMsg {
+	private final String[] resource_names;
+	
+	public ResourceAdvertisementMsg (Collection<String> resourceNames) {
+		this.resource_names = resourceNames.toArray(new String[resourceNames.size()]);
+	}
+	
+	public int size () {
+		return resource_names.length;
+	}
+	
+	public String getResourceName (int i) {
+		return resource_names[i];
+	}
+	
+	@Override 
+	public String toString () {
+		return "I have " + resource_names.length + " resources";
+	}
+}
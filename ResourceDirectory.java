@@ -0,0 +1,102 @@
+package cmsc433.p4.actors;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import akka.actor.ActorRef;
+
+/**
+ * Bounded cache of where remote resources live.  An entry either names the
+ * manager owning a resource or records that no manager had it, so repeated
+ * requests for a missing resource are answered without asking the other
+ * managers again.  Entries expire after a time-to-live and the least recently
+ * used entry is dropped once the cache is full.
+ */
+class ResourceDirectory {
+
+	/**
+	 * Cached location of one resource.
+	 */
+	static final class Location {
+		final ActorRef owner;					// Managing actor, or null if no manager has the resource
+		final long expiresAt;					// System.nanoTime() deadline, or NEVER
+
+		Location(ActorRef owner, long expiresAt) {
+			this.owner = owner;
+			this.expiresAt = expiresAt;
+		}
+
+		boolean isMissing() {
+			return owner == null;
+		}
+	}
+
+	private static final long NEVER = Long.MAX_VALUE;
+
+	private final LinkedHashMap<String, Location> entries;
+	private final long ownerTtl;				// Nanoseconds, 0 for no expiry
+	private final long missingTtl;				// Nanoseconds, 0 disables negative entries
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity			Maximum number of cached names
+	 * @param ownerTtlMillis	Lifetime of an owner entry in milliseconds, 0 for no expiry
+	 * @param missingTtlMillis	Lifetime of a not-found entry in milliseconds, 0 to never cache misses
+	 */
+	ResourceDirectory(final int capacity, long ownerTtlMillis, long missingTtlMillis) {
+		this.ownerTtl = ownerTtlMillis * 1000000L;
+		this.missingTtl = missingTtlMillis * 1000000L;
+		this.entries = new LinkedHashMap<String, Location>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Location> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * @param name				Resource name
+	 * @param now				Current System.nanoTime()
+	 * @return					the live entry for the name, or null if it is unknown or expired
+	 */
+	Location lookup(String name, long now) {
+		Location entry = entries.get(name);
+		if(entry != null && entry.expiresAt != NEVER && now - entry.expiresAt > 0)
+		{
+			entries.remove(name);
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Remembers the manager owning a resource
+	 * @param name				Resource name
+	 * @param owner				Managing actor
+	 * @param now				Current System.nanoTime()
+	 */
+	void putOwner(String name, ActorRef owner, long now) {
+		entries.put(name, new Location(owner, ownerTtl == 0 ? NEVER : now + ownerTtl));
+	}
+
+	/**
+	 * Remembers that no manager owns a resource
+	 * @param name				Resource name
+	 * @param now				Current System.nanoTime()
+	 */
+	void putMissing(String name, long now) {
+		if(missingTtl > 0)
+		{
+			entries.put(name, new Location(null, now + missingTtl));
+		}
+	}
+
+	void remove(String name) {
+		entries.remove(name);
+	}
+
+	int size() {
+		return entries.size();
+	}
+}
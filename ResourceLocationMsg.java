@@ -0,0 +1,30 @@
+package cmsc433.p4.messages;
+
+import akka.actor.ActorRef;
+
+/**
+ * Tells a resource manager which manager owns a resource, so it can send later
+ * requests for that resource straight to the owner.
+ */
+public class ResourceLocationMsg {
+	private final String resource_name;
+	private final ActorRef owner;
+	
+	public ResourceLocationMsg (String resource_name, ActorRef owner) {
+		this.resource_name = resource_name;
+		this.owner = owner;
+	}
+	
+	public String getResourceName () {
+		return resource_name;
+	}
+	
+	public ActorRef getOwner () {
+		return owner;
+	}
+	
+	@Override 
+	public String toString () {
+		return owner + " has " + resource_name;
+	}
+}
@@ -0,0 +1,147 @@
+package cmsc433.p4.actors;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import cmsc433.p4.messages.*;
+import cmsc433.p4.util.*;
+import akka.actor.ActorRef;
+
+/**
+ * Everything a resource manager knows about one of its local resources: who
+ * holds it, who is waiting for it and whether a disable is pending.  Kept in a
+ * single object so the manager can reach all of it with one lookup by name.
+ */
+class ResourceLockState {
+
+	Resource resource;							// Replaced by the initializing caller's object after recovery
+
+	//current holders; write access is exclusive so it needs only one owner and a count
+	final HolderSet readers = new HolderSet();
+	ActorRef writer = null;
+	int writeHolds = 0;
+	long writeSince = 0;						// System.nanoTime() the writer's first hold began
+
+	//blocked access requests, in arrival order
+	final WaitQueue waiters = new WaitQueue();
+	//queued requests that belong to an atomic acquisition, answered to its coordinator
+	final IdentityHashMap<AccessRequestMsg, AtomicAcquireStepMsg> queuedSteps = new IdentityHashMap<AccessRequestMsg, AtomicAcquireStepMsg>();
+
+	//deadlines of queued requests that may only wait so long
+	final IdentityHashMap<AccessRequestMsg, WaitTimer> waitTimers = new IdentityHashMap<AccessRequestMsg, WaitTimer>();
+
+	//leases of the current holders, when the manager grants with leases
+	final HashMap<ActorRef, Lease> leases = new HashMap<ActorRef, Lease>();
+
+	//disablement
+	boolean pendingDisable = false;
+	final LinkedList<ManagementRequestMsg> disableWaiters = new LinkedList<ManagementRequestMsg>();
+
+	//contention: requests that found the resource held and were queued, or denied as busy
+	long queuedCount = 0;
+	long busyCount = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param resource			Local resource this state belongs to
+	 */
+	ResourceLockState(Resource resource) {
+		this.resource = resource;
+	}
+
+	/**
+	 * @return  true if no user holds read or write access
+	 */
+	boolean isFree() {
+		return readers.isEmpty() && writeHolds == 0;
+	}
+
+	/**
+	 * @param user				User to look up
+	 * @return					true if the user holds read or write access
+	 */
+	boolean isHeldBy(ActorRef user) {
+		return user.equals(writer) || readers.contains(user);
+	}
+
+	/**
+	 * @param user				User asking for read access
+	 * @return					true if no one but the user is writing
+	 */
+	boolean canRead(ActorRef user) {
+		return writer == null || writer.equals(user);
+	}
+
+	/**
+	 * @param user				User asking for write access
+	 * @return					true if the resource is free, already written by the user,
+	 * 							or read by no one but the user
+	 */
+	boolean canWrite(ActorRef user) {
+		if(writer != null)
+		{
+			return writer.equals(user);
+		}
+		return readers.isEmpty() || readers.heldOnlyBy(user);
+	}
+
+	void acquireRead(ActorRef user) {
+		readers.acquire(user);
+	}
+
+	void acquireWrite(ActorRef user) {
+		if(writeHolds++ == 0)
+		{
+			writeSince = System.nanoTime();
+		}
+		writer = user;
+	}
+
+	/**
+	 * @param user				User releasing read access
+	 * @return					nanoseconds the user held read access if this was its last hold,
+	 * 							0 if it still holds some, or -1 if it held none
+	 */
+	long releaseRead(ActorRef user) {
+		HolderSet.Hold hold = readers.release(user);
+		if(hold == null)
+		{
+			return -1;
+		}
+		return (hold.count == 0) ? heldFor(hold.since) : 0;
+	}
+
+	/**
+	 * @param user				User releasing write access
+	 * @return					nanoseconds the user held write access if this was its last hold,
+	 * 							0 if it still holds some, or -1 if it held none
+	 */
+	long releaseWrite(ActorRef user) {
+		if(writer == null || !writer.equals(user))
+		{
+			return -1;
+		}
+		if(--writeHolds == 0)
+		{
+			writer = null;
+			return heldFor(writeSince);
+		}
+		return 0;
+	}
+
+	/**
+	 * @return  nanoseconds since a hold began; at least 1, since 0 means still held
+	 */
+	private static long heldFor(long since) {
+		return Math.max(1, System.nanoTime() - since);
+	}
+
+	/**
+	 * Forgets a queued request once it leaves the queue
+	 * @param accessMsg			Request removed from the waiters
+	 * @return					the atomic acquisition step it was queued for, or null for a plain request
+	 */
+	AtomicAcquireStepMsg takeStep(AccessRequestMsg accessMsg) {
+		return queuedSteps.isEmpty() ? null : queuedSteps.remove(accessMsg);
+	}
+}
@@ -1,37 +1,95 @@
 package cmsc433.p4.actors;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import cmsc433.p4.enums.*;
 import cmsc433.p4.messages.*;
 import cmsc433.p4.util.*;
 import akka.actor.ActorRef;
+import akka.actor.ActorRefProvider;
 import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import akka.actor.ExtendedActorSystem;
 import akka.actor.Props;
 import akka.actor.AbstractActor.Receive;
 import akka.actor.AbstractActor;
+import akka.japi.pf.FI;
+import scala.PartialFunction;
+import scala.concurrent.duration.Duration;
+import scala.runtime.BoxedUnit;
 
 public class ResourceManagerActor extends AbstractActor {
 	
 	private ActorRef logger;					// Actor to send logging messages to
+	private final ResourceManagerSettings settings;
+	private final LogPipeline logs;				// Filters and batches messages to the logger
+	private ActorRef identity;					// Manager this actor speaks for: itself, or the router of a shard
+	private BinaryEventLog audit;				// Binary audit trail, or null if turned off
+	private LockJournal journal;				// Write-ahead journal of the lock table, or null if turned off
+	//messages held back while a journaled message is handled, sent once its records are on disk
+	private final ArrayList<ActorRef> heldTargets = new ArrayList<ActorRef>();
+	private final ArrayList<Object> heldMessages = new ArrayList<Object>();
+	private boolean holding = false;
+	private final ManagerMetrics metrics = new ManagerMetrics();
+	private final HotResourceTracker hotResources;	// Most contended local resources, or null if not tracked
+	
+	//leases and other deadlines, advanced by a tick that only runs while something is scheduled
+	TimerWheel timers;
+	Cancellable timerTick;
+	private final TimerWheel.Expiry onTimer = new TimerWheel.Expiry() {
+		public void expired(TimerWheel.Timer timer) {
+			if(timer instanceof Lease)
+			{
+				expireLease((Lease) timer);
+			}
+			else if(timer instanceof WaitTimer)
+			{
+				expireWait((WaitTimer) timer);
+			}
+		}
+	};
 	
 	//variables
 	LinkedList<ActorRef> resourceManagers;
 	LinkedList<ActorRef> localUsers;
-	HashMap<String, Resource> resourceNames;
 	
-	HashMap<Resource, LinkedList<ActorRef>> resourceQueues = new HashMap<Resource, LinkedList<ActorRef>>();
-	HashMap<Resource, LinkedList<AccessRequestMsg>> queueMessages = new HashMap<Resource, LinkedList<AccessRequestMsg>>();
+	//lock state of every local resource, keyed by resource name
+	HashMap<String, ResourceLockState> lockTable = new HashMap<String, ResourceLockState>();
+	//lock state read back from the journal, until the manager's resources are initialized again
+	HashMap<String, ResourceLockState> recoveredTable = null;
+	//blocked requests across all local resources, for the manager's queue limit
+	int queuedRequests = 0;
+	
+	//where remote resources live, including names known not to exist
+	ResourceDirectory directory;
+	//WhoHasResource broadcasts that have not been answered yet, keyed by resource name
+	HashMap<String, PendingDiscovery> discoveries = new HashMap<String, PendingDiscovery>();
+	long lastDiscoveryId = 0;
+	
+	//batches split across managers, by the id of each part not answered yet
+	HashMap<Long, PendingBatch> pendingBatches = new HashMap<Long, PendingBatch>();
+	long lastBatchId = 0;
 	
-	HashMap<Resource, LinkedList<ActorRef>> readAccess = new HashMap<Resource, LinkedList<ActorRef>>();
-	HashMap<Resource, LinkedList<ActorRef>> writeAccess = new HashMap<Resource, LinkedList<ActorRef>>();
+	//hash placement: ring over all managers, and owners of the names that hash to this manager
+	ConsistentHashRing ring;
+	HashSet<ActorRef> peers = new HashSet<ActorRef>();
+	HashMap<String, ActorRef> placements = new HashMap<String, ActorRef>();
 	
-	HashMap<Resource, Boolean> pendingDisable = new HashMap<Resource, Boolean>();
-	HashMap<Resource, LinkedList<ActorRef>> awaitingDisable = new HashMap<Resource, LinkedList<ActorRef>>();
-	HashMap<Resource, LinkedList<ManagementRequestMsg>> disableMessages = new HashMap<Resource, LinkedList<ManagementRequestMsg>>();
+	//sharded mode: child actors holding the local resources, and the shard of each local name
+	ArrayList<ActorRef> shards = new ArrayList<ActorRef>();
+	HashMap<String, ActorRef> shardOf = new HashMap<String, ActorRef>();
 	
-	HashMap<String, ActorRef> resourceMap = new HashMap<String, ActorRef>();
-	HashMap<String, HashMap<ActorRef, Object>> remoteMessages = new HashMap<String, HashMap<ActorRef, Object>>();
-	HashMap<String, Integer> resourceCounts = new HashMap<String, Integer>();
+	//atomic acquisitions coordinated by this manager, keyed by transaction id
+	HashMap<Long, AtomicAcquisition> acquisitions = new HashMap<Long, AtomicAcquisition>();
+	long lastTransactionId = 0;
 	
 	
 	/**
@@ -39,7 +97,25 @@ public class ResourceManagerActor extends AbstractActor {
 	 * @return  Props structure
 	 */
 	static Props props (ActorRef logger) {
-		return Props.create(ResourceManagerActor.class, logger);
+		return props(logger, ResourceManagerSettings.defaults());
+	}
+	
+	/**
+	 * Props structure-generator for this class.
+	 * @param settings			Tuning knobs for the new manager
+	 * @return  Props structure
+	 */
+	static Props props (ActorRef logger, ResourceManagerSettings settings) {
+		Props props = Props.create(ResourceManagerActor.class, logger, settings);
+		if(settings.getDispatcher() != null)
+		{
+			props = props.withDispatcher(settings.getDispatcher());
+		}
+		if(settings.getMailbox() != null)
+		{
+			props = props.withMailbox(settings.getMailbox());
+		}
+		return props;
 	}
 	
 	/**
@@ -53,13 +129,226 @@ public class ResourceManagerActor extends AbstractActor {
 		return newManager;
 	}
 	
+	/**
+	 * Factory method for creating resource managers with non-default settings
+	 * @param logger			Actor to send logging messages to
+	 * @param system			Actor system in which manager will execute
+	 * @param settings			Tuning knobs for the new manager
+	 * @return					Reference to new manager
+	 */
+	public static ActorRef makeResourceManager (ActorRef logger, ActorSystem system, ResourceManagerSettings settings) {
+		ActorRef newManager = system.actorOf(props(logger, settings));
+		return newManager;
+	}
+	
 	/**
 	 * Sends a message to the Logger Actor
 	 * @param msg The message to be sent to the logger
 	 */
 	public void log (LogMsg msg) {
-		logger.tell(msg, getSelf());
-		//System.out.println(msg.toString());
+		if(!logs.isBatching())
+		{
+			logger.tell(msg, identity);
+			//System.out.println(msg.toString());
+			return;
+		}
+		if(logs.add(msg))
+		{
+			flushLog();
+		}
+		else if(logs.flushTimer == null && settings.getLogFlushMillis() > 0)
+		{
+			//first event of a new batch, bound how long it waits
+			logs.flushTimer = getContext().getSystem().scheduler().scheduleOnce(
+					Duration.create(settings.getLogFlushMillis(), TimeUnit.MILLISECONDS),
+					getSelf(), LogFlush.INSTANCE, getContext().dispatcher(), getSelf());
+		}
+	}
+	
+	/**
+	 * Sends a message on behalf of this manager.  While a journaled message is
+	 * handled, it is held back until the journal has its changes on disk.
+	 * @param target			Recipient
+	 * @param msg				Message to send
+	 */
+	private void send(ActorRef target, Object msg) {
+		if(holding)
+		{
+			heldTargets.add(target);
+			heldMessages.add(msg);
+			return;
+		}
+		target.tell(msg, identity);
+	}
+	
+	/**
+	 * Sends the messages held back while a journaled message was handled
+	 */
+	private void sendHeld() {
+		holding = false;
+		for(int i = 0; i < heldTargets.size(); i++)
+		{
+			heldTargets.get(i).tell(heldMessages.get(i), identity);
+		}
+		heldTargets.clear();
+		heldMessages.clear();
+	}
+	
+	/**
+	 * Logs an event about an access request.  Every event goes to the audit log;
+	 * the LogMsg is only built if the log filter keeps the event.
+	 * @param event				Event type
+	 * @param actor				Requesting user, or the manager the request is forwarded to
+	 * @param request			Access request
+	 * @param reason			Denial reason, or null
+	 */
+	private void logAccess(LogEventType event, ActorRef actor, AccessRequest request, AccessRequestDenialReason reason) {
+		metrics.event(event, reason);
+		if(audit != null)
+		{
+			audit.append(event, request.getType().ordinal() + 1, (reason == null) ? 0 : reason.ordinal() + 1, request.getResourceName(), actor, identity);
+		}
+		if(!logs.accepts(event.level))
+		{
+			return;
+		}
+		switch(event)
+		{
+		case ACCESS_REQUEST_GRANTED:
+			log(LogMsg.makeAccessRequestGrantedLogMsg(actor, identity, request));
+			break;
+		case ACCESS_REQUEST_DENIED:
+			log(LogMsg.makeAccessRequestDeniedLogMsg(actor, identity, request, reason));
+			break;
+		case ACCESS_REQUEST_FORWARDED:
+			log(LogMsg.makeAccessRequestForwardedLogMsg(identity, actor, request));
+			break;
+		default:
+			log(LogMsg.makeAccessRequestReceivedLogMsg(actor, identity, request));
+		}
+	}
+	
+	/**
+	 * Records an access request that was shed by a queue limit or gave up
+	 * waiting.  LogMsg has no form for rejections, so they reach the audit log
+	 * and the metrics but not the logger, rather than passing for busy denials.
+	 * @param actor				Requesting user
+	 * @param request			Access request
+	 * @param reason			Why the request was rejected
+	 */
+	private void logRejected(ActorRef actor, AccessRequest request, AccessRequestRejectionReason reason) {
+		metrics.event(LogEventType.ACCESS_REQUEST_REJECTED, null);
+		metrics.rejected(reason);
+		if(audit != null)
+		{
+			audit.append(LogEventType.ACCESS_REQUEST_REJECTED, request.getType().ordinal() + 1, reason.ordinal() + 1, request.getResourceName(), actor, identity);
+		}
+	}
+	
+	/**
+	 * Logs an event about a management request
+	 * @param event				Event type
+	 * @param actor				Requesting user, or the manager the request is forwarded to
+	 * @param request			Management request
+	 * @param reason			Denial reason, or null
+	 */
+	private void logManagement(LogEventType event, ActorRef actor, ManagementRequest request, ManagementRequestDenialReason reason) {
+		metrics.event(event, null);
+		if(audit != null)
+		{
+			audit.append(event, request.getType().ordinal() + 1, (reason == null) ? 0 : reason.ordinal() + 1, request.getResourceName(), actor, identity);
+		}
+		if(!logs.accepts(event.level))
+		{
+			return;
+		}
+		switch(event)
+		{
+		case MANAGEMENT_REQUEST_GRANTED:
+			log(LogMsg.makeManagementRequestGrantedLogMsg(actor, identity, request));
+			break;
+		case MANAGEMENT_REQUEST_DENIED:
+			log(LogMsg.makeManagementRequestDeniedLogMsg(actor, identity, request, reason));
+			break;
+		case MANAGEMENT_REQUEST_FORWARDED:
+			log(LogMsg.makeManagementRequestForwardedLogMsg(identity, actor, request));
+			break;
+		default:
+			log(LogMsg.makeManagementRequestReceivedLogMsg(actor, identity, request));
+		}
+	}
+	
+	/**
+	 * Logs an event about an access release
+	 * @param event				Event type
+	 * @param actor				Releasing user, or the manager the release is forwarded to
+	 * @param release			Access release
+	 */
+	private void logRelease(LogEventType event, ActorRef actor, AccessRelease release) {
+		metrics.event(event, null);
+		if(audit != null)
+		{
+			audit.append(event, release.getType().ordinal() + 1, 0, release.getResourceName(), actor, identity);
+		}
+		if(!logs.accepts(event.level))
+		{
+			return;
+		}
+		switch(event)
+		{
+		case ACCESS_RELEASE_IGNORED:
+			log(LogMsg.makeAccessReleaseIgnoredLogMsg(actor, identity, release));
+			break;
+		case ACCESS_RELEASED:
+			log(LogMsg.makeAccessReleasedLogMsg(actor, identity, release));
+			break;
+		case ACCESS_RELEASE_FORWARDED:
+			log(LogMsg.makeAccessReleaseForwardedLogMsg(identity, actor, release));
+			break;
+		default:
+			log(LogMsg.makeAccessReleaseReceivedLogMsg(actor, identity, release));
+		}
+	}
+	
+	/**
+	 * Logs an event about a resource itself
+	 * @param event				Event type
+	 * @param actor				Manager owning a discovered resource, or null
+	 * @param resourceName		Resource name
+	 * @param status			New status of the resource, or null
+	 */
+	private void logResource(LogEventType event, ActorRef actor, String resourceName, ResourceStatus status) {
+		metrics.event(event, null);
+		if(audit != null)
+		{
+			audit.append(event, 0, (status == null) ? 0 : status.ordinal() + 1, resourceName, actor, identity);
+		}
+		if(!logs.accepts(event.level))
+		{
+			return;
+		}
+		switch(event)
+		{
+		case RESOURCE_STATUS_CHANGED:
+			log(LogMsg.makeResourceStatusChangedLogMsg(identity, resourceName, status));
+			break;
+		case REMOTE_RESOURCE_DISCOVERED:
+			log(LogMsg.makeRemoteResourceDiscoveredLogMsg(identity, actor, resourceName));
+			break;
+		default:
+			log(LogMsg.makeLocalResourceCreatedLogMsg(identity, resourceName));
+		}
+	}
+	
+	/**
+	 * Sends every buffered log event to the logger in one message
+	 */
+	private void flushLog() {
+		logs.cancelTimer();
+		if(!logs.isEmpty())
+		{
+			logger.tell(new LogBatchMsg(logs.drain()), identity);
+		}
 	}
 	
 	/**
@@ -68,762 +357,2177 @@ public class ResourceManagerActor extends AbstractActor {
 	 * @param logger			Actor to send logging messages to
 	 */
 	private ResourceManagerActor(ActorRef logger) {
+		this(logger, ResourceManagerSettings.defaults());
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param logger			Actor to send logging messages to
+	 * @param settings			Tuning knobs for this manager
+	 */
+	private ResourceManagerActor(ActorRef logger, ResourceManagerSettings settings) {
 		super();
 		this.logger = logger;
+		this.settings = settings;
+		this.logs = new LogPipeline(settings.getLogLevel(), settings.getLogSampleEvery(), settings.getLogBatchSize());
+		this.directory = new ResourceDirectory(settings.getDirectoryCapacity(),
+				settings.getOwnerTtlMillis(), settings.getMissingTtlMillis());
+		this.timers = newTimerWheel();
+		//a router's shards see the contention, so only they track it
+		this.hotResources = (settings.getHotResourceCount() > 0 && settings.getShards() == 0)
+				? new HotResourceTracker(settings.getHotResourceCount(), settings.getHotResourceSketchWidth()) : null;
 	}
 	
-	@Override
-	public Receive createReceive() {
-		return receiveBuilder()
-				.match(Object.class, this::onReceive)
-				.build();
+	/**
+	 * Self-message fired when a discovery round has waited too long for answers.
+	 */
+	private static final class DiscoveryTimeout {
+		final String resourceName;
+		final long requestId;					// Round the timeout was armed for
+		
+		DiscoveryTimeout(String resourceName, long requestId) {
+			this.resourceName = resourceName;
+			this.requestId = requestId;
+		}
 	}
-
-	// You may want to add data structures for managing local resources and users, storing
-	// remote managers, etc.
-	//
-	// REMEMBER:  YOU ARE NOT ALLOWED TO CREATE MUTABLE DATA STRUCTURES THAT ARE SHARED BY
-	// MULTIPLE ACTORS!
 	
-	/* (non-Javadoc)
-	 * 
-	 * You must provide an implementation of the onReceive() method below.
-	 * 
-	 * @see akka.actor.AbstractActor#createReceive
+	/**
+	 * Self-message fired when forwarded parts of a batch have not been answered in time.
 	 */
-	
-	public void onReceive(Object msg) throws Exception {
-		
-		try {
-			
-		ActorRef sender = getSender();
+	private static final class BatchTimeout {
+		final PendingBatch batch;
 		
-		//==========INITIALIZATION==========
-		if(msg instanceof AddRemoteManagersRequestMsg) 
-		{
-			resourceManagers = new LinkedList<ActorRef>(((AddRemoteManagersRequestMsg) msg).getManagerList());
-			
-			//respond to sender
-			sender.tell(new AddRemoteManagersResponseMsg((AddRemoteManagersRequestMsg) msg), getSelf());
-		}
-		else if(msg instanceof AddLocalUsersRequestMsg) 
-		{
-			localUsers = new LinkedList<ActorRef>(((AddLocalUsersRequestMsg) msg).getLocalUsers());
-			
-			//respond to sender
-			sender.tell(new AddLocalUsersResponseMsg((AddLocalUsersRequestMsg) msg), getSelf());
+		BatchTimeout(PendingBatch batch) {
+			this.batch = batch;
 		}
-		else if(msg instanceof AddInitialLocalResourcesRequestMsg)
+	}
+	
+	/**
+	 * Self-message that advances the timer wheel.
+	 */
+	private static final class TimerTick {
+		static final TimerTick INSTANCE = new TimerTick();
+	}
+	
+	/**
+	 * Self-message fired when a partial log batch has waited long enough.
+	 */
+	private static final class LogFlush {
+		static final LogFlush INSTANCE = new LogFlush();
+	}
+	
+	@Override
+	public void preStart() {
+		identity = settings.isShard() ? getContext().getParent() : getSelf();
+		for(int i = 0; i < settings.getShards(); i++)
 		{
-			LinkedList<Resource> resources = new LinkedList<Resource>(((AddInitialLocalResourcesRequestMsg) msg).getLocalResources());
-			resourceNames = new HashMap<String, Resource>();
-			
-			//enable all resources
-			for(int i = 0; i < resources.size(); i++) {
-				resources.get(i).enable();
-				resourceNames.put(resources.get(i).getName(), resources.get(i));
-				resourceQueues.put(resources.get(i), new LinkedList<ActorRef>());
-				queueMessages.put(resources.get(i), new LinkedList<AccessRequestMsg>());
-				writeAccess.put(resources.get(i), new LinkedList<ActorRef>());
-				readAccess.put(resources.get(i), new LinkedList<ActorRef>());
-				pendingDisable.put(resources.get(i), false);
-				awaitingDisable.put(resources.get(i), new LinkedList<ActorRef>());
-				resourceMap.put(resources.get(i).getName(), getSelf());
-				log(LogMsg.makeLocalResourceCreatedLogMsg(getSelf(), resources.get(i).getName()));
-			}
-			
-			//respond to sender
-			sender.tell(new AddInitialLocalResourcesResponseMsg((AddInitialLocalResourcesRequestMsg) msg), getSelf());
+			shards.add(getContext().actorOf(props(logger, settings.asShard()), "shard-" + i));
 		}
 		
-		//==========LOCAL REQUEST PROCESSING==========
-		else if(msg instanceof AccessRequestMsg) 
+		if(settings.getAuditLogDirectory() != null)
 		{
-			AccessRequestType request = ((AccessRequestMsg) msg).getAccessRequest().getType();
-			String resourceName = ((AccessRequestMsg) msg).getAccessRequest().getResourceName();
-			ActorRef requestingUser = ((AccessRequestMsg) msg).getReplyTo();
-			log(LogMsg.makeAccessRequestReceivedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest()));
-			
-			if(request == AccessRequestType.CONCURRENT_READ_BLOCKING) 
+			//one directory per manager; the actor name stays the same across restarts
+			File directory = new File(settings.getAuditLogDirectory(), storageName());
+			try
 			{
-				if(resourceNames.containsKey(resourceName)) 
-				{
-					Resource currResource = resourceNames.get(resourceName);
-					
-					//check if resource is pending disablement
-					if(pendingDisable.get(currResource) == true)
-					{
-						requestingUser.tell(new AccessRequestDeniedMsg((AccessRequestMsg) msg, AccessRequestDenialReason.RESOURCE_DISABLED), getSelf());
-						log(LogMsg.makeAccessRequestDeniedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
-					}
-					else if(resourceNames.get(resourceName).getStatus() == ResourceStatus.ENABLED)
-					{
-						if(writeAccess.get(currResource).isEmpty()) 
-						{
-							//Resource is not occupied by a writer
-							readAccess.get(currResource).add(requestingUser);
-							log(LogMsg.makeAccessRequestGrantedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest()));
-							requestingUser.tell(new AccessRequestGrantedMsg((AccessRequestMsg) msg), getSelf());
-						}
-						else if(writeAccess.get(currResource).peek().equals(requestingUser) || 
-								readAccess.get(currResource).contains(requestingUser))
-						{
-							//Re-entrant case!
-							readAccess.get(currResource).add(requestingUser);
-							log(LogMsg.makeAccessRequestGrantedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest()));
-							requestingUser.tell(new AccessRequestGrantedMsg((AccessRequestMsg) msg), getSelf());
-						}
-						else
-						{
-							//resource is being written by someone else, Add to write Queue
-							resourceQueues.get(currResource).add(requestingUser);
-							queueMessages.get(currResource).add((AccessRequestMsg) msg);
-						}
-					}
-					else
-					{
-						//resource is disabled, DENY
-						requestingUser.tell(new AccessRequestDeniedMsg((AccessRequestMsg) msg, AccessRequestDenialReason.RESOURCE_DISABLED), getSelf());
-						log(LogMsg.makeAccessRequestDeniedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
-					}
-				}
-				else
-				{
-					if(resourceMap.containsKey(resourceName))
-					{
-						//resource manager is known
-						ActorRef targetRM = resourceMap.get(resourceName);
-						log(LogMsg.makeAccessRequestForwardedLogMsg(getSelf(), targetRM, ((AccessRequestMsg) msg).getAccessRequest()));
-						targetRM.tell(msg, getSelf());
-					}
-					else
-					{
-						//resource manager is not known
-						//Resource is not local or does not exist!
-						ActorRef targetRM;
-						
-						if(!remoteMessages.containsKey(resourceName))
-						{
-							remoteMessages.put(resourceName, new HashMap<ActorRef, Object>());
-						}
-						
-						remoteMessages.get(resourceName).put(requestingUser, msg);
-						resourceCounts.put(resourceName, resourceManagers.size());
-						
-						for(int i = 0; i < resourceManagers.size(); i++)
-						{
-							targetRM = resourceManagers.get(i);
-							targetRM.tell(new WhoHasResourceRequestMsg(resourceName, requestingUser), getSelf());
-						}
-						
-					}
-				}
-				
+				audit = new BinaryEventLog(directory, settings.getAuditSegmentBytes());
 			}
-			else if(request == AccessRequestType.CONCURRENT_READ_NONBLOCKING)
+			catch(IOException e)
 			{
-				if(resourceNames.containsKey(resourceName)) 
-				{
-					Resource currResource = resourceNames.get(resourceName);
-					
-					//check if resource is pending disablement
-					if(pendingDisable.get(currResource) == true)
-					{
-						requestingUser.tell(new AccessRequestDeniedMsg((AccessRequestMsg) msg, AccessRequestDenialReason.RESOURCE_DISABLED), getSelf());
-						log(LogMsg.makeAccessRequestDeniedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
-					}
-					else if(resourceNames.get(resourceName).getStatus() == ResourceStatus.ENABLED)
-					{
-						if(writeAccess.get(currResource).peek() == null) 
-						{
-							//Resource is not occupied by a writer
-							readAccess.get(currResource).add(requestingUser);
-							log(LogMsg.makeAccessRequestGrantedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest()));
-							requestingUser.tell(new AccessRequestGrantedMsg((AccessRequestMsg) msg), getSelf());
-						}
-						else if(writeAccess.get(currResource).peek().equals(requestingUser) || 
-								readAccess.get(currResource).contains(requestingUser))
-						{
-							//Re-entrant case!
-							readAccess.get(currResource).add(requestingUser);
-							log(LogMsg.makeAccessRequestGrantedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest()));
-							requestingUser.tell(new AccessRequestGrantedMsg((AccessRequestMsg) msg), getSelf());
-						}
-						else
-						{
-							//resource is being written by someone else! Deny
-							requestingUser.tell(new AccessRequestDeniedMsg((AccessRequestMsg) msg, AccessRequestDenialReason.RESOURCE_BUSY), getSelf());
-							log(LogMsg.makeAccessRequestDeniedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest(), AccessRequestDenialReason.RESOURCE_BUSY));
-						}
-					}
-					else
-					{
-						//resource is disabled, to deny request
-						requestingUser.tell(new AccessRequestDeniedMsg((AccessRequestMsg) msg, AccessRequestDenialReason.RESOURCE_DISABLED), getSelf());
-						log(LogMsg.makeAccessRequestDeniedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
-					}
-				}
-				else
-				{
-					//Resource is not local or does not exist!
-					if(resourceMap.containsKey(resourceName))
-					{
-						//resource manager is known
-						ActorRef targetRM = resourceMap.get(resourceName);
-						log(LogMsg.makeAccessRequestForwardedLogMsg(getSelf(), targetRM, ((AccessRequestMsg) msg).getAccessRequest()));
-						targetRM.tell(new AccessRequestMsg(((AccessRequestMsg) msg).getAccessRequest() , requestingUser), getSelf());
-					}
-					else
-					{
-						//resource manager is not known
-						//Resource is not local or does not exist!
-						ActorRef targetRM;
-						
-						if(!remoteMessages.containsKey(resourceName))
-						{
-							remoteMessages.put(resourceName, new HashMap<ActorRef, Object>());
-						}
-						
-						remoteMessages.get(resourceName).put(requestingUser, msg);
-						resourceCounts.put(resourceName, resourceManagers.size());
-						
-						for(int i = 0; i < resourceManagers.size(); i++)
-						{
-							targetRM = resourceManagers.get(i);
-							targetRM.tell(new WhoHasResourceRequestMsg(resourceName, requestingUser), getSelf());
-						}
-					}
-				}
+				System.out.println("Error opening audit log " + directory + ": " + e);
 			}
-			else if(request == AccessRequestType.EXCLUSIVE_WRITE_BLOCKING) 
+		}
+		if(settings.getJournalDirectory() != null && shards.isEmpty())
+		{
+			//recovered here, and kept for the resources the manager is initialized with again
+			File directory = new File(settings.getJournalDirectory(), storageName());
+			final ActorRefProvider provider = ((ExtendedActorSystem) getContext().getSystem()).provider();
+			try
 			{
-				if(resourceNames.containsKey(resourceName)) 
-				{
-					Resource currResource = resourceNames.get(resourceName);
-					
-					//check if resource is pending disablement
-					if(pendingDisable.get(currResource) == true)
-					{
-						requestingUser.tell(new AccessRequestDeniedMsg((AccessRequestMsg) msg, AccessRequestDenialReason.RESOURCE_DISABLED), getSelf());
-						log(LogMsg.makeAccessRequestDeniedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
-					}
-					else if(resourceNames.get(resourceName).getStatus() == ResourceStatus.ENABLED)
-					{
-						if(writeAccess.get(currResource).isEmpty() && readAccess.get(currResource).isEmpty()) 
-						{
-							//Resource is not occupied by a writer
-							writeAccess.get(currResource).add(requestingUser);
-							log(LogMsg.makeAccessRequestGrantedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest()));
-							requestingUser.tell(new AccessRequestGrantedMsg((AccessRequestMsg) msg), getSelf());
-						}
-						else if(!writeAccess.get(currResource).isEmpty() && writeAccess.get(currResource).peek().equals(requestingUser))
-						{
-							//Re-entrant case!
-							writeAccess.get(currResource).add(requestingUser);
-							log(LogMsg.makeAccessRequestGrantedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest()));
-							requestingUser.tell(new AccessRequestGrantedMsg((AccessRequestMsg) msg), getSelf());
-						}
-						else if(readAccess.get(currResource).contains(requestingUser) &&
-								(writeAccess.get(currResource).peek() == null || writeAccess.get(currResource).contains(requestingUser))) 
-						{
-							//this user is the only one with read access to this resource
-							//check that this is only user in readAccess
-							boolean readClear = true;
-							for(int i = 0; i < readAccess.get(currResource).size(); i++) 
-							{
-								if(!readAccess.get(currResource).get(i).equals(requestingUser))
-								{
-									//there is another user currently holding reading access
-									readClear = false;
-								}
-							}
-							
-							if(!readClear)
-							{
-								//another user is reading, add to resource queue
-								resourceQueues.get(currResource).add(requestingUser);
-								queueMessages.get(currResource).add((AccessRequestMsg) msg);
-							}
-							else
-							{
-								//user is the only one reading, no one else is writing
-								writeAccess.get(currResource).add(requestingUser);
-								log(LogMsg.makeAccessRequestGrantedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest()));
-								requestingUser.tell(new AccessRequestGrantedMsg((AccessRequestMsg) msg), getSelf());
-							}
-						}
-						else
-						{
-							//resource is being written by someone else! add to resource queue
-							resourceQueues.get(currResource).add(requestingUser);
-							queueMessages.get(currResource).add((AccessRequestMsg) msg);
-						}
+				journal = new LockJournal(directory, settings.getJournalSnapshotEvery());
+				HashMap<String, ResourceLockState> recovered = journal.recover(new LockJournal.Resolver() {
+					public ActorRef resolve(String path) {
+						return provider.resolveActorRef(path);
 					}
-					else
-					{
-						//resource is disabled, to deny request
-						requestingUser.tell(new AccessRequestDeniedMsg((AccessRequestMsg) msg, AccessRequestDenialReason.RESOURCE_DISABLED), getSelf());
-						log(LogMsg.makeAccessRequestDeniedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
-					}
-				}
-				else
+				});
+				if(!recovered.isEmpty())
 				{
-					//Resource is not local or does not exist!
-					if(resourceMap.containsKey(resourceName))
-					{
-						//resource manager is known
-						ActorRef targetRM = resourceMap.get(resourceName);
-						log(LogMsg.makeAccessRequestForwardedLogMsg(getSelf(), targetRM, ((AccessRequestMsg) msg).getAccessRequest()));
-						targetRM.tell(new AccessRequestMsg(((AccessRequestMsg) msg).getAccessRequest() , requestingUser), getSelf());
-					}
-					else
+					lockTable = recovered;
+					recoveredTable = recovered;
+					long now = System.nanoTime();
+					long nowMillis = System.currentTimeMillis();
+					for(ResourceLockState state : lockTable.values())
 					{
-						//resource manager is not known
-						//Resource is not local or does not exist!
-						ActorRef targetRM;
-						
-						if(!remoteMessages.containsKey(resourceName))
+						queuedRequests += state.waiters.size();
+						//deadlines that passed while the manager was down expire on the first tick
+						for(WaitTimer timer : state.waitTimers.values())
 						{
-							remoteMessages.put(resourceName, new HashMap<ActorRef, Object>());
+							timers.schedule(timer, TimeUnit.MILLISECONDS.toNanos(Math.max(0, timer.deadlineMillis - nowMillis)), now);
+							armTimerTick();
 						}
-						
-						remoteMessages.get(resourceName).put(requestingUser, msg);
-						resourceCounts.put(resourceName, resourceManagers.size()); 
-						
-						for(int i = 0; i < resourceManagers.size(); i++)
-						{
-							targetRM = resourceManagers.get(i);
-							targetRM.tell(new WhoHasResourceRequestMsg(resourceName, requestingUser), getSelf());
-						}
-					}
-				}
-				
-			}
-			else if(request == AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING)
-			{
-				if(resourceNames.containsKey(resourceName)) 
-				{
-					Resource currResource = resourceNames.get(resourceName);
-					
-					//check if resource is pending disablement
-					if(pendingDisable.get(currResource) == true)
-					{
-						requestingUser.tell(new AccessRequestDeniedMsg((AccessRequestMsg) msg, AccessRequestDenialReason.RESOURCE_DISABLED), getSelf());
-						log(LogMsg.makeAccessRequestDeniedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
 					}
-					else if(resourceNames.get(resourceName).getStatus() == ResourceStatus.ENABLED)
+					if(settings.getLeaseMillis() > 0)
 					{
-						if(writeAccess.get(currResource).peek() == null && readAccess.get(currResource).peek() == null) 
-						{
-							//Resource is not occupied by a writer
-							writeAccess.get(currResource).add(requestingUser);
-							log(LogMsg.makeAccessRequestGrantedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest()));
-							requestingUser.tell(new AccessRequestGrantedMsg((AccessRequestMsg) msg), getSelf());
-						}
-						else if(writeAccess.get(currResource).peek().equals(requestingUser))
-						{
-							//Re-entrant case!
-							writeAccess.get(currResource).add(requestingUser);
-							log(LogMsg.makeAccessRequestGrantedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest()));
-							requestingUser.tell(new AccessRequestGrantedMsg((AccessRequestMsg) msg), getSelf());
-						}
-						else if(readAccess.get(currResource).contains(requestingUser) &&
-								(writeAccess.get(currResource).peek() == null || writeAccess.get(currResource).contains(requestingUser))) 
+						//holders from before the restart get a fresh lease, so a lost user cannot hold forever
+						for(ResourceLockState state : lockTable.values())
 						{
-							//this user is the only one with read access to this resource
-							//check that this is only user in readAccess
-							boolean readClear = true;
-							for(int i = 0; i < readAccess.get(currResource).size(); i++) 
-							{
-								if(!readAccess.get(currResource).get(i).equals(requestingUser))
-								{
-									//there is another user currently holding reading access
-									readClear = false;
-								}
-							}
-							
-							if(!readClear)
+							for(ActorRef reader : state.readers.users())
 							{
-								//another user is reading, deny access
-								requestingUser.tell(new AccessRequestDeniedMsg((AccessRequestMsg) msg, AccessRequestDenialReason.RESOURCE_BUSY), getSelf());
-								log(LogMsg.makeAccessRequestDeniedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest(), AccessRequestDenialReason.RESOURCE_BUSY));
+								startLease(state, reader);
 							}
-							else
+							if(state.writer != null)
 							{
-								//user is the only one reading, no one else is writing
-								writeAccess.get(currResource).add(requestingUser);
-								log(LogMsg.makeAccessRequestGrantedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest()));
-								requestingUser.tell(new AccessRequestGrantedMsg((AccessRequestMsg) msg), getSelf());
+								startLease(state, state.writer);
 							}
 						}
-						else
-						{
-							//resource is being written by someone else! Deny
-							requestingUser.tell(new AccessRequestDeniedMsg((AccessRequestMsg) msg, AccessRequestDenialReason.RESOURCE_BUSY), getSelf());
-							log(LogMsg.makeAccessRequestDeniedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest(), AccessRequestDenialReason.RESOURCE_BUSY));
-						}
-					}
-					else
-					{
-						//resource is disabled, to deny request
-						requestingUser.tell(new AccessRequestDeniedMsg((AccessRequestMsg) msg, AccessRequestDenialReason.RESOURCE_DISABLED), getSelf());
-						log(LogMsg.makeAccessRequestDeniedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) msg).getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
 					}
 				}
-				else
-				{
-					//Resource is not local or does not exist!
-					if(resourceMap.containsKey(resourceName))
-					{
-						//resource manager is known
-						ActorRef targetRM = resourceMap.get(resourceName);
-						log(LogMsg.makeAccessRequestForwardedLogMsg(getSelf(), targetRM, ((AccessRequestMsg) msg).getAccessRequest()));
-						targetRM.tell(new AccessRequestMsg(((AccessRequestMsg) msg).getAccessRequest() , requestingUser), getSelf());
-					}
-					else
-					{
-						//resource manager is not known
-						//Resource is not local or does not exist!
-						ActorRef targetRM;
-						
-						if(!remoteMessages.containsKey(resourceName))
-						{
-							remoteMessages.put(resourceName, new HashMap<ActorRef, Object>());
-						}
-						
-						remoteMessages.get(resourceName).put(requestingUser, msg);
-						resourceCounts.put(resourceName, resourceManagers.size());
-						
-						for(int i = 0; i < resourceManagers.size(); i++)
-						{
-							targetRM = resourceManagers.get(i);
-							targetRM.tell(new WhoHasResourceRequestMsg(resourceName, requestingUser), getSelf());
-						}
-						
-						
+			}
+			catch(IOException e)
+			{
+				System.out.println("Error recovering journal " + directory + ": " + e);
+				journal = null;
+			}
+		}
+	}
+	
+	/**
+	 * @return  name of this manager's audit and journal directories; the actor
+	 * 			name, prefixed with the router's for a shard
+	 */
+	private String storageName() {
+		String name = getSelf().path().name();
+		return settings.isShard() ? getContext().getParent().path().name() + "-" + name : name;
+	}
+	
+	/**
+	 * Sharded mode: wraps the handler of a message about one resource, so that
+	 * the shard holding the resource handles it and answers the user instead
+	 * @param resourceName		Gets the name of the resource a message is about
+	 * @param handler			Handler for resources that are not held by a shard
+	 * @return					the handler itself unless the manager is sharded
+	 */
+	private <T> FI.UnitApply<T> sharded(final Function<T, String> resourceName, final FI.UnitApply<T> handler) {
+		if(settings.getShards() == 0)
+		{
+			return handler;
+		}
+		return msg -> {
+			ActorRef shard = shardOf.get(resourceName.apply(msg));
+			if(shard != null)
+			{
+				shard.forward(msg, getContext());
+				return;
+			}
+			handler.apply(msg);
+		};
+	}
+	
+	/**
+	 * Sharded mode: hands every local resource to the shard its name hashes to
+	 * @param resources			Local resources of this manager
+	 */
+	private void assignShards(LinkedList<Resource> resources) {
+		ArrayList<ArrayList<Resource>> parts = new ArrayList<ArrayList<Resource>>();
+		for(int i = 0; i < shards.size(); i++)
+		{
+			parts.add(new ArrayList<Resource>());
+		}
+		shardOf = new HashMap<String, ActorRef>();
+		for(Resource resource : resources)
+		{
+			int i = (int) ((ConsistentHashRing.hash(resource.getName()) >>> 1) % shards.size());
+			parts.get(i).add(resource);
+			shardOf.put(resource.getName(), shards.get(i));
+		}
+		for(int i = 0; i < shards.size(); i++)
+		{
+			shards.get(i).tell(new AddInitialLocalResourcesRequestMsg(parts.get(i), getSelf()), getSelf());
+		}
+	}
+	
+	/**
+	 * @return  names of every local resource, whether held here or by a shard
+	 */
+	private Set<String> localNames() {
+		return shards.isEmpty() ? lockTable.keySet() : shardOf.keySet();
+	}
+	
+	@Override
+	public void postStop() {
+		for(PendingDiscovery discovery : discoveries.values())
+		{
+			discovery.cancelTimeout();
+		}
+		for(PendingBatch batch : pendingBatches.values())
+		{
+			batch.cancelTimeout();
+		}
+		flushLog();
+		if(timerTick != null)
+		{
+			timerTick.cancel();
+		}
+		if(audit != null)
+		{
+			audit.close();
+		}
+		if(journal != null)
+		{
+			try
+			{
+				journal.close();
+			}
+			catch(IOException e)
+			{
+				System.out.println("Error closing journal: " + e);
+			}
+		}
+	}
+	
+	/**
+	 * Logs an exception thrown by a handler instead of letting the actor restart.
+	 * A restart would lose the peers, users, directory and shard map, which the
+	 * journal does not hold, even where it restores the lock table.
+	 */
+	@Override
+	public void aroundReceive(PartialFunction<Object, BoxedUnit> receive, Object msg) {
+		try
+		{
+			super.aroundReceive(receive, msg);
+		}
+		catch(Exception e)
+		{
+			System.out.println(e.toString());
+		}
+	}
+	
+	/**
+	 * @return  one typed handler per message type
+	 */
+	@Override
+	public Receive createReceive() {
+		return receiveBuilder()
+				//initialization
+				.match(AddRemoteManagersRequestMsg.class, this::onAddRemoteManagers)
+				.match(AddLocalUsersRequestMsg.class, this::onAddLocalUsers)
+				.match(AddInitialLocalResourcesRequestMsg.class, this::onAddInitialLocalResources)
+				.match(AddInitialLocalResourcesResponseMsg.class, msg -> {
+					//a shard has created its resources
+				})
+				//requests from users and other managers
+				.match(AccessRequestMsg.class, sharded(msg -> msg.getAccessRequest().getResourceName(),
+						journaled(msg -> requestAccess(msg, msg, 0))))
+				.match(TimedAccessRequestMsg.class, sharded(msg -> msg.getRequest().getAccessRequest().getResourceName(),
+						journaled(msg -> requestAccess(msg.getRequest(), msg, msg.getMaxWaitMillis()))))
+				.match(ManagementRequestMsg.class, sharded(msg -> msg.getRequest().getResourceName(),
+						journaled(this::onManagementRequest)))
+				.match(AccessReleaseMsg.class, sharded(msg -> msg.getAccessRelease().getResourceName(),
+						journaled(this::onAccessRelease)))
+				.match(BatchAccessRequestMsg.class, journaled(this::onBatchAccessRequest))
+				.match(BatchAccessResultMsg.class, this::onBatchAccessResult)
+				.match(BatchAccessReleaseMsg.class, journaled(this::onBatchAccessRelease))
+				.match(RenewLeaseMsg.class, sharded(RenewLeaseMsg::getResourceName, this::onRenewLease))
+				.match(QueueDepthRequestMsg.class, sharded(QueueDepthRequestMsg::getResourceName, this::onQueueDepthRequest))
+				.match(MetricsRequestMsg.class, this::onMetricsRequest)
+				.match(HotResourcesRequestMsg.class, this::onHotResourcesRequest)
+				//migration
+				.match(MigrateResourceMsg.class, journaled(this::onMigrateResource))
+				.match(ResourceTransferMsg.class, journaled(this::onResourceTransfer))
+				.match(ResourceTransferAckMsg.class, this::onResourceTransferAck)
+				.match(ResourceMovedMsg.class, this::onResourceMoved)
+				.match(AtomicAccessRequestMsg.class, journaled(this::onAtomicAccessRequest))
+				.match(AtomicAcquireStepMsg.class, sharded(msg -> msg.getRequest().getResourceName(),
+						journaled(this::acquireStep)))
+				.match(AtomicAcquireStepResultMsg.class, journaled(this::onAtomicAcquireStepResult))
+				//discovery
+				.match(WhoHasResourceRequestMsg.class, this::onWhoHasResourceRequest)
+				.match(RegisterResourcesMsg.class, this::onRegisterResources)
+				.match(ResourceLocationMsg.class, msg -> resourceLocated(msg.getResourceName(), msg.getOwner()))
+				.match(ResourceAdvertisementMsg.class, this::onResourceAdvertisement)
+				.match(WhoHasResourceResponseMsg.class, this::onWhoHasResourceResponse)
+				//the manager's own timers
+				.match(TimerTick.class, journaled(this::onTimerTick))
+				.match(LogFlush.class, this::onLogFlush)
+				.match(DiscoveryTimeout.class, this::onDiscoveryTimeout)
+				.match(BatchTimeout.class, this::onBatchTimeout)
+				.matchAny(msg -> System.out.println("Error, invalid message?: " + msg.getClass()))
+				.build();
+	}
+	
+	/**
+	 * Wraps the handler of a message that may change the lock table, so that
+	 * everything the message changed goes to the journal in one synced write
+	 * before any reply or forward it caused is sent
+	 * @param handler			Handler of the message
+	 * @return					the handler followed by a journal flush
+	 */
+	private <T> FI.UnitApply<T> journaled(final FI.UnitApply<T> handler) {
+		return msg -> {
+			if(journal == null)
+			{
+				handler.apply(msg);
+				return;
+			}
+			holding = true;
+			try
+			{
+				handler.apply(msg);
+			}
+			finally
+			{
+				try
+				{
+					journal.flush();
+					if(journal.needsSnapshot())
+					{
+						journal.snapshot(lockTable.values());
 					}
 				}
+				finally
+				{
+					sendHeld();
+				}
+			}
+		};
+	}
+
+	// You may want to add data structures for managing local resources and users, storing
+	// remote managers, etc.
+	//
+	// REMEMBER:  YOU ARE NOT ALLOWED TO CREATE MUTABLE DATA STRUCTURES THAT ARE SHARED BY
+	// MULTIPLE ACTORS!
+	
+	/**
+	 * Result of applying an access request to a local resource.
+	 */
+	private enum Admission {
+		GRANTED(null),
+		QUEUED(null),
+		BUSY(AccessRequestDenialReason.RESOURCE_BUSY),
+		OVERLOADED(AccessRequestDenialReason.RESOURCE_BUSY),	// Would be queued past a queue limit
+		DISABLED(AccessRequestDenialReason.RESOURCE_DISABLED);
+		
+		final AccessRequestDenialReason reason;	// Denial reason to reply with, null if not denied
+		
+		Admission(AccessRequestDenialReason reason) {
+			this.reason = reason;
+		}
+	}
+	
+	/**
+	 * Applies an access request to a local resource: grants it, queues it, or
+	 * decides it must be denied.  Each access mode has its own path below.
+	 * The caller sends the reply, except for queued requests.
+	 * @param state				Lock state of the resource
+	 * @param accessMsg			Request to apply
+	 * @param step				Atomic acquisition step the request belongs to, or null
+	 * @return					what happened to the request
+	 */
+	private Admission admitLocal(ResourceLockState state, AccessRequestMsg accessMsg, AtomicAcquireStepMsg step) {
+		if(hotResources != null)
+		{
+			hotResources.requested(state.resource.getName());
+		}
+		
+		if(state.pendingDisable || state.resource.getStatus() != ResourceStatus.ENABLED)
+		{
+			//resource is disabled or pending disablement, DENY
+			return Admission.DISABLED;
+		}
+		switch(accessMsg.getAccessRequest().getType())
+		{
+			case CONCURRENT_READ_BLOCKING:
+				return admitBlockingRead(state, accessMsg, step);
+			case CONCURRENT_READ_NONBLOCKING:
+				return admitNonblockingRead(state, accessMsg);
+			case EXCLUSIVE_WRITE_BLOCKING:
+				return admitBlockingWrite(state, accessMsg, step);
+			default:
+				return admitNonblockingWrite(state, accessMsg);
+		}
+	}
+	
+	private Admission admitBlockingRead(ResourceLockState state, AccessRequestMsg accessMsg, AtomicAcquireStepMsg step) {
+		if(mayRead(state, accessMsg.getReplyTo()))
+		{
+			//Resource is not occupied by another writer (re-entrant if the user is writing)
+			acquireRead(state, accessMsg);
+			return Admission.GRANTED;
+		}
+		//resource is being written by someone else, Add to write Queue
+		return enqueue(state, accessMsg, step);
+	}
+	
+	private Admission admitNonblockingRead(ResourceLockState state, AccessRequestMsg accessMsg) {
+		if(mayRead(state, accessMsg.getReplyTo()))
+		{
+			acquireRead(state, accessMsg);
+			return Admission.GRANTED;
+		}
+		//resource is being written by someone else! Deny
+		countContention(state, false);
+		return Admission.BUSY;
+	}
+	
+	private Admission admitBlockingWrite(ResourceLockState state, AccessRequestMsg accessMsg, AtomicAcquireStepMsg step) {
+		if(state.canWrite(accessMsg.getReplyTo()))
+		{
+			//Resource is free, already written by this user, or only read by this user
+			acquireWrite(state, accessMsg);
+			return Admission.GRANTED;
+		}
+		//resource is being accessed by someone else! add to resource queue
+		return enqueue(state, accessMsg, step);
+	}
+	
+	private Admission admitNonblockingWrite(ResourceLockState state, AccessRequestMsg accessMsg) {
+		if(state.canWrite(accessMsg.getReplyTo()))
+		{
+			acquireWrite(state, accessMsg);
+			return Admission.GRANTED;
+		}
+		//resource is being accessed by someone else! Deny
+		countContention(state, false);
+		return Admission.BUSY;
+	}
+	
+	/**
+	 * Adds a blocked request to the back of a resource's queue, unless the
+	 * resource's or the manager's queue is full
+	 * @param state				Lock state of the resource
+	 * @param accessMsg			Request to queue
+	 * @param step				Atomic acquisition step the request belongs to, or null
+	 * @return					QUEUED, or OVERLOADED if the request was not queued
+	 */
+	private Admission enqueue(ResourceLockState state, AccessRequestMsg accessMsg, AtomicAcquireStepMsg step) {
+		int resourceLimit = settings.getResourceQueueLimit();
+		int managerLimit = settings.getManagerQueueLimit();
+		if((resourceLimit > 0 && state.waiters.size() >= resourceLimit) || (managerLimit > 0 && queuedRequests >= managerLimit))
+		{
+			countContention(state, false);
+			return Admission.OVERLOADED;
+		}
+		state.waiters.add(accessMsg);
+		countContention(state, true);
+		queuedRequests++;
+		if(step != null)
+		{
+			//answered to the coordinator once the queue reaches it
+			state.queuedSteps.put(accessMsg, step);
+		}
+		if(journal != null)
+		{
+			journal.enqueued(accessMsg, step);
+		}
+		return Admission.QUEUED;
+	}
+	
+	/**
+	 * Counts a request that found a local resource held by someone else
+	 * @param state				Lock state of the resource
+	 * @param queued			true if the request was queued, false if it was turned away
+	 */
+	private void countContention(ResourceLockState state, boolean queued) {
+		if(queued)
+		{
+			state.queuedCount++;
+		}
+		else
+		{
+			state.busyCount++;
+		}
+		if(hotResources != null)
+		{
+			hotResources.contended(state.resource.getName());
+		}
+	}
+	
+	/**
+	 * Times a request that just left a resource's queue, admitted or expired
+	 * @param state				Lock state of the resource
+	 * @param queuedAt			System.nanoTime() the request was queued
+	 */
+	private void countWait(ResourceLockState state, long queuedAt) {
+		long waited = System.nanoTime() - queuedAt;
+		metrics.queueTime.record(waited);
+		if(hotResources != null)
+		{
+			hotResources.waited(state.resource.getName(), waited);
+		}
+	}
+	
+	/**
+	 * Records a granted access request on a local resource
+	 * @param state				Lock state of the resource
+	 * @param accessMsg			Request being granted
+	 */
+	private void acquire(ResourceLockState state, AccessRequestMsg accessMsg) {
+		if(WaitQueue.isRead(accessMsg))
+		{
+			acquireRead(state, accessMsg);
+		}
+		else
+		{
+			acquireWrite(state, accessMsg);
+		}
+	}
+	
+	private void acquireRead(ResourceLockState state, AccessRequestMsg accessMsg) {
+		state.acquireRead(accessMsg.getReplyTo());
+		granted(state, accessMsg, false);
+	}
+	
+	private void acquireWrite(ResourceLockState state, AccessRequestMsg accessMsg) {
+		state.acquireWrite(accessMsg.getReplyTo());
+		granted(state, accessMsg, true);
+	}
+	
+	/**
+	 * Records, leases and logs access just acquired on a local resource
+	 * @param state				Lock state of the resource
+	 * @param accessMsg			Request being granted
+	 * @param write				true for write access
+	 */
+	private void granted(ResourceLockState state, AccessRequestMsg accessMsg, boolean write) {
+		ActorRef user = accessMsg.getReplyTo();
+		if(journal != null)
+		{
+			journal.granted(state.resource.getName(), user, write);
+		}
+		if(settings.getLeaseMillis() > 0)
+		{
+			startLease(state, user);
+		}
+		logAccess(LogEventType.ACCESS_REQUEST_GRANTED, user, accessMsg.getAccessRequest(), null);
+	}
+	
+	/**
+	 * Grants a request just taken out of a resource's queue and notifies the requesting
+	 * user, or the coordinator if it was part of an atomic acquisition
+	 * @param state				Lock state of the resource
+	 * @param accessMsg			Request being granted
+	 */
+	private void grantAccess(ResourceLockState state, AccessRequestMsg accessMsg) {
+		countWait(state, state.waiters.takenQueuedAt());
+		queuedRequests--;
+		stopWaitTimer(state, accessMsg);
+		if(journal != null)
+		{
+			journal.dequeued(accessMsg);
+		}
+		acquire(state, accessMsg);
+		AtomicAcquireStepMsg step = state.takeStep(accessMsg);
+		if(step != null)
+		{
+			send(step.getCoordinator(), new AtomicAcquireStepResultMsg(step, null));
+			return;
+		}
+		send(accessMsg.getReplyTo(), new AccessRequestGrantedMsg(accessMsg));
+	}
+	
+	/**
+	 * Denies a request just taken out of a resource's queue, answering the coordinator
+	 * instead of the user if it was part of an atomic acquisition
+	 * @param state				Lock state of the resource
+	 * @param accessMsg			Request being denied
+	 * @param reason			Reason for the denial
+	 */
+	private void denyQueued(ResourceLockState state, AccessRequestMsg accessMsg, AccessRequestDenialReason reason) {
+		countWait(state, state.waiters.takenQueuedAt());
+		queuedRequests--;
+		stopWaitTimer(state, accessMsg);
+		if(journal != null)
+		{
+			journal.dequeued(accessMsg);
+		}
+		AtomicAcquireStepMsg step = state.takeStep(accessMsg);
+		if(step != null)
+		{
+			denyStep(step, reason);
+			return;
+		}
+		denyAccess(accessMsg, reason);
+	}
+	
+	/**
+	 * Denies an access request and notifies the requesting user
+	 * @param accessMsg			Request being denied
+	 * @param reason			Reason for the denial
+	 */
+	private void denyAccess(AccessRequestMsg accessMsg, AccessRequestDenialReason reason) {
+		ActorRef user = accessMsg.getReplyTo();
+		send(user, new AccessRequestDeniedMsg(accessMsg, reason));
+		logAccess(LogEventType.ACCESS_REQUEST_DENIED, user, accessMsg.getAccessRequest(), reason);
+	}
+	
+	/**
+	 * Tells the coordinator of an atomic acquisition that one of its requests was denied
+	 * @param step				Step being denied
+	 * @param reason			Reason for the denial
+	 */
+	private void denyStep(AtomicAcquireStepMsg step, AccessRequestDenialReason reason) {
+		send(step.getCoordinator(), new AtomicAcquireStepResultMsg(step, reason));
+		logAccess(LogEventType.ACCESS_REQUEST_DENIED, step.getHolder(), step.getRequest(), reason);
+	}
+	
+	/**
+	 * Sends the next request of an atomic acquisition, or answers the user once
+	 * every request is held.  Requests go out one at a time in canonical order,
+	 * so a blocked acquisition only ever waits while holding names that sort
+	 * before the one it waits on, and two acquisitions cannot wait on each other.
+	 * @param acquisition		Acquisition to advance
+	 */
+	private void acquireNext(AtomicAcquisition acquisition) {
+		AccessRequest request = acquisition.next();
+		if(request == null)
+		{
+			acquisitions.remove(acquisition.transactionId);
+			send(acquisition.requestMsg.getReplyTo(), new AtomicAccessGrantedMsg(acquisition.requestMsg));
+			return;
+		}
+		acquireStep(new AtomicAcquireStepMsg(acquisition.transactionId, request, acquisition.requestMsg.getReplyTo(), getSelf()));
+	}
+	
+	/**
+	 * Handles an access request from a user or another manager
+	 * @param accessMsg			Access request
+	 * @param routed			Message to forward if the resource is not local: the request or its wrapper
+	 * @param maxWaitMillis		Longest time the request may stay queued, 0 for no limit
+	 */
+	private void requestAccess(AccessRequestMsg accessMsg, Object routed, long maxWaitMillis) {
+		String resourceName = accessMsg.getAccessRequest().getResourceName();
+		ActorRef requestingUser = accessMsg.getReplyTo();
+		ResourceLockState state = lockTable.get(resourceName);
+		logAccess(LogEventType.ACCESS_REQUEST_RECEIVED, requestingUser, accessMsg.getAccessRequest(), null);
+
+		if(state == null)
+		{
+			//Resource is not local or does not exist!
+			routeRemote(routed, resourceName, requestingUser);
+			return;
+		}
+		
+		Admission admission = admitLocal(state, accessMsg, null);
+		if(admission == Admission.GRANTED)
+		{
+			send(requestingUser, new AccessRequestGrantedMsg(accessMsg));
+		}
+		else if(admission == Admission.OVERLOADED)
+		{
+			send(requestingUser, new AccessRequestRejectedMsg(accessMsg, AccessRequestRejectionReason.OVERLOADED));
+			logRejected(requestingUser, accessMsg.getAccessRequest(), AccessRequestRejectionReason.OVERLOADED);
+		}
+		else if(admission == Admission.QUEUED)
+		{
+			if(maxWaitMillis > 0)
+			{
+				long now = System.nanoTime();
+				WaitTimer timer = new WaitTimer(state, accessMsg, now, System.currentTimeMillis() + maxWaitMillis);
+				state.waitTimers.put(accessMsg, timer);
+				timers.schedule(timer, TimeUnit.MILLISECONDS.toNanos(maxWaitMillis), now);
+				armTimerTick();
+				if(journal != null)
+				{
+					journal.waitDeadline(accessMsg, timer.deadlineMillis);
+				}
+			}
+		}
+		else
+		{
+			denyAccess(accessMsg, admission.reason);
+		}
+	}
+	
+	/**
+	 * Stops the wait timer of a request leaving its resource's queue, if it has one
+	 * @param state				Lock state of the resource
+	 * @param accessMsg			Request leaving the queue
+	 */
+	private void stopWaitTimer(ResourceLockState state, AccessRequestMsg accessMsg) {
+		if(!state.waitTimers.isEmpty())
+		{
+			WaitTimer timer = state.waitTimers.remove(accessMsg);
+			if(timer != null)
+			{
+				timers.cancel(timer);
+			}
+		}
+	}
+	
+	/**
+	 * Gives up on a queued request whose maximum wait ran out.  It is cancelled
+	 * in place, and whoever was queued behind it may now be admitted.
+	 * @param timer				Expired wait timer
+	 */
+	private void expireWait(WaitTimer timer) {
+		ResourceLockState state = timer.state;
+		AccessRequestMsg accessMsg = timer.accessMsg;
+		ActorRef user = accessMsg.getReplyTo();
+		
+		state.waitTimers.remove(accessMsg);
+		state.waiters.cancel(accessMsg);
+		queuedRequests--;
+		countWait(state, timer.queuedAt);
+		if(journal != null)
+		{
+			journal.dequeued(accessMsg);
+		}
+		send(user, new AccessRequestRejectedMsg(accessMsg, AccessRequestRejectionReason.WAIT_TIMEOUT));
+		logRejected(user, accessMsg.getAccessRequest(), AccessRequestRejectionReason.WAIT_TIMEOUT);
+
+		if(!state.pendingDisable)
+		{
+			admitWaiters(state);
+		}
+	}
+	
+	/**
+	 * Applies one step of an atomic acquisition to a local resource, or sends it
+	 * on to the manager owning the resource
+	 * @param step				Step to apply
+	 */
+	private void acquireStep(AtomicAcquireStepMsg step) {
+		String resourceName = step.getRequest().getResourceName();
+		ActorRef shard = shardOf.isEmpty() ? null : shardOf.get(resourceName);
+		if(shard != null)
+		{
+			shard.tell(step, getSelf());
+			return;
+		}
+		ResourceLockState state = lockTable.get(resourceName);
+		logAccess(LogEventType.ACCESS_REQUEST_RECEIVED, step.getHolder(), step.getRequest(), null);
+		
+		if(state == null)
+		{
+			routeRemote(step, resourceName, step.getHolder());
+			return;
+		}
+		AccessRequestMsg accessMsg = new AccessRequestMsg(step.getRequest(), step.getHolder());
+		Admission admission = admitLocal(state, accessMsg, step);
+		if(admission == Admission.GRANTED)
+		{
+			send(step.getCoordinator(), new AtomicAcquireStepResultMsg(step, null));
+		}
+		else if(admission == Admission.OVERLOADED)
+		{
+			send(step.getCoordinator(), new AtomicAcquireStepResultMsg(step, admission.reason, AccessRequestRejectionReason.OVERLOADED));
+			logRejected(step.getHolder(), step.getRequest(), AccessRequestRejectionReason.OVERLOADED);
+		}
+		else if(admission != Admission.QUEUED)
+		{
+			denyStep(step, admission.reason);
+		}
+	}
+	
+	/**
+	 * Gives back everything an atomic acquisition holds after one of its requests was denied
+	 * @param acquisition		Acquisition being abandoned
+	 */
+	private void rollBack(AtomicAcquisition acquisition) {
+		ActorRef user = acquisition.requestMsg.getReplyTo();
+		for(int i = acquisition.acquired.size() - 1; i >= 0; i--)
+		{
+			AccessRelease release = AtomicAcquisition.releaseOf(acquisition.acquired.get(i));
+			AccessReleaseMsg releaseMsg = new AccessReleaseMsg(release, user);
+			ResourceLockState state = lockTable.get(release.getResourceName());
+			if(state != null)
+			{
+				releaseLocal(state, releaseMsg);
 			}
 			else
 			{
-				System.out.println("Error, AccessRequestMsg is invalid type?");
+				routeRemote(releaseMsg, release.getResourceName(), user);
+			}
+		}
+		acquisition.acquired.clear();
+	}
+	
+	/**
+	 * @return  an empty timer wheel sized for the configured tick
+	 */
+	private TimerWheel newTimerWheel() {
+		return new TimerWheel(512, TimeUnit.MILLISECONDS.toNanos(settings.getTimerTickMillis()), System.nanoTime());
+	}
+	
+	/**
+	 * Starts the timer tick unless it is already running
+	 */
+	private void armTimerTick() {
+		if(timerTick == null)
+		{
+			timerTick = getContext().getSystem().scheduler().scheduleOnce(
+					Duration.create(settings.getTimerTickMillis(), TimeUnit.MILLISECONDS),
+					getSelf(), TimerTick.INSTANCE, getContext().dispatcher(), getSelf());
+		}
+	}
+	
+	/**
+	 * Starts or extends a user's lease on a local resource
+	 * @param state				Lock state of the resource
+	 * @param user				User holding access
+	 */
+	private void startLease(ResourceLockState state, ActorRef user) {
+		Lease lease = state.leases.get(user);
+		if(lease == null)
+		{
+			lease = new Lease(state, user);
+			state.leases.put(user, lease);
+		}
+		timers.schedule(lease, TimeUnit.MILLISECONDS.toNanos(settings.getLeaseMillis()), System.nanoTime());
+		armTimerTick();
+	}
+	
+	/**
+	 * Drops a user's lease once the user no longer holds anything on the resource
+	 * @param state				Lock state of the resource
+	 * @param user				User that released access
+	 */
+	private void endLease(ResourceLockState state, ActorRef user) {
+		if(!state.isHeldBy(user))
+		{
+			Lease lease = state.leases.remove(user);
+			if(lease != null)
+			{
+				timers.cancel(lease);
+			}
+		}
+	}
+	
+	/**
+	 * Releases everything a user holds on a resource after its lease ran out.
+	 * Goes through the usual release path, so waiting users and pending
+	 * disables are handled as if the user had released.
+	 * @param lease				Expired lease
+	 */
+	private void expireLease(Lease lease) {
+		ResourceLockState state = lease.state;
+		ActorRef user = lease.user;
+		String resourceName = state.resource.getName();
+		state.leases.remove(user);
+		
+		while(user.equals(state.writer))
+		{
+			releaseLocal(state, new AccessReleaseMsg(new AccessRelease(resourceName, AccessType.EXCLUSIVE_WRITE), user));
+		}
+		while(state.readers.contains(user))
+		{
+			releaseLocal(state, new AccessReleaseMsg(new AccessRelease(resourceName, AccessType.CONCURRENT_READ), user));
+		}
+		send(user, new LeaseExpiredMsg(resourceName));
+	}
+	
+	/**
+	 * Checks whether a new read request may be granted without queueing.  Under
+	 * WRITER_PREFERRED, readers that do not already hold the resource wait behind queued writers.
+	 * @param state				Lock state of the resource
+	 * @param user				User asking for read access
+	 * @return					true if read access can be granted now
+	 */
+	private boolean mayRead(ResourceLockState state, ActorRef user) {
+		if(!state.canRead(user))
+		{
+			return false;
+		}
+		return settings.getAdmissionPolicy() != AdmissionPolicy.WRITER_PREFERRED ||
+				state.waiters.writeRequests() == 0 || state.isHeldBy(user);
+	}
+	
+	/**
+	 * Grants queued requests that have become compatible with the current holders,
+	 * following the configured admission policy.  All grants go out in one pass.
+	 * @param state				Lock state of the resource
+	 */
+	private void admitWaiters(final ResourceLockState state) {
+		AdmissionPolicy policy = settings.getAdmissionPolicy();
+		
+		if(policy == AdmissionPolicy.WRITER_PREFERRED && state.waiters.writeRequests() > 0)
+		{
+			//the oldest queued writer goes first; nothing else is admitted while it waits
+			final boolean[] found = { false };
+			state.waiters.removeMatching(new WaitQueue.Filter() {
+				public boolean take(AccessRequestMsg accessMsg) {
+					if(found[0] || WaitQueue.isRead(accessMsg))
+					{
+						return false;
+					}
+					found[0] = true;
+					if(!state.canWrite(accessMsg.getReplyTo()))
+					{
+						return false;
+					}
+					grantAccess(state, accessMsg);
+					return true;
+				}
+			});
+			return;
+		}
+		
+		//grant from the head of the queue until a request has to keep waiting
+		AccessRequestMsg accessMsg;
+		while((accessMsg = state.waiters.peek()) != null)
+		{
+			ActorRef nextUser = accessMsg.getReplyTo();
+			if(WaitQueue.isRead(accessMsg) ? !state.canRead(nextUser) : !state.canWrite(nextUser))
+			{
+				break;
+			}
+			grantAccess(state, state.waiters.poll());
+		}
+		
+		if(policy != AdmissionPolicy.FIFO && !state.waiters.isEmpty() && state.writer == null)
+		{
+			//admit every remaining reader, leaving queued writers in order
+			state.waiters.removeMatching(new WaitQueue.Filter() {
+				public boolean take(AccessRequestMsg accessMsg) {
+					if(!WaitQueue.isRead(accessMsg))
+					{
+						return false;
+					}
+					grantAccess(state, accessMsg);
+					return true;
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Sends a request for a resource that is not local to the manager owning it,
+	 * denies it if the resource is known not to exist, or starts discovery.
+	 * @param msg				Access, management or release message
+	 * @param resourceName		Name of the resource the message is about
+	 * @param requestingUser	User that sent the message
+	 */
+	private void routeRemote(Object msg, String resourceName, ActorRef requestingUser) {
+		ActorRef shard = shardOf.isEmpty() ? null : shardOf.get(resourceName);
+		if(shard != null)
+		{
+			//local after all, held by a shard
+			shard.tell(msg, getSelf());
+			return;
+		}
+		
+		ResourceDirectory.Location entry = directory.lookup(resourceName, System.nanoTime());
+		
+		if(entry == null && ring != null)
+		{
+			//hash placement: the name's home manager knows the owner if it was registered
+			ActorRef owner = placements.get(resourceName);
+			ActorRef home = ring.home(resourceName);
+			if(owner != null)
+			{
+				forwardToOwner(msg, resourceName, owner);
+				return;
+			}
+			if(!home.equals(getSelf()))
+			{
+				forward(msg, home);
+				return;
+			}
+			//placed outside the ring, fall back to asking every manager
+		}
+		
+		if(entry == null)
+		{
+			//resource manager is not known
+			PendingDiscovery discovery = discoveries.get(resourceName);
+			if(discovery != null)
+			{
+				//someone is already asking for this resource, wait for that answer
+				discovery.parked.add(msg);
+				return;
+			}
+			
+			int managers = (resourceManagers == null) ? 0 : resourceManagers.size();
+			if(managers == 0)
+			{
+				denyNotFound(msg);
+				return;
+			}
+			
+			//ask every manager
+			discovery = new PendingDiscovery(resourceName, requestingUser, resourceManagers, ++lastDiscoveryId, settings.getDiscoveryRetries());
+			discovery.parked.add(msg);
+			discoveries.put(resourceName, discovery);
+			askManagers(discovery);
+		}
+		else if(entry.isMissing())
+		{
+			//no manager had the resource last time we asked
+			denyNotFound(msg);
+		}
+		else
+		{
+			//resource manager is known
+			forwardToOwner(msg, resourceName, entry.owner);
+		}
+	}
+	
+	/**
+	 * Forwards a request to the manager owning its resource.  If the request was
+	 * itself forwarded here by another manager, that manager is told the owner
+	 * so its next request goes there directly.
+	 * @param msg				Access, management or release message
+	 * @param resourceName		Name of the resource the message is about
+	 * @param owner				Manager owning the resource
+	 */
+	private void forwardToOwner(Object msg, String resourceName, ActorRef owner) {
+		forward(msg, owner);
+		ActorRef sender = getSender();
+		if(peers.contains(sender) && !sender.equals(owner))
+		{
+			send(sender, new ResourceLocationMsg(resourceName, owner));
+		}
+	}
+	
+	/**
+	 * Tells other managers where this manager's resources are, once both the
+	 * peers and the local resources are known.
+	 */
+	private void announceResources() {
+		registerWithHomes();
+		
+		if(settings.isAdvertisingResources() && resourceManagers != null && !localNames().isEmpty())
+		{
+			//one message per peer with every local name
+			ResourceAdvertisementMsg advertisement = new ResourceAdvertisementMsg(localNames());
+			for(ActorRef manager : resourceManagers)
+			{
+				if(!manager.equals(getSelf()))
+				{
+					send(manager, advertisement);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Under hash placement, tells each home manager which of this manager's
+	 * resources hash to it.  Does nothing until both the ring and the local
+	 * resources are known.
+	 */
+	private void registerWithHomes() {
+		if(ring == null || localNames().isEmpty())
+		{
+			return;
+		}
+		HashMap<ActorRef, ArrayList<String>> byHome = new HashMap<ActorRef, ArrayList<String>>();
+		for(String resourceName : localNames())
+		{
+			ActorRef home = ring.home(resourceName);
+			if(home.equals(getSelf()))
+			{
+				continue;
+			}
+			ArrayList<String> names = byHome.get(home);
+			if(names == null)
+			{
+				names = new ArrayList<String>();
+				byHome.put(home, names);
+			}
+			names.add(resourceName);
+		}
+		for(ActorRef home : byHome.keySet())
+		{
+			send(home, new RegisterResourcesMsg(byHome.get(home)));
+		}
+	}
+	
+	/**
+	 * Sends the current round of a discovery to every manager that has not
+	 * answered it yet, and arms its timeout
+	 * @param discovery			Discovery to send
+	 */
+	private void askManagers(PendingDiscovery discovery) {
+		for(ActorRef manager : discovery.outstanding)
+		{
+			send(manager, new WhoHasResourceRequestMsg(discovery.resourceName, discovery.requestingUser, discovery.requestId));
+		}
+		if(settings.getDiscoveryTimeoutMillis() > 0)
+		{
+			discovery.timeout = getContext().getSystem().scheduler().scheduleOnce(
+					Duration.create(settings.getDiscoveryTimeoutMillis(), TimeUnit.MILLISECONDS),
+					getSelf(), new DiscoveryTimeout(discovery.resourceName, discovery.requestId),
+					getContext().dispatcher(), getSelf());
+		}
+	}
+	
+	/**
+	 * Gives up on a discovery: denies everything waiting on it and drops its state
+	 * @param discovery			Discovery that failed
+	 * @param missing			true if every manager answered that it does not have the resource
+	 */
+	private void discoveryFailed(PendingDiscovery discovery, boolean missing) {
+		discoveries.remove(discovery.resourceName);
+		discovery.cancelTimeout();
+		metrics.discoveryFailed();
+		if(missing)
+		{
+			directory.putMissing(discovery.resourceName, System.nanoTime());
+		}
+		for(Object requestMsg : discovery.parked)
+		{
+			denyNotFound(requestMsg);
+		}
+	}
+	
+	/**
+	 * Records the owner of a remote resource and sends it any requests that
+	 * were waiting for discovery of that resource
+	 * @param resourceName		Name of the resource
+	 * @param owner				Manager owning the resource
+	 */
+	private void resourceLocated(String resourceName, ActorRef owner) {
+		directory.putOwner(resourceName, owner, System.nanoTime());
+		
+		PendingDiscovery discovery = discoveries.remove(resourceName);
+		if(discovery != null)
+		{
+			discovery.cancelTimeout();
+			metrics.discoveryTime.record(System.nanoTime() - discovery.startedAt);
+			for(Object requestMsg : discovery.parked)
+			{
+				send(owner, requestMsg);
 			}
-			
+		}
+	}
+	
+	/**
+	 * Forwards a request to the manager owning its resource
+	 * @param msg				Access, management or release message
+	 * @param targetRM			Manager owning the resource
+	 */
+	private void forward(Object msg, ActorRef targetRM) {
+		if(msg instanceof AccessRequestMsg)
+		{
+			logAccess(LogEventType.ACCESS_REQUEST_FORWARDED, targetRM, ((AccessRequestMsg) msg).getAccessRequest(), null);
+		}
+		else if(msg instanceof TimedAccessRequestMsg)
+		{
+			logAccess(LogEventType.ACCESS_REQUEST_FORWARDED, targetRM, ((TimedAccessRequestMsg) msg).getRequest().getAccessRequest(), null);
 		}
 		else if(msg instanceof ManagementRequestMsg)
 		{
-			ManagementRequestType request = ((ManagementRequestMsg) msg).getRequest().getType();
-			String resourceName = ((ManagementRequestMsg) msg).getRequest().getResourceName();
-			Resource currResource = resourceNames.get(resourceName);
-			ActorRef requestingUser = ((ManagementRequestMsg) msg).getReplyTo();
-			
-			log(LogMsg.makeManagementRequestReceivedLogMsg(requestingUser, getSelf(), ((ManagementRequestMsg) msg).getRequest()));
-			
-			if(resourceNames.containsKey(resourceName))
+			logManagement(LogEventType.MANAGEMENT_REQUEST_FORWARDED, targetRM, ((ManagementRequestMsg) msg).getRequest(), null);
+		}
+		else if(msg instanceof AccessReleaseMsg)
+		{
+			logRelease(LogEventType.ACCESS_RELEASE_FORWARDED, targetRM, ((AccessReleaseMsg) msg).getAccessRelease());
+		}
+		send(targetRM, msg);
+	}
+	
+	/**
+	 * Applies a release to a local resource, then either finishes a pending
+	 * disable or hands the resource to waiting users
+	 * @param state				Lock state of the resource
+	 * @param releaseMsg		Release being applied
+	 */
+	private void releaseLocal(ResourceLockState state, AccessReleaseMsg releaseMsg) {
+		AccessType type = releaseMsg.getAccessRelease().getType();
+		ActorRef requestingUser = releaseMsg.getSender();
+		long held;
+		
+		if(type == AccessType.CONCURRENT_READ)
+		{
+			if((held = state.releaseRead(requestingUser)) < 0)
+			{
+				//user does not have read access, ignore!
+				logRelease(LogEventType.ACCESS_RELEASE_IGNORED, requestingUser, releaseMsg.getAccessRelease());
+			}
+			else if(journal != null)
+			{
+				journal.released(state.resource.getName(), requestingUser, false);
+			}
+		}
+		else if(type == AccessType.EXCLUSIVE_WRITE)
+		{
+			if((held = state.releaseWrite(requestingUser)) < 0)
+			{
+				//user does not have write access, ignore!
+				logRelease(LogEventType.ACCESS_RELEASE_IGNORED, requestingUser, releaseMsg.getAccessRelease());
+			}
+			else if(journal != null)
+			{
+				journal.released(state.resource.getName(), requestingUser, true);
+			}
+		}
+		else
+		{
+			System.out.println("Error in access release type!");
+			held = 0;
+		}
+		if(held > 0)
+		{
+			//the user's last hold ended
+			metrics.holdTime.record(held);
+		}
+		if(settings.getLeaseMillis() > 0)
+		{
+			endLease(state, requestingUser);
+		}
+
+		if(state.isFree())
+		{
+			//check if access has been released on resource
+			logRelease(LogEventType.ACCESS_RELEASED, requestingUser, releaseMsg.getAccessRelease());
+		}
+
+		if(state.pendingDisable)
+		{
+			//check to see if access was released on resource since disablement is pending
+			if(state.isFree())
+			{
+				//resource can now be disabled
+				logResource(LogEventType.RESOURCE_STATUS_CHANGED, null, state.resource.getName(), ResourceStatus.DISABLED);
+				state.resource.disable();
+				if(journal != null)
+				{
+					journal.statusChanged(state.resource.getName(), ResourceStatus.DISABLED);
+				}
+
+				//reply to users awaiting disablement
+				ManagementRequestMsg requestMsg;
+
+				while(!state.disableWaiters.isEmpty())
+				{
+					requestMsg = state.disableWaiters.pop();
+					send(requestMsg.getReplyTo(), new ManagementRequestGrantedMsg(requestMsg));
+					logManagement(LogEventType.MANAGEMENT_REQUEST_GRANTED, requestMsg.getReplyTo(), requestMsg.getRequest(), null);
+				}
+			}
+		}else {
+			//disablement is not pending so give access to waiting users
+			admitWaiters(state);
+		}
+	}
+	
+	/**
+	 * Answers a request for a resource that no manager has
+	 * @param requestMsg		Access, management or release message
+	 */
+	private void denyNotFound(Object requestMsg) {
+		if(requestMsg instanceof AccessRequestMsg)
+		{
+			denyAccess((AccessRequestMsg) requestMsg, AccessRequestDenialReason.RESOURCE_NOT_FOUND);
+		}
+		else if(requestMsg instanceof TimedAccessRequestMsg)
+		{
+			denyAccess(((TimedAccessRequestMsg) requestMsg).getRequest(), AccessRequestDenialReason.RESOURCE_NOT_FOUND);
+		}
+		else if(requestMsg instanceof ManagementRequestMsg)
+		{
+			ActorRef user = ((ManagementRequestMsg) requestMsg).getReplyTo();
+			send(user, new ManagementRequestDeniedMsg((ManagementRequestMsg) requestMsg, ManagementRequestDenialReason.RESOURCE_NOT_FOUND));
+			logManagement(LogEventType.MANAGEMENT_REQUEST_DENIED, user, ((ManagementRequestMsg) requestMsg).getRequest(), ManagementRequestDenialReason.RESOURCE_NOT_FOUND);
+		}
+		else if(requestMsg instanceof AccessReleaseMsg)
+		{
+			//nothing to release
+			logRelease(LogEventType.ACCESS_RELEASE_IGNORED, ((AccessReleaseMsg) requestMsg).getSender(), ((AccessReleaseMsg) requestMsg).getAccessRelease());
+		}
+		else if(requestMsg instanceof RenewLeaseMsg)
+		{
+			//nothing to renew
+		}
+		else if(requestMsg instanceof QueueDepthRequestMsg)
+		{
+			String resourceName = ((QueueDepthRequestMsg) requestMsg).getResourceName();
+			send(((QueueDepthRequestMsg) requestMsg).getReplyTo(), new QueueDepthResponseMsg(resourceName, -1, -1,
+					settings.getResourceQueueLimit(), settings.getManagerQueueLimit()));
+		}
+		else if(requestMsg instanceof AtomicAcquireStepMsg)
+		{
+			denyStep((AtomicAcquireStepMsg) requestMsg, AccessRequestDenialReason.RESOURCE_NOT_FOUND);
+		}
+		else if(requestMsg instanceof MigrateResourceMsg)
+		{
+			String resourceName = ((MigrateResourceMsg) requestMsg).getResourceName();
+			send(((MigrateResourceMsg) requestMsg).getReplyTo(), new ResourceMovedMsg(resourceName, null));
+		}
+		else
+		{
+			System.out.println("Error in parked discovery msg type!");
+		}
+	}
+	
+	/**
+	 * Learns the other managers, and builds the hash ring if placement is on
+	 */
+	private void onAddRemoteManagers(AddRemoteManagersRequestMsg msg) {
+		resourceManagers = new LinkedList<ActorRef>(msg.getManagerList());
+		peers = new HashSet<ActorRef>(resourceManagers);
+		
+		if(settings.getVirtualNodes() > 0)
+		{
+			//every manager builds the same ring from the same membership
+			LinkedHashSet<ActorRef> members = new LinkedHashSet<ActorRef>(resourceManagers);
+			members.add(getSelf());
+			ring = new ConsistentHashRing(members, settings.getVirtualNodes());
+		}
+		announceResources();
+		
+		//respond to sender
+		send(getSender(), new AddRemoteManagersResponseMsg(msg));
+	}
+	
+	/**
+	 * Learns the users local to this manager
+	 */
+	private void onAddLocalUsers(AddLocalUsersRequestMsg msg) {
+		localUsers = new LinkedList<ActorRef>(msg.getLocalUsers());
+		
+		//respond to sender
+		send(getSender(), new AddLocalUsersResponseMsg(msg));
+	}
+	
+	/**
+	 * Creates and enables the local resources, or hands them to the shards
+	 */
+	private void onAddInitialLocalResources(AddInitialLocalResourcesRequestMsg msg) throws IOException {
+		LinkedList<Resource> resources = new LinkedList<Resource>(msg.getLocalResources());
+		
+		if(!shards.isEmpty())
+		{
+			//sharded mode: the shards create and log the resources
+			assignShards(resources);
+		}
+		else
+		{
+			//lock state recovered from the journal is kept for the resources named again
+			HashMap<String, ResourceLockState> recovered = (recoveredTable == null)
+					? new HashMap<String, ResourceLockState>() : recoveredTable;
+			recoveredTable = null;
+			if(recovered.isEmpty())
 			{
-				//resource is local to this resourceManager
-				if(request == ManagementRequestType.ENABLE)
+				timers = newTimerWheel();
+			}
+			lockTable = new HashMap<String, ResourceLockState>();
+			queuedRequests = 0;
+		
+			//enable all resources
+			for(Resource resource : resources) {
+				ResourceLockState state = recovered.remove(resource.getName());
+				if(state == null)
 				{
-					currResource.enable();
-					pendingDisable.put(currResource, false);
-					log(LogMsg.makeResourceStatusChangedLogMsg(getSelf(), resourceName, ResourceStatus.ENABLED));
-					requestingUser.tell(new ManagementRequestGrantedMsg((ManagementRequestMsg) msg), getSelf());
-					log(LogMsg.makeManagementRequestGrantedLogMsg(requestingUser, getSelf(), ((ManagementRequestMsg) msg).getRequest()));
+					resource.enable();
+					state = new ResourceLockState(resource);
 				}
-				else if(request == ManagementRequestType.DISABLE)
+				else
 				{
-					if(readAccess.get(currResource).contains(requestingUser) || writeAccess.get(currResource).contains(requestingUser))
+					if(state.resource.getStatus() == ResourceStatus.ENABLED)
 					{
-						//requesting user currently holds access rights, Deny
-						requestingUser.tell(new ManagementRequestDeniedMsg((ManagementRequestMsg) msg, ManagementRequestDenialReason.ACCESS_HELD_BY_USER), getSelf());
-						log(LogMsg.makeManagementRequestDeniedLogMsg(requestingUser, getSelf(), ((ManagementRequestMsg) msg).getRequest(), ManagementRequestDenialReason.ACCESS_HELD_BY_USER));
+						resource.enable();
 					}
 					else
 					{
-						//start pending disablement
-						pendingDisable.put(currResource, true);
-						ActorRef tempActor;
-						AccessRequestMsg accessMsg;
-						
-						//clear the resource's queue
-						while(!resourceQueues.get(currResource).isEmpty())
-						{
-							tempActor = resourceQueues.get(currResource).pop();
-							accessMsg = queueMessages.get(currResource).pop();
-							tempActor.tell(new AccessRequestDeniedMsg(accessMsg, AccessRequestDenialReason.RESOURCE_DISABLED), getSelf());
-							log(LogMsg.makeAccessRequestDeniedLogMsg(requestingUser, getSelf(), accessMsg.getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
-						}
-						
-						if(writeAccess.get(currResource).isEmpty() && readAccess.get(currResource).isEmpty())
-						{
-							//resource can be disabled now
-							currResource.disable();
-							log(LogMsg.makeResourceStatusChangedLogMsg(getSelf(), resourceName, ResourceStatus.DISABLED));
-							requestingUser.tell(new ManagementRequestGrantedMsg(((ManagementRequestMsg) msg).getRequest()), getSelf());
-							log(LogMsg.makeManagementRequestGrantedLogMsg(requestingUser, getSelf(), ((ManagementRequestMsg) msg).getRequest()));
-						}
-						else
-						{
-							//wait for resource to stop being accessed and grant request
-							awaitingDisable.get(currResource).add(requestingUser);
-							disableMessages.get(currResource).add((ManagementRequestMsg) msg);
-						}
+						resource.disable();
 					}
-					
+					state.resource = resource;
+					queuedRequests += state.waiters.size();
+				}
+				lockTable.put(resource.getName(), state);
+				logResource(LogEventType.LOCAL_RESOURCE_CREATED, null, resource.getName(), null);
+			}
+			for(ResourceLockState state : recovered.values())
+			{
+				//no longer one of this manager's resources
+				for(Lease lease : state.leases.values())
+				{
+					timers.cancel(lease);
+				}
+				for(WaitTimer timer : state.waitTimers.values())
+				{
+					timers.cancel(timer);
+				}
+			}
+			if(journal != null)
+			{
+				journal.snapshot(lockTable.values());
+			}
+		}
+		announceResources();
+
+		//respond to sender
+		send(getSender(), new AddInitialLocalResourcesResponseMsg(msg));
+	}
+	
+	/**
+	 * Handles a management request from a user or another manager
+	 */
+	private void onManagementRequest(ManagementRequestMsg msg) {
+		String resourceName = msg.getRequest().getResourceName();
+		ResourceLockState state = lockTable.get(resourceName);
+		ActorRef requestingUser = msg.getReplyTo();
+
+		logManagement(LogEventType.MANAGEMENT_REQUEST_RECEIVED, requestingUser, msg.getRequest(), null);
+
+		if(state == null)
+		{
+			//Resource is not local to the resource manager
+			routeRemote(msg, resourceName, requestingUser);
+			return;
+		}
+		switch(msg.getRequest().getType())
+		{
+			case ENABLE:
+				enableLocal(state, msg);
+				break;
+			case DISABLE:
+				disableLocal(state, msg);
+				break;
+			default:
+				//error
+				System.out.println("Error in management request type!");
+		}
+	}
+	
+	/**
+	 * Enables a local resource, cancelling a pending disable
+	 * @param state				Lock state of the resource
+	 * @param msg				Enable request
+	 */
+	private void enableLocal(ResourceLockState state, ManagementRequestMsg msg) {
+		String resourceName = state.resource.getName();
+		ActorRef requestingUser = msg.getReplyTo();
+		
+		state.resource.enable();
+		state.pendingDisable = false;
+		if(journal != null)
+		{
+			journal.statusChanged(resourceName, ResourceStatus.ENABLED);
+		}
+		logResource(LogEventType.RESOURCE_STATUS_CHANGED, null, resourceName, ResourceStatus.ENABLED);
+		send(requestingUser, new ManagementRequestGrantedMsg(msg));
+		logManagement(LogEventType.MANAGEMENT_REQUEST_GRANTED, requestingUser, msg.getRequest(), null);
+	}
+	
+	/**
+	 * Disables a local resource once no user holds it, denying everyone queued for it
+	 * @param state				Lock state of the resource
+	 * @param msg				Disable request
+	 */
+	private void disableLocal(ResourceLockState state, ManagementRequestMsg msg) {
+		String resourceName = state.resource.getName();
+		ActorRef requestingUser = msg.getReplyTo();
+		
+		if(state.isHeldBy(requestingUser))
+		{
+			//requesting user currently holds access rights, Deny
+			send(requestingUser, new ManagementRequestDeniedMsg(msg, ManagementRequestDenialReason.ACCESS_HELD_BY_USER));
+			logManagement(LogEventType.MANAGEMENT_REQUEST_DENIED, requestingUser, msg.getRequest(), ManagementRequestDenialReason.ACCESS_HELD_BY_USER);
+			return;
+		}
+		
+		//start pending disablement
+		state.pendingDisable = true;
+		AccessRequestMsg accessMsg;
+
+		//clear the resource's queue
+		while((accessMsg = state.waiters.poll()) != null)
+		{
+			denyQueued(state, accessMsg, AccessRequestDenialReason.RESOURCE_DISABLED);
+		}
+
+		if(state.isFree())
+		{
+			//resource can be disabled now
+			state.resource.disable();
+			if(journal != null)
+			{
+				journal.statusChanged(resourceName, ResourceStatus.DISABLED);
+			}
+			logResource(LogEventType.RESOURCE_STATUS_CHANGED, null, resourceName, ResourceStatus.DISABLED);
+			send(requestingUser, new ManagementRequestGrantedMsg(msg.getRequest()));
+			logManagement(LogEventType.MANAGEMENT_REQUEST_GRANTED, requestingUser, msg.getRequest(), null);
+		}
+		else
+		{
+			//wait for resource to stop being accessed and grant request
+			state.disableWaiters.add(msg);
+			if(journal != null)
+			{
+				journal.disablePending(msg);
+			}
+		}
+	}
+	
+	/**
+	 * Handles a release from a user or another manager
+	 */
+	private void onAccessRelease(AccessReleaseMsg msg) {
+		String resourceName = msg.getAccessRelease().getResourceName();
+		ResourceLockState state = lockTable.get(resourceName);
+		ActorRef requestingUser = msg.getSender();
+
+
+		logRelease(LogEventType.ACCESS_RELEASE_RECEIVED, requestingUser, msg.getAccessRelease());
+
+
+		if(state != null)
+		{
+			releaseLocal(state, msg);
+		}
+		else
+		{
+			//resource is not local to this resource manager
+			routeRemote(msg, resourceName, requestingUser);
+		}
+	}
+	
+	/**
+	 * Applies a batch of access requests, splitting off the parts owned by other managers or shards.
+	 * Parts forwarded by another manager are answered to its aggregator.
+	 */
+	private void onBatchAccessRequest(BatchAccessRequestMsg batchMsg) {
+		ActorRef requestingUser = batchMsg.getReplyTo();
+		boolean forwardedPart = (batchMsg.getAggregator() != null);
+		long key = ++lastBatchId;
+		PendingBatch batch = forwardedPart ? new PendingBatch(batchMsg.getBatchId(), batchMsg.getAggregator(), requestingUser)
+				: new PendingBatch(key, requestingUser, requestingUser);
+		HashMap<ActorRef, ArrayList<AccessRequest>> remoteParts = new HashMap<ActorRef, ArrayList<AccessRequest>>();
+		long now = System.nanoTime();
+		
+		for(AccessRequest request : batchMsg.getRequests())
+		{
+			String resourceName = request.getResourceName();
+			ActorRef owningShard = shardOf.isEmpty() ? null : shardOf.get(resourceName);
+			if(owningShard != null)
+			{
+				//held by a shard, which logs and answers its part
+				ArrayList<AccessRequest> part = remoteParts.get(owningShard);
+				if(part == null)
+				{
+					part = new ArrayList<AccessRequest>();
+					remoteParts.put(owningShard, part);
+				}
+				part.add(request);
+				continue;
+			}
+			AccessRequestMsg accessMsg = new AccessRequestMsg(request, requestingUser);
+			ResourceLockState state = lockTable.get(resourceName);
+			logAccess(LogEventType.ACCESS_REQUEST_RECEIVED, requestingUser, request, null);
+			
+			if(state != null)
+			{
+				Admission admission = admitLocal(state, accessMsg, null);
+				if(admission == Admission.GRANTED)
+				{
+					batch.granted(request);
+				}
+				else if(admission == Admission.QUEUED)
+				{
+					batch.pending(request);
+				}
+				else if(admission == Admission.OVERLOADED)
+				{
+					batch.rejected(request, AccessRequestRejectionReason.OVERLOADED);
+					logRejected(requestingUser, request, AccessRequestRejectionReason.OVERLOADED);
 				}
 				else
 				{
-					//error
-					System.out.println("Error in management request type!");
+					batch.denied(request, admission.reason);
+					logAccess(LogEventType.ACCESS_REQUEST_DENIED, requestingUser, request, admission.reason);
+				}
+				continue;
+			}
+			
+			//parts forwarded by another manager are not split again
+			ResourceDirectory.Location entry = forwardedPart ? null : directory.lookup(resourceName, now);
+			if(entry != null && !entry.isMissing())
+			{
+				//group by owning manager
+				ArrayList<AccessRequest> part = remoteParts.get(entry.owner);
+				if(part == null)
+				{
+					part = new ArrayList<AccessRequest>();
+					remoteParts.put(entry.owner, part);
 				}
+				part.add(request);
+			}
+			else if(entry != null)
+			{
+				batch.denied(request, AccessRequestDenialReason.RESOURCE_NOT_FOUND);
+				logAccess(LogEventType.ACCESS_REQUEST_DENIED, requestingUser, request, AccessRequestDenialReason.RESOURCE_NOT_FOUND);
 			}
 			else
 			{
-				//Resource is not local to the resource manager
-				if(resourceMap.containsKey(resourceName))
+				//owner unknown, answered on its own once discovery is done
+				routeRemote(accessMsg, resourceName, requestingUser);
+				batch.pending(request);
+			}
+		}
+		
+		//one message per owning manager, answered back to this manager
+		for(ActorRef owner : remoteParts.keySet())
+		{
+			ArrayList<AccessRequest> part = remoteParts.get(owner);
+			for(AccessRequest request : part)
+			{
+				if(!shards.contains(owner))
+				{
+					logAccess(LogEventType.ACCESS_REQUEST_FORWARDED, owner, request, null);
+				}
+			}
+			//each part is answered under its own id, so the missing ones are known
+			long partId = ++lastBatchId;
+			send(owner, new BatchAccessRequestMsg(part, requestingUser, partId, getSelf()));
+			batch.forwarded(partId, part);
+			pendingBatches.put(partId, batch);
+		}
+		
+		if(batch.isComplete())
+		{
+			send(batch.replyTo, batch.toResult());
+		}
+		else if(settings.getBatchTimeoutMillis() > 0)
+		{
+			batch.timeout = getContext().getSystem().scheduler().scheduleOnce(
+					Duration.create(settings.getBatchTimeoutMillis(), TimeUnit.MILLISECONDS),
+					getSelf(), new BatchTimeout(batch), getContext().dispatcher(), getSelf());
+		}
+	}
+	
+	/**
+	 * Merges another manager's or a shard's part into a batch this manager split up
+	 */
+	private void onBatchAccessResult(BatchAccessResultMsg msg) {
+		PendingBatch batch = pendingBatches.remove(msg.getBatchId());
+		if(batch == null)
+		{
+			//a part answered after its batch timed out; the user was told it was denied
+			releaseLateGrants(msg);
+			return;
+		}
+		batch.merge(msg);
+		if(batch.isComplete())
+		{
+			batch.cancelTimeout();
+			send(batch.replyTo, batch.toResult());
+		}
+	}
+	
+	/**
+	 * Gives back the access granted by a batch part that came back too late.
+	 * Its user already heard the requests were denied and would never release
+	 * them.  Its pending requests are still answered to the user one by one.
+	 * @param part				Late result of the part
+	 */
+	private void releaseLateGrants(BatchAccessResultMsg part) {
+		if(part.getGranted().isEmpty() || part.getUser() == null)
+		{
+			return;
+		}
+		ArrayList<AccessRelease> releases = new ArrayList<AccessRelease>(part.getGranted().size());
+		for(AccessRequest request : part.getGranted())
+		{
+			releases.add(AtomicAcquisition.releaseOf(request));
+		}
+		//the manager that answered holds the resources
+		send(getSender(), new BatchAccessReleaseMsg(releases, part.getUser()));
+	}
+	
+	/**
+	 * Answers a batch whose forwarded parts did not all come back in time.  The
+	 * missing parts are denied as not found, as a failed discovery is; an answer
+	 * arriving later has its grants released again.
+	 */
+	private void onBatchTimeout(BatchTimeout msg) {
+		PendingBatch batch = msg.batch;
+		if(batch.isComplete())
+		{
+			//answered just before the timeout fired
+			return;
+		}
+		batch.timeout = null;
+		for(Long partId : batch.outstandingParts())
+		{
+			pendingBatches.remove(partId);
+		}
+		for(AccessRequest request : batch.abandonOutstanding(AccessRequestDenialReason.RESOURCE_NOT_FOUND))
+		{
+			logAccess(LogEventType.ACCESS_REQUEST_DENIED, batch.requestingUser, request, AccessRequestDenialReason.RESOURCE_NOT_FOUND);
+		}
+		send(batch.replyTo, batch.toResult());
+	}
+	
+	/**
+	 * Applies a batch of releases, sending the parts owned by other managers or shards on in one message each
+	 */
+	private void onBatchAccessRelease(BatchAccessReleaseMsg msg) {
+		ActorRef requestingUser = msg.getSender();
+		HashMap<ActorRef, ArrayList<AccessRelease>> remoteParts = new HashMap<ActorRef, ArrayList<AccessRelease>>();
+		long now = System.nanoTime();
+		
+		for(AccessRelease release : msg.getReleases())
+		{
+			String resourceName = release.getResourceName();
+			ActorRef owner = shardOf.isEmpty() ? null : shardOf.get(resourceName);
+			if(owner == null)
+			{
+				AccessReleaseMsg releaseMsg = new AccessReleaseMsg(release, requestingUser);
+				ResourceLockState state = lockTable.get(resourceName);
+				logRelease(LogEventType.ACCESS_RELEASE_RECEIVED, requestingUser, release);
+				
+				if(state != null)
 				{
-					//resource manager is known
-					ActorRef targetRM = resourceMap.get(resourceName);
-					log(LogMsg.makeManagementRequestForwardedLogMsg(getSelf(), targetRM, ((ManagementRequestMsg) msg).getRequest()));
-					targetRM.tell(msg, getSelf());
+					releaseLocal(state, releaseMsg);
+					continue;
 				}
-				else
+				
+				ResourceDirectory.Location entry = directory.lookup(resourceName, now);
+				if(entry == null || entry.isMissing())
 				{
-					//resource manager is not known
-					//Resource is not local or does not exist!
-					ActorRef targetRM;
-					
-					if(!remoteMessages.containsKey(resourceName))
-					{
-						remoteMessages.put(resourceName, new HashMap<ActorRef, Object>());
-					}
-					
-					remoteMessages.get(resourceName).put(requestingUser, msg);
-					resourceCounts.put(resourceName, resourceManagers.size());
-					
-					for(int i = 0; i < resourceManagers.size(); i++)
-					{
-						targetRM = resourceManagers.get(i);
-						targetRM.tell(new WhoHasResourceRequestMsg(resourceName, requestingUser), getSelf());
-					}
-					
+					routeRemote(releaseMsg, resourceName, requestingUser);
+					continue;
 				}
+				owner = entry.owner;
 			}
 			
+			//group by owning manager or shard
+			ArrayList<AccessRelease> part = remoteParts.get(owner);
+			if(part == null)
+			{
+				part = new ArrayList<AccessRelease>();
+				remoteParts.put(owner, part);
+			}
+			part.add(release);
 		}
-		else if(msg instanceof AccessReleaseMsg)
+		
+		for(ActorRef owner : remoteParts.keySet())
 		{
-			AccessType type = ((AccessReleaseMsg) msg).getAccessRelease().getType();
-			String resourceName = ((AccessReleaseMsg) msg).getAccessRelease().getResourceName();
-			Resource currResource = resourceNames.get(resourceName);
-			ActorRef requestingUser = ((AccessReleaseMsg) msg).getSender();
-			
-			
-			log(LogMsg.makeAccessReleaseReceivedLogMsg(requestingUser, getSelf(), ((AccessReleaseMsg) msg).getAccessRelease()));
-			
-			
-			if(resourceNames.containsKey(resourceName))
+			ArrayList<AccessRelease> part = remoteParts.get(owner);
+			for(AccessRelease release : part)
 			{
-				if(type == AccessType.CONCURRENT_READ)
-				{
-					if(readAccess.get(currResource).contains(requestingUser))
-					{
-						readAccess.get(currResource).remove(requestingUser);
-					}
-					else
-					{
-						//user does not have write access, ignore!
-						log(LogMsg.makeAccessReleaseIgnoredLogMsg(requestingUser, getSelf(), ((AccessReleaseMsg) msg).getAccessRelease()));
-					}
-				}
-				else if(type == AccessType.EXCLUSIVE_WRITE)
-				{
-					if(writeAccess.get(currResource).contains(requestingUser))
-					{
-						writeAccess.get(currResource).remove(requestingUser);
-					}
-					else
-					{
-						//user does not have write access, ignore!
-						System.out.println(writeAccess.get(currResource).toString());
-						log(LogMsg.makeAccessReleaseIgnoredLogMsg(requestingUser, getSelf(), ((AccessReleaseMsg) msg).getAccessRelease()));
-					}
-				}
-				else
-				{
-					System.out.println("Error in access release type!");
-				}
-			
-				if(readAccess.get(currResource).isEmpty() && writeAccess.get(currResource).isEmpty())
-				{
-					//check if access has been released on resource
-					log(LogMsg.makeAccessReleasedLogMsg(requestingUser, getSelf(), ((AccessReleaseMsg) msg).getAccessRelease()));
-				}
-				
-				if(pendingDisable.get(currResource))
+				if(!shards.contains(owner))
 				{
-					//check to see if access was released on resource since disablement is pending
-					if(readAccess.get(currResource).isEmpty() && writeAccess.get(currResource).isEmpty())
-					{
-						//resource can now be disabled
-						log(LogMsg.makeResourceStatusChangedLogMsg(getSelf(), resourceName, ResourceStatus.DISABLED));
-						currResource.disable();
-						
-						//reply to users awaiting disablement
-						ActorRef tempActor;
-						ManagementRequestMsg requestMsg;
-						
-						while(!awaitingDisable.get(currResource).isEmpty())
-						{
-							tempActor = awaitingDisable.get(currResource).pop();
-							requestMsg = disableMessages.get(currResource).pop();
-							tempActor.tell(new ManagementRequestGrantedMsg(requestMsg), getSelf());
-							log(LogMsg.makeManagementRequestGrantedLogMsg(tempActor, getSelf(), requestMsg.getRequest()));
-						}
-					}
-				}else {
-					//disablement is not pending so give access to next User in queue
-					if(readAccess.get(currResource).isEmpty() && writeAccess.get(currResource).isEmpty())
-					{
-						//access is lifted so give access to next user in queue
-						if(!resourceQueues.get(currResource).isEmpty())
-						{
-							ActorRef nextUser = resourceQueues.get(currResource).pop();
-							AccessRequestMsg accessMsg = queueMessages.get(currResource).pop();
-							
-							if(accessMsg.getAccessRequest().getType() == AccessRequestType.CONCURRENT_READ_BLOCKING ||
-							   accessMsg.getAccessRequest().getType() == AccessRequestType.CONCURRENT_READ_NONBLOCKING)
-							{
-								readAccess.get(currResource).add(nextUser);
-								nextUser.tell(new AccessRequestGrantedMsg(accessMsg), getSelf());
-								log(LogMsg.makeAccessRequestGrantedLogMsg(requestingUser, getSelf(), accessMsg.getAccessRequest()));
-								
-								accessMsg = queueMessages.get(currResource).peek();
-								while(!resourceQueues.get(currResource).isEmpty() &&
-								      (accessMsg.getAccessRequest().getType() == AccessRequestType.CONCURRENT_READ_BLOCKING ||
-									  accessMsg.getAccessRequest().getType() == AccessRequestType.CONCURRENT_READ_NONBLOCKING))
-								{
-									nextUser = resourceQueues.get(currResource).pop();
-									accessMsg = queueMessages.get(currResource).pop();
-									readAccess.get(currResource).add(nextUser);
-									log(LogMsg.makeAccessRequestGrantedLogMsg(nextUser, getSelf(), accessMsg.getAccessRequest()));
-									nextUser.tell(new AccessRequestGrantedMsg(accessMsg), getSelf());
-									
-									if(!queueMessages.get(currResource).isEmpty())
-									{
-										accessMsg = queueMessages.get(currResource).peek();
-									}
-								}
-							}
-							else if(accessMsg.getAccessRequest().getType() == AccessRequestType.EXCLUSIVE_WRITE_BLOCKING ||
-									accessMsg.getAccessRequest().getType() == AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING)
-							{
-								writeAccess.get(currResource).add(nextUser);
-								log(LogMsg.makeAccessRequestGrantedLogMsg(nextUser, getSelf(), ((AccessRequestMsg) accessMsg).getAccessRequest()));
-								nextUser.tell(new AccessRequestGrantedMsg(accessMsg), getSelf());
-							}
-							else
-							{
-								System.out.println("error getting queue request type (String)!");
-							}
-						}
-					}
+					logRelease(LogEventType.ACCESS_RELEASE_FORWARDED, owner, release);
 				}
 			}
-			else 
+			send(owner, new BatchAccessReleaseMsg(part, requestingUser));
+		}
+	}
+	
+	/**
+	 * Extends a user's lease on a local resource, or sends the renewal to the owner
+	 */
+	private void onRenewLease(RenewLeaseMsg msg) {
+		String resourceName = msg.getResourceName();
+		ActorRef user = msg.getUser();
+		ResourceLockState state = lockTable.get(resourceName);
+		
+		if(state == null)
+		{
+			routeRemote(msg, resourceName, user);
+		}
+		else if(state.leases.containsKey(user))
+		{
+			startLease(state, user);
+		}
+	}
+	
+	/**
+	 * Answers with the queue depths of a local resource, or sends the question to the owner
+	 */
+	private void onQueueDepthRequest(QueueDepthRequestMsg msg) {
+		String resourceName = msg.getResourceName();
+		ActorRef replyTo = msg.getReplyTo();
+		ResourceLockState state = lockTable.get(resourceName);
+		
+		if(state == null)
+		{
+			routeRemote(msg, resourceName, replyTo);
+		}
+		else
+		{
+			send(replyTo, new QueueDepthResponseMsg(resourceName, state.waiters.size(), queuedRequests,
+					settings.getResourceQueueLimit(), settings.getManagerQueueLimit()));
+		}
+	}
+	
+	/**
+	 * Answers with a copy of this manager's metrics; in sharded mode each shard answers as well
+	 */
+	private void onMetricsRequest(MetricsRequestMsg msg) {
+		send(msg.getReplyTo(), metrics.snapshot(getSelf(), lockTable.values(), queuedRequests, shards));
+		for(ActorRef shard : shards)
+		{
+			shard.tell(msg, getSelf());
+		}
+	}
+	
+	/**
+	 * Answers with the most contended local resources; in sharded mode each shard answers as well
+	 */
+	private void onHotResourcesRequest(HotResourcesRequestMsg msg) {
+		ArrayList<HotResourcesResponseMsg.HotResource> hot = new ArrayList<HotResourcesResponseMsg.HotResource>();
+		if(hotResources != null)
+		{
+			for(HotResourceTracker.Estimate estimate : hotResources.top())
+			{
+				ResourceLockState state = lockTable.get(estimate.resourceName);
+				hot.add(new HotResourcesResponseMsg.HotResource(estimate.resourceName, estimate.requests, estimate.contended,
+						(state == null) ? 0 : state.waiters.size(), (estimate.waits == 0) ? 0 : estimate.waitNanos / estimate.waits));
+			}
+		}
+		send(msg.getReplyTo(), new HotResourcesResponseMsg(getSelf(), hot, shards));
+		for(ActorRef shard : shards)
+		{
+			shard.tell(msg, getSelf());
+		}
+	}
+	
+	/**
+	 * Hands a local resource to another manager, or sends the request on to the owner
+	 */
+	private void onMigrateResource(MigrateResourceMsg msg) throws IOException {
+		String resourceName = msg.getResourceName();
+		ActorRef target = msg.getTarget();
+		ResourceLockState state = lockTable.get(resourceName);
+		
+		if(state == null)
+		{
+			if(shardOf.containsKey(resourceName))
 			{
-				//resource is not local to this resource manager
-				if(resourceMap.containsKey(resourceName))
-				{
-					//resource manager is known
-					ActorRef targetRM = resourceMap.get(resourceName);
-					log(LogMsg.makeAccessReleaseForwardedLogMsg(getSelf(), targetRM, ((AccessReleaseMsg) msg).getAccessRelease()));
-					targetRM.tell(msg, getSelf());
-				}
-				else
-				{
-					//resource manager is not known
-					//Resource is not local or does not exist!
-					ActorRef targetRM;
-					
-					if(!remoteMessages.containsKey(resourceName))
-					{
-						remoteMessages.put(resourceName, new HashMap<ActorRef, Object>());
-					}
-					
-					remoteMessages.get(resourceName).put(requestingUser, msg);
-					resourceCounts.put(resourceName, resourceManagers.size());
-					
-					for(int i = 0; i < resourceManagers.size(); i++)
-					{
-						targetRM = resourceManagers.get(i);
-						targetRM.tell(new WhoHasResourceRequestMsg(resourceName, requestingUser), getSelf());
-					}
-				}
+				//held by a shard, which cannot hand it on; the resource stays here
+				send(msg.getReplyTo(), new ResourceMovedMsg(resourceName, identity));
+				return;
 			}
-			
+			routeRemote(msg, resourceName, msg.getReplyTo());
+			return;
 		}
-		else if(msg instanceof WhoHasResourceRequestMsg)
+		if(!peers.contains(target) || target.equals(getSelf()))
 		{
-			String resourceName = ((WhoHasResourceRequestMsg) msg).getResourceName();
-			
-			if(resourceNames.containsKey(resourceName))
+			//not a manager this one knows, or already here; the resource stays
+			send(msg.getReplyTo(), new ResourceMovedMsg(resourceName, identity));
+			return;
+		}
+		migrateLocal(state, msg);
+	}
+	
+	/**
+	 * Sends a local resource's lock state to the manager taking it over, and
+	 * leaves a forwarding pointer so requests arriving later follow it there.
+	 * Messages between two actors keep their order, so whatever is forwarded
+	 * reaches the new owner after the state does.
+	 * @param state				Lock state of the resource
+	 * @param msg				Migration request
+	 */
+	private void migrateLocal(ResourceLockState state, MigrateResourceMsg msg) throws IOException {
+		String resourceName = state.resource.getName();
+		long now = System.nanoTime();
+		lockTable.remove(resourceName);
+		
+		//the new owner runs its own leases and wait timers
+		for(Lease lease : state.leases.values())
+		{
+			timers.cancel(lease);
+		}
+		HashMap<ActorRef, Integer> readHolds = new HashMap<ActorRef, Integer>();
+		for(ActorRef reader : state.readers.users())
+		{
+			readHolds.put(reader, state.readers.holds(reader));
+		}
+		ArrayList<AccessRequestMsg> waiters = state.waiters.toList();
+		ArrayList<AtomicAcquireStepMsg> steps = new ArrayList<AtomicAcquireStepMsg>(waiters.size());
+		ArrayList<Long> maxWaitMillis = new ArrayList<Long>(waiters.size());
+		for(AccessRequestMsg accessMsg : waiters)
+		{
+			steps.add(state.queuedSteps.get(accessMsg));
+			WaitTimer timer = state.waitTimers.get(accessMsg);
+			if(timer == null)
 			{
-				//this resource manager has local access to the resource
-				sender.tell(new WhoHasResourceResponseMsg(resourceName, true, ((WhoHasResourceRequestMsg) msg).getRequestingUser()), getSelf());
+				maxWaitMillis.add(0L);
 			}
 			else
 			{
-				//the resource is not local to this resource manager
-				sender.tell(new WhoHasResourceResponseMsg(resourceName, false, ((WhoHasResourceRequestMsg) msg).getRequestingUser()), getSelf());
+				timers.cancel(timer);
+				maxWaitMillis.add(Math.max(1, TimeUnit.NANOSECONDS.toMillis(timer.deadline() - now)));
 			}
 		}
-		else if(msg instanceof WhoHasResourceResponseMsg)
+		queuedRequests -= waiters.size();
+		if(journal != null)
 		{
-			String resourceName = ((WhoHasResourceResponseMsg) msg).getResourceName();
-			ActorRef requestingUser = ((WhoHasResourceResponseMsg) msg).getRequestingUser();
-			Object requestMsg = remoteMessages.get(resourceName).get(requestingUser);
-			
-			if(((WhoHasResourceResponseMsg) msg).getResult())
+			//gone from the journal before the new owner can hand it out
+			journal.snapshot(lockTable.values());
+		}
+		
+		msg.getTarget().tell(new ResourceTransferMsg(msg, state.resource, readHolds, state.writer, state.writeHolds,
+				waiters, steps, maxWaitMillis, state.pendingDisable, state.disableWaiters), getSelf());
+		directory.putOwner(resourceName, msg.getTarget(), now);
+		if(placements.containsKey(resourceName))
+		{
+			placements.put(resourceName, msg.getTarget());
+		}
+	}
+	
+	/**
+	 * Takes over a resource from its old owner, with everyone holding and waiting for it
+	 */
+	private void onResourceTransfer(ResourceTransferMsg msg) throws IOException {
+		Resource resource = msg.getResource();
+		String resourceName = resource.getName();
+		
+		if(!shards.isEmpty())
+		{
+			//sharded mode: the shard the name hashes to takes it over and answers the old owner
+			ActorRef shard = shards.get((int) ((ConsistentHashRing.hash(resourceName) >>> 1) % shards.size()));
+			shardOf.put(resourceName, shard);
+			shard.tell(msg, getSender());
+			return;
+		}
+		
+		ResourceLockState state = new ResourceLockState(resource);
+		for(Map.Entry<ActorRef, Integer> reader : msg.getReadHolds().entrySet())
+		{
+			for(int i = 0; i < reader.getValue(); i++)
 			{
-				//resource was found in this resource manager
-				resourceMap.put(resourceName, sender);
-				log(LogMsg.makeRemoteResourceDiscoveredLogMsg(getSelf(), sender, resourceName));
-				sender.tell(requestMsg, getSelf());
+				state.acquireRead(reader.getKey());
 			}
-			else
+		}
+		for(int i = 0; i < msg.getWriteHolds(); i++)
+		{
+			state.acquireWrite(msg.getWriter());
+		}
+		
+		//waiters keep their order; queue limits were checked when they were queued
+		long now = System.nanoTime();
+		for(int i = 0; i < msg.getWaiters().size(); i++)
+		{
+			AccessRequestMsg accessMsg = msg.getWaiters().get(i);
+			state.waiters.add(accessMsg);
+			queuedRequests++;
+			if(msg.getSteps().get(i) != null)
 			{
-				//resource was not found in this resource manager
-				resourceCounts.put(resourceName, resourceCounts.get(resourceName) - 1);
-				if(resourceCounts.get(resourceName) < 1)
-				{
-					//no resourceManager has the resource, deny
-					if(requestMsg instanceof AccessRequestMsg)
-					{
-						requestingUser.tell(new AccessRequestDeniedMsg((AccessRequestMsg) requestMsg, AccessRequestDenialReason.RESOURCE_NOT_FOUND), getSelf());
-						log(LogMsg.makeAccessRequestDeniedLogMsg(requestingUser, getSelf(), ((AccessRequestMsg) requestMsg).getAccessRequest(), AccessRequestDenialReason.RESOURCE_NOT_FOUND));
-					}
-					else if(requestMsg instanceof ManagementRequestMsg)
-					{
-						requestingUser.tell(new ManagementRequestDeniedMsg((ManagementRequestMsg) requestMsg, ManagementRequestDenialReason.RESOURCE_NOT_FOUND), getSelf());
-						log(LogMsg.makeManagementRequestDeniedLogMsg(requestingUser, getSelf(), ((ManagementRequestMsg) requestMsg).getRequest(), ManagementRequestDenialReason.RESOURCE_NOT_FOUND));
-					}
-					else
-					{
-						System.out.println("Error in remoteMessages msg type!");
-					}
-				}
+				state.queuedSteps.put(accessMsg, msg.getSteps().get(i));
+			}
+			long maxWaitMillis = msg.getMaxWaitMillis().get(i);
+			if(maxWaitMillis > 0)
+			{
+				WaitTimer timer = new WaitTimer(state, accessMsg, now, System.currentTimeMillis() + maxWaitMillis);
+				state.waitTimers.put(accessMsg, timer);
+				timers.schedule(timer, TimeUnit.MILLISECONDS.toNanos(maxWaitMillis), now);
+				armTimerTick();
+			}
+		}
+		state.pendingDisable = msg.isPendingDisable();
+		state.disableWaiters.addAll(msg.getDisableWaiters());
+		lockTable.put(resourceName, state);
+		directory.remove(resourceName);
+		
+		if(settings.getLeaseMillis() > 0)
+		{
+			//holders start a fresh lease with the new owner
+			for(ActorRef reader : state.readers.users())
+			{
+				startLease(state, reader);
+			}
+			if(state.writer != null)
+			{
+				startLease(state, state.writer);
+			}
+		}
+		if(!state.pendingDisable)
+		{
+			//this manager's admission policy may let some of the waiters in
+			admitWaiters(state);
+		}
+		if(journal != null)
+		{
+			journal.snapshot(lockTable.values());
+		}
+		send(getSender(), new ResourceTransferAckMsg(msg.getRequest()));
+	}
+	
+	/**
+	 * Tells the other managers and the requester where a migrated resource lives now
+	 */
+	private void onResourceTransferAck(ResourceTransferAckMsg msg) {
+		MigrateResourceMsg request = msg.getRequest();
+		ResourceMovedMsg moved = new ResourceMovedMsg(request.getResourceName(), request.getTarget());
+		for(ActorRef manager : resourceManagers)
+		{
+			if(!manager.equals(getSelf()))
+			{
+				send(manager, moved);
 			}
 		}
+		send(request.getReplyTo(), moved);
+	}
+	
+	/**
+	 * Points later requests for a migrated resource at its new owner
+	 */
+	private void onResourceMoved(ResourceMovedMsg msg) {
+		String resourceName = msg.getResourceName();
+		ActorRef owner = msg.getOwner();
+		if(owner == null || owner.equals(getSelf()))
+		{
+			//this manager took the resource over
+			return;
+		}
+		if(placements.containsKey(resourceName))
+		{
+			placements.put(resourceName, owner);
+		}
+		resourceLocated(resourceName, owner);
+	}
+	
+	/**
+	 * Fires the timers that are due and keeps ticking while any are left
+	 */
+	private void onTimerTick(TimerTick msg) {
+		timerTick = null;
+		timers.advance(System.nanoTime(), onTimer);
+		if(!timers.isEmpty())
+		{
+			armTimerTick();
+		}
+	}
+	
+	/**
+	 * Starts an atomic acquisition coordinated by this manager
+	 */
+	private void onAtomicAccessRequest(AtomicAccessRequestMsg atomicMsg) {
+		if(atomicMsg.getRequests().isEmpty())
+		{
+			send(atomicMsg.getReplyTo(), new AtomicAccessGrantedMsg(atomicMsg));
+		}
+		else
+		{
+			//this manager coordinates, whichever managers own the resources
+			AtomicAcquisition acquisition = new AtomicAcquisition(++lastTransactionId, atomicMsg);
+			acquisitions.put(acquisition.transactionId, acquisition);
+			acquireNext(acquisition);
+		}
+	}
+	
+	/**
+	 * Advances or abandons an atomic acquisition once one of its requests is answered
+	 */
+	private void onAtomicAcquireStepResult(AtomicAcquireStepResultMsg result) {
+		AtomicAcquisition acquisition = acquisitions.get(result.getTransactionId());
+		
+		if(acquisition == null)
+		{
+			//acquisition no longer running, nothing is waiting on this answer
+		}
+		else if(result.isGranted())
+		{
+			acquisition.acquired.add(result.getRequest());
+			acquireNext(acquisition);
+		}
+		else
+		{
+			//all or nothing: give back what is held and tell the user which request failed
+			acquisitions.remove(acquisition.transactionId);
+			rollBack(acquisition);
+			send(acquisition.requestMsg.getReplyTo(), new AtomicAccessDeniedMsg(acquisition.requestMsg, result.getRequest(),
+					result.getReason(), result.getRejection()));
+		}
+	}
+	
+	/**
+	 * Tells a discovering manager whether this manager has a resource
+	 */
+	private void onWhoHasResourceRequest(WhoHasResourceRequestMsg msg) {
+		ActorRef sender = getSender();
+		String resourceName = msg.getResourceName();
+		
+		if(localNames().contains(resourceName))
+		{
+			//this resource manager has local access to the resource
+			send(sender, new WhoHasResourceResponseMsg(msg, true, identity));
+		}
 		else
 		{
-			System.out.println("Error, invalid message?: " + msg.getClass());
+			//the resource is not local to this resource manager
+			send(sender, new WhoHasResourceResponseMsg(msg, false, identity));
+		}
+	}
+	
+	/**
+	 * Remembers the owner of resources whose names hash to this manager
+	 */
+	private void onRegisterResources(RegisterResourcesMsg msg) {
+		ActorRef sender = getSender();
+		for(String resourceName : msg.getResourceNames())
+		{
+			placements.put(resourceName, sender);
+		}
+	}
+	
+	/**
+	 * Fills the directory from a peer's list of its resources
+	 */
+	private void onResourceAdvertisement(ResourceAdvertisementMsg advertisement) {
+		ActorRef sender = getSender();
+		for(int i = 0; i < advertisement.size(); i++)
+		{
+			resourceLocated(advertisement.getResourceName(i), sender);
 		}
+	}
+	
+	/**
+	 * Counts a manager's answer to a discovery
+	 */
+	private void onWhoHasResourceResponse(WhoHasResourceResponseMsg msg) {
+		ActorRef sender = getSender();
+		String resourceName = msg.getResourceName();
+		PendingDiscovery discovery = discoveries.get(resourceName);
 		
-	}catch(Exception e) {
-		System.out.println(e.toString());
+		if(discovery == null)
+		{
+			//the resource was already found, nothing is waiting on this answer
+		}
+		else if(msg.getRequestId() < discovery.firstRequestId)
+		{
+			//answer to an earlier discovery of the same name, ignore
+		}
+		else if(msg.getResult())
+		{
+			//resource was found in this resource manager, send it everything that was waiting
+			logResource(LogEventType.REMOTE_RESOURCE_DISCOVERED, sender, resourceName, null);
+			resourceLocated(resourceName, sender);
+		}
+		else if(discovery.outstanding.remove(sender) && discovery.outstanding.isEmpty())
+		{
+			//no resourceManager has the resource, remember that and deny everything that was waiting
+			discoveryFailed(discovery, true);
+		}
 	}
 	
+	/**
+	 * Sends a partial log batch that has waited long enough
+	 */
+	private void onLogFlush(LogFlush msg) {
+		logs.flushTimer = null;
+		flushLog();
+	}
 	
+	/**
+	 * Asks silent managers again, or gives up on a discovery that ran out of retries
+	 */
+	private void onDiscoveryTimeout(DiscoveryTimeout msg) {
+		PendingDiscovery discovery = discoveries.get(msg.resourceName);
+		
+		if(discovery == null || discovery.requestId != msg.requestId)
+		{
+			//discovery already finished or moved on to another round
+		}
+		else if(discovery.retriesLeft > 0)
+		{
+			//ask the managers that stayed silent again
+			discovery.retriesLeft--;
+			discovery.requestId = ++lastDiscoveryId;
+			askManagers(discovery);
+		}
+		else
+		{
+			//some manager never answered; deny without caching the miss
+			discovery.timeout = null;
+			discoveryFailed(discovery, false);
+		}
 	}
 }
@@ -0,0 +1,443 @@
+package cmsc433.p4.actors;
+import cmsc433.p4.enums.*;
+
+/**
+ * Tuning knobs for a resource manager.  Instances are never modified once built:
+ * every with-method returns a changed copy, so one settings object can safely be
+ * handed to any number of managers.
+ */
+public final class ResourceManagerSettings {
+
+	private AdmissionPolicy admissionPolicy = AdmissionPolicy.FIFO;
+	private int directoryCapacity = 65536;
+	private long ownerTtlMillis = 0;
+	private long missingTtlMillis = 0;
+	private int virtualNodes = 0;
+	private boolean advertisingResources = false;
+	private long discoveryTimeoutMillis = 0;
+	private int discoveryRetries = 0;
+	private long batchTimeoutMillis = 10000;
+	private LogLevel logLevel = LogLevel.TRACE;
+	private int logSampleEvery = 1;
+	private int logBatchSize = 1;
+	private long logFlushMillis = 0;
+	private String auditLogDirectory = null;
+	private int auditSegmentBytes = 64 << 20;
+	private String journalDirectory = null;
+	private int journalSnapshotEvery = 10000;
+	private long leaseMillis = 0;
+	private long timerTickMillis = 100;
+	private int shards = 0;
+	private boolean shard = false;
+	private String dispatcher = null;
+	private String mailbox = null;
+	private int resourceQueueLimit = 0;
+	private int managerQueueLimit = 0;
+	private int hotResourceCount = 0;
+	private int hotResourceSketchWidth = 512;
+
+	private ResourceManagerSettings() {
+	}
+
+	private ResourceManagerSettings(ResourceManagerSettings other) {
+		this.admissionPolicy = other.admissionPolicy;
+		this.directoryCapacity = other.directoryCapacity;
+		this.ownerTtlMillis = other.ownerTtlMillis;
+		this.missingTtlMillis = other.missingTtlMillis;
+		this.virtualNodes = other.virtualNodes;
+		this.advertisingResources = other.advertisingResources;
+		this.discoveryTimeoutMillis = other.discoveryTimeoutMillis;
+		this.discoveryRetries = other.discoveryRetries;
+		this.batchTimeoutMillis = other.batchTimeoutMillis;
+		this.logLevel = other.logLevel;
+		this.logSampleEvery = other.logSampleEvery;
+		this.logBatchSize = other.logBatchSize;
+		this.logFlushMillis = other.logFlushMillis;
+		this.auditLogDirectory = other.auditLogDirectory;
+		this.auditSegmentBytes = other.auditSegmentBytes;
+		this.journalDirectory = other.journalDirectory;
+		this.journalSnapshotEvery = other.journalSnapshotEvery;
+		this.leaseMillis = other.leaseMillis;
+		this.timerTickMillis = other.timerTickMillis;
+		this.shards = other.shards;
+		this.shard = other.shard;
+		this.dispatcher = other.dispatcher;
+		this.mailbox = other.mailbox;
+		this.resourceQueueLimit = other.resourceQueueLimit;
+		this.managerQueueLimit = other.managerQueueLimit;
+		this.hotResourceCount = other.hotResourceCount;
+		this.hotResourceSketchWidth = other.hotResourceSketchWidth;
+	}
+
+	/**
+	 * @return  settings matching the behavior of a manager created without any
+	 */
+	public static ResourceManagerSettings defaults() {
+		return new ResourceManagerSettings();
+	}
+
+	/**
+	 * @param policy			Order in which blocked requests are granted on release
+	 * @return					Copy of these settings using the given policy
+	 */
+	public ResourceManagerSettings withAdmissionPolicy(AdmissionPolicy policy) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.admissionPolicy = policy;
+		return copy;
+	}
+
+	/**
+	 * @param capacity			Most remote resource locations a manager remembers
+	 * @param ownerTtlMillis	How long a discovered owner is trusted, 0 for forever
+	 * @param missingTtlMillis	How long a resource no manager had is answered as not found
+	 * 							without asking again, 0 to always ask (the default)
+	 * @return					Copy of these settings using the given directory limits
+	 */
+	public ResourceManagerSettings withDirectory(int capacity, long ownerTtlMillis, long missingTtlMillis) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.directoryCapacity = capacity;
+		copy.ownerTtlMillis = ownerTtlMillis;
+		copy.missingTtlMillis = missingTtlMillis;
+		return copy;
+	}
+
+	/**
+	 * Turns on hash placement: managers share a consistent-hash ring and route a
+	 * request for an unknown resource to the manager its name hashes to, which
+	 * knows the owner.  Broadcast discovery is only used for names nobody registered.
+	 * All managers of one system must use the same value.
+	 * @param virtualNodes		Ring points per manager, 0 to turn placement off
+	 * @return					Copy of these settings using hash placement
+	 */
+	public ResourceManagerSettings withHashPlacement(int virtualNodes) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.virtualNodes = virtualNodes;
+		return copy;
+	}
+
+	/**
+	 * When on, a manager sends every peer the names of all its local resources
+	 * once it knows both, and fills its directory from the lists it receives.
+	 * Peers' lists count against the directory capacity.
+	 * @param advertise			true to exchange resource lists at startup
+	 * @return					Copy of these settings with advertisement turned on or off
+	 */
+	public ResourceManagerSettings withResourceAdvertisement(boolean advertise) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.advertisingResources = advertise;
+		return copy;
+	}
+
+	/**
+	 * Bounds how long a WhoHasResource discovery waits for managers that do not
+	 * answer.  After each timeout the question is resent to the silent managers
+	 * until the retries run out; then every waiting request is denied as not found.
+	 * Off by default: discovery waits for every manager, as it always has.
+	 * @param timeoutMillis		Wait per round in milliseconds, 0 to wait forever
+	 * @param retries			Extra rounds before giving up
+	 * @return					Copy of these settings using the given discovery limits
+	 */
+	public ResourceManagerSettings withDiscoveryTimeout(long timeoutMillis, int retries) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.discoveryTimeoutMillis = timeoutMillis;
+		copy.discoveryRetries = retries;
+		return copy;
+	}
+
+	/**
+	 * Bounds how long a batch waits for the parts it forwarded to other managers.
+	 * The missing parts are then denied as not found, and any access a part
+	 * granted but answered too late is released again.  On by default, since a
+	 * silent manager would otherwise hold up the batch's answer forever.
+	 * @param timeoutMillis		Wait in milliseconds, 0 to wait forever
+	 * @return					Copy of these settings using the given batch limit
+	 */
+	public ResourceManagerSettings withBatchTimeout(long timeoutMillis) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.batchTimeoutMillis = timeoutMillis;
+		return copy;
+	}
+
+	/**
+	 * Limits what a manager logs.  Sampling only thins out TRACE events, so every
+	 * grant, denial and release is still logged at the INFO level.
+	 * @param level				Lowest level logged
+	 * @param sampleEvery		Keep one TRACE event out of this many, 1 to keep all
+	 * @return					Copy of these settings using the given log filter
+	 */
+	public ResourceManagerSettings withLogFilter(LogLevel level, int sampleEvery) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.logLevel = level;
+		copy.logSampleEvery = sampleEvery;
+		return copy;
+	}
+
+	/**
+	 * Buffers log events in the manager and sends them to the logger as one
+	 * LogBatchMsg once the batch is full or has waited long enough.  The logger
+	 * must understand LogBatchMsg; with a batch size of 1 every event is sent on
+	 * its own as a plain LogMsg.
+	 * @param batchSize			Events per message to the logger
+	 * @param flushMillis		Longest time an event waits in the buffer, 0 to wait for a full batch
+	 * @return					Copy of these settings using log batching
+	 */
+	public ResourceManagerSettings withLogBatching(int batchSize, long flushMillis) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.logBatchSize = batchSize;
+		copy.logFlushMillis = flushMillis;
+		return copy;
+	}
+
+	/**
+	 * Also writes every log event, unfiltered, to a binary audit log in a
+	 * subdirectory named after the manager actor.  Print one with BinaryEventLogDecoder.
+	 * @param directory			Parent directory of the managers' audit logs, null to turn off
+	 * @param segmentBytes		Size of each memory-mapped segment file
+	 * @return					Copy of these settings using an audit log
+	 */
+	public ResourceManagerSettings withAuditLog(String directory, int segmentBytes) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.auditLogDirectory = directory;
+		copy.auditSegmentBytes = segmentBytes;
+		return copy;
+	}
+
+	/**
+	 * Records every change to a manager's lock table in a journal, in a
+	 * subdirectory named after the manager actor.  A manager with the same name
+	 * started later, in this process or another, replays it: the resources it is
+	 * initialized with get back their holders, queues, wait deadlines and status.
+	 * Each handled message costs one sync of the journal file, and replies wait
+	 * for it.  Holders and waiters are only useful again if their actors can be
+	 * reached under the same paths.
+	 * @param directory			Parent directory of the managers' journals, null to turn off
+	 * @param snapshotEvery		Changes recorded between snapshots of the whole table
+	 * @return					Copy of these settings using a journal
+	 */
+	public ResourceManagerSettings withJournal(String directory, int snapshotEvery) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.journalDirectory = directory;
+		copy.journalSnapshotEvery = snapshotEvery;
+		return copy;
+	}
+
+	/**
+	 * Grants access with a lease.  A user's holds on a resource are released
+	 * once it goes this long without being granted more access to the resource
+	 * or sending a RenewLeaseMsg for it, and the user is sent a LeaseExpiredMsg.
+	 * @param leaseMillis		Lease length in milliseconds, 0 for holds that never expire
+	 * @return					Copy of these settings using leases
+	 */
+	public ResourceManagerSettings withLeases(long leaseMillis) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.leaseMillis = leaseMillis;
+		return copy;
+	}
+
+	/**
+	 * @param tickMillis		Resolution of the manager's timer wheel; timers fire up to one tick late
+	 * @return					Copy of these settings using the given tick
+	 */
+	public ResourceManagerSettings withTimerTick(long tickMillis) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.timerTickMillis = tickMillis;
+		return copy;
+	}
+
+	/**
+	 * Bounds how many blocked requests a manager keeps waiting.  A blocking
+	 * request that would go past a limit is answered with an
+	 * AccessRequestRejectedMsg giving OVERLOADED.  In a batch such a request is
+	 * listed as rejected with OVERLOADED, and an atomic request is denied with
+	 * OVERLOADED as its rejection.  Clients can watch the depths with a
+	 * QueueDepthRequestMsg.
+	 * @param perResource		Most requests waiting for one resource, 0 for no limit
+	 * @param perManager		Most requests waiting across all the manager's resources, 0 for no limit;
+	 * 							split evenly between shards
+	 * @return					Copy of these settings using the given queue limits
+	 */
+	public ResourceManagerSettings withQueueLimits(int perResource, int perManager) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.resourceQueueLimit = perResource;
+		copy.managerQueueLimit = perManager;
+		return copy;
+	}
+
+	/**
+	 * Sizes the tracker of the most contended resources, answered with a
+	 * HotResourcesRequestMsg.  Memory is fixed by these numbers, not by the
+	 * number of resources: four sketches of four rows of sketchWidth counters.
+	 * Wider sketches overcount less when many resources are contended.
+	 * Tracking is off by default.
+	 * @param count				Resources reported, 0 to turn tracking off
+	 * @param sketchWidth		Counters per sketch row, rounded up to a power of two
+	 * @return					Copy of these settings using the given tracker size
+	 */
+	public ResourceManagerSettings withHotResources(int count, int sketchWidth) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.hotResourceCount = count;
+		copy.hotResourceSketchWidth = sketchWidth;
+		return copy;
+	}
+
+	/**
+	 * Turns a manager into a router over child lock shards.  Each local resource
+	 * is held by the shard its name hashes to, and requests for it are handed
+	 * to that shard, which answers users in the manager's name.  Discovery,
+	 * forwarding and batch splitting stay with the manager.
+	 * @param shards			Number of shards, 0 to hold every resource in the manager itself
+	 * @return					Copy of these settings using shards
+	 */
+	public ResourceManagerSettings withShards(int shards) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.shards = shards;
+		return copy;
+	}
+
+	/**
+	 * Runs the manager, and its shards, on a dispatcher other than the system's
+	 * default, such as one of the ManagerDispatchers.
+	 * @param dispatcher		Configuration path of the dispatcher, null for the default
+	 * @return					Copy of these settings using the given dispatcher
+	 */
+	public ResourceManagerSettings withDispatcher(String dispatcher) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.dispatcher = dispatcher;
+		return copy;
+	}
+
+	/**
+	 * Gives the manager, and its shards, a mailbox other than the system's
+	 * default, such as ManagerDispatchers.MANAGER_MAILBOX to handle releases
+	 * ahead of new requests.
+	 * @param mailbox			Configuration path of the mailbox, null for the default
+	 * @return					Copy of these settings using the given mailbox
+	 */
+	public ResourceManagerSettings withMailbox(String mailbox) {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.mailbox = mailbox;
+		return copy;
+	}
+
+	/**
+	 * @return  settings for a shard of a manager using these settings
+	 */
+	ResourceManagerSettings asShard() {
+		ResourceManagerSettings copy = new ResourceManagerSettings(this);
+		copy.shards = 0;
+		copy.shard = true;
+		if(managerQueueLimit > 0 && shards > 0)
+		{
+			copy.managerQueueLimit = (managerQueueLimit + shards - 1) / shards;
+		}
+		return copy;
+	}
+
+	public AdmissionPolicy getAdmissionPolicy() {
+		return admissionPolicy;
+	}
+
+	public int getDirectoryCapacity() {
+		return directoryCapacity;
+	}
+
+	public long getOwnerTtlMillis() {
+		return ownerTtlMillis;
+	}
+
+	public long getMissingTtlMillis() {
+		return missingTtlMillis;
+	}
+
+	public int getVirtualNodes() {
+		return virtualNodes;
+	}
+
+	public boolean isAdvertisingResources() {
+		return advertisingResources;
+	}
+
+	public long getDiscoveryTimeoutMillis() {
+		return discoveryTimeoutMillis;
+	}
+
+	public int getDiscoveryRetries() {
+		return discoveryRetries;
+	}
+
+	public long getBatchTimeoutMillis() {
+		return batchTimeoutMillis;
+	}
+
+	public LogLevel getLogLevel() {
+		return logLevel;
+	}
+
+	public int getLogSampleEvery() {
+		return logSampleEvery;
+	}
+
+	public int getLogBatchSize() {
+		return logBatchSize;
+	}
+
+	public long getLogFlushMillis() {
+		return logFlushMillis;
+	}
+
+	public String getAuditLogDirectory() {
+		return auditLogDirectory;
+	}
+
+	public int getAuditSegmentBytes() {
+		return auditSegmentBytes;
+	}
+
+	public String getJournalDirectory() {
+		return journalDirectory;
+	}
+
+	public int getJournalSnapshotEvery() {
+		return journalSnapshotEvery;
+	}
+
+	public long getLeaseMillis() {
+		return leaseMillis;
+	}
+
+	public long getTimerTickMillis() {
+		return timerTickMillis;
+	}
+
+	public int getShards() {
+		return shards;
+	}
+
+	public int getResourceQueueLimit() {
+		return resourceQueueLimit;
+	}
+
+	public int getManagerQueueLimit() {
+		return managerQueueLimit;
+	}
+
+	public int getHotResourceCount() {
+		return hotResourceCount;
+	}
+
+	public int getHotResourceSketchWidth() {
+		return hotResourceSketchWidth;
+	}
+
+	public String getDispatcher() {
+		return dispatcher;
+	}
+
+	public String getMailbox() {
+		return mailbox;
+	}
+
+	boolean isShard() {
+		return shard;
+	}
+}
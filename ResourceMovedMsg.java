@@ -0,0 +1,31 @@
+package cmsc433.p4.messages;
+
+import akka.actor.ActorRef;
+
+/**
+ * Tells every manager, and whoever asked for the migration, which manager
+ * owns a resource after a MigrateResourceMsg.  The owner is the old one if the
+ * resource did not move, and null if no manager has the resource.
+ */
+public class ResourceMovedMsg {
+	private final String resourceName;
+	private final ActorRef owner;
+	
+	public ResourceMovedMsg (String resourceName, ActorRef owner) {
+		this.resourceName = resourceName;
+		this.owner = owner;
+	}
+	
+	public String getResourceName () {
+		return resourceName;
+	}
+	
+	public ActorRef getOwner () {
+		return owner;
+	}
+	
+	@Override 
+	public String toString () {
+		return resourceName + " is owned by " + owner;
+	}
+}
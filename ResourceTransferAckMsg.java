@@ -0,0 +1,22 @@
+package cmsc433.p4.messages;
+
+/**
+ * Sent by the new owner of a resource to the old one once it has installed
+ * the lock state of a ResourceTransferMsg.
+ */
+public class ResourceTransferAckMsg {
+	private final MigrateResourceMsg request;
+	
+	public ResourceTransferAckMsg (MigrateResourceMsg request) {
+		this.request = request;
+	}
+	
+	public MigrateResourceMsg getRequest () {
+		return request;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Took over " + request.getResourceName();
+	}
+}
@@ -0,0 +1,108 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import akka.actor.ActorRef;
+import cmsc433.p4.util.Resource;
+
+/**
+ * Lock state of a resource, sent by its old owner to the manager taking it
+ * over.  The new owner answers with a ResourceTransferAckMsg.  Requests the
+ * old owner receives afterwards are forwarded to the new one, and arrive
+ * behind this message.
+ */
+public class ResourceTransferMsg {
+	private final MigrateResourceMsg request;
+	private final Resource resource;
+	private final Map<ActorRef, Integer> readHolds;
+	private final ActorRef writer;
+	private final int writeHolds;
+	private final List<AccessRequestMsg> waiters;
+	private final List<AtomicAcquireStepMsg> steps;		// Parallel to waiters, null for a plain request
+	private final List<Long> maxWaitMillis;				// Parallel to waiters, 0 for no limit
+	private final boolean pendingDisable;
+	private final List<ManagementRequestMsg> disableWaiters;
+	
+	public ResourceTransferMsg (MigrateResourceMsg request, Resource resource, Map<ActorRef, Integer> readHolds,
+			ActorRef writer, int writeHolds, List<AccessRequestMsg> waiters, List<AtomicAcquireStepMsg> steps,
+			List<Long> maxWaitMillis, boolean pendingDisable, List<ManagementRequestMsg> disableWaiters) {
+		this.request = request;
+		this.resource = resource;
+		this.readHolds = Collections.unmodifiableMap(new HashMap<ActorRef, Integer>(readHolds));
+		this.writer = writer;
+		this.writeHolds = writeHolds;
+		this.waiters = Collections.unmodifiableList(new ArrayList<AccessRequestMsg>(waiters));
+		this.steps = Collections.unmodifiableList(new ArrayList<AtomicAcquireStepMsg>(steps));
+		this.maxWaitMillis = Collections.unmodifiableList(new ArrayList<Long>(maxWaitMillis));
+		this.pendingDisable = pendingDisable;
+		this.disableWaiters = Collections.unmodifiableList(new ArrayList<ManagementRequestMsg>(disableWaiters));
+	}
+	
+	public MigrateResourceMsg getRequest () {
+		return request;
+	}
+	
+	public Resource getResource () {
+		return resource;
+	}
+	
+	/**
+	 * @return  number of unreleased read grants of each reader
+	 */
+	public Map<ActorRef, Integer> getReadHolds () {
+		return readHolds;
+	}
+	
+	/**
+	 * @return  user holding write access, or null
+	 */
+	public ActorRef getWriter () {
+		return writer;
+	}
+	
+	public int getWriteHolds () {
+		return writeHolds;
+	}
+	
+	/**
+	 * @return  queued requests, oldest first
+	 */
+	public List<AccessRequestMsg> getWaiters () {
+		return waiters;
+	}
+	
+	/**
+	 * @return  atomic acquisition step of each queued request, null for a plain request
+	 */
+	public List<AtomicAcquireStepMsg> getSteps () {
+		return steps;
+	}
+	
+	/**
+	 * @return  time each queued request may still wait, 0 for no limit
+	 */
+	public List<Long> getMaxWaitMillis () {
+		return maxWaitMillis;
+	}
+	
+	public boolean isPendingDisable () {
+		return pendingDisable;
+	}
+	
+	/**
+	 * @return  disable requests waiting for the holders to release
+	 */
+	public List<ManagementRequestMsg> getDisableWaiters () {
+		return disableWaiters;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Take over " + resource.getName() + " with " + (readHolds.size() + (writer == null ? 0 : 1))
+				+ " holders and " + waiters.size() + " waiting";
+	}
+}
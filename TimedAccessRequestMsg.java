@@ -0,0 +1,30 @@
+package cmsc433.p4.messages;
+
+/**
+ * An access request that waits in the resource's queue for at most a given
+ * time.  If it is still queued then, it is taken out of the queue and answered
+ * with an AccessRequestRejectedMsg.  Otherwise it is answered like the request
+ * it wraps.  Only blocking request types ever wait.
+ */
+public class TimedAccessRequestMsg {
+	private final AccessRequestMsg request;
+	private final long maxWaitMillis;
+	
+	public TimedAccessRequestMsg (AccessRequestMsg request, long maxWaitMillis) {
+		this.request = request;
+		this.maxWaitMillis = maxWaitMillis;
+	}
+	
+	public AccessRequestMsg getRequest () {
+		return request;
+	}
+	
+	public long getMaxWaitMillis () {
+		return maxWaitMillis;
+	}
+	
+	@Override 
+	public String toString () {
+		return request + " (wait at most " + maxWaitMillis + " ms)";
+	}
+}
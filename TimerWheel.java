@@ -0,0 +1,174 @@
+package cmsc433.p4.actors;
+
+/**
+ * Hashed timer wheel.  Timers hang in intrusive doubly-linked lists, one per
+ * slot, so scheduling, rescheduling and cancelling are O(1) and allocate
+ * nothing.  Each tick visits one slot, so the work per tick depends on the
+ * timers in that slot, not on how many are outstanding overall.  Deadlines are
+ * rounded up to whole ticks; a timer fires at most one tick late.  The owning
+ * actor advances the wheel from its own messages, so no locking is needed.
+ */
+class TimerWheel {
+
+	/**
+	 * Something that can be scheduled on the wheel.  Subclasses carry the payload.
+	 */
+	static class Timer {
+		private Timer prev;
+		private Timer next;
+		private int slot = -1;					// -1 while not scheduled
+		private long rounds;					// Full turns left before firing
+		private long deadline;					// System.nanoTime() the timer was scheduled for
+
+		boolean isScheduled() {
+			return slot >= 0;
+		}
+
+		/**
+		 * @return  System.nanoTime() the timer is due, before rounding to ticks
+		 */
+		long deadline() {
+			return deadline;
+		}
+	}
+
+	/**
+	 * Called for each timer that fires.  May schedule or cancel any timer.
+	 */
+	interface Expiry {
+		void expired(Timer timer);
+	}
+
+	private final Timer[] slots;
+	private final int mask;
+	private final long tickNanos;
+	private final long start;					// System.nanoTime() of tick 0
+	private long tick = 0;						// Last tick processed
+	private int size = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param slotCount			Number of slots, rounded up to a power of two
+	 * @param tickNanos			Length of one tick in nanoseconds
+	 * @param now				Current System.nanoTime()
+	 */
+	TimerWheel(int slotCount, long tickNanos, long now) {
+		int n = Integer.highestOneBit(Math.max(1, slotCount - 1)) << 1;
+		this.slots = new Timer[n];
+		this.mask = n - 1;
+		this.tickNanos = Math.max(1, tickNanos);
+		this.start = now;
+	}
+
+	/**
+	 * Schedules a timer, replacing its previous deadline if it had one
+	 * @param timer				Timer to schedule
+	 * @param delayNanos		Time from now until it fires
+	 * @param now				Current System.nanoTime()
+	 */
+	void schedule(Timer timer, long delayNanos, long now) {
+		cancel(timer);
+		if(size == 0)
+		{
+			//nothing was due while the wheel was idle, so skip the ticks that passed
+			//instead of leaving advance() to walk them one by one
+			tick = Math.max(tick, (now - start) / tickNanos);
+		}
+		//counted from the last processed tick, which may lag behind now
+		long deadline = (now - start + delayNanos + tickNanos - 1) / tickNanos;
+		long ticks = Math.max(1, deadline - tick);
+		int slot = (int) ((tick + ticks) & mask);
+		timer.rounds = (ticks - 1) / slots.length;
+		timer.slot = slot;
+		timer.deadline = now + delayNanos;
+		timer.prev = null;
+		timer.next = slots[slot];
+		if(timer.next != null)
+		{
+			timer.next.prev = timer;
+		}
+		slots[slot] = timer;
+		size++;
+	}
+
+	/**
+	 * Removes a timer from the wheel; does nothing if it is not scheduled
+	 * @param timer				Timer to cancel
+	 */
+	void cancel(Timer timer) {
+		if(timer.slot < 0)
+		{
+			return;
+		}
+		if(timer.prev != null)
+		{
+			timer.prev.next = timer.next;
+		}
+		else
+		{
+			slots[timer.slot] = timer.next;
+		}
+		if(timer.next != null)
+		{
+			timer.next.prev = timer.prev;
+		}
+		timer.prev = null;
+		timer.next = null;
+		timer.slot = -1;
+		size--;
+	}
+
+	/**
+	 * Processes every tick that has passed and fires the timers that are due
+	 * @param now				Current System.nanoTime()
+	 * @param expiry			Called for each timer that fires, in deadline order per tick
+	 */
+	void advance(long now, Expiry expiry) {
+		long target = (now - start) / tickNanos;
+		while(tick < target && size > 0)
+		{
+			tick++;
+			int slot = (int) (tick & mask);
+
+			//unlink the due timers first, so callbacks may change the wheel freely
+			Timer due = null;
+			Timer timer = slots[slot];
+			while(timer != null)
+			{
+				Timer next = timer.next;
+				if(timer.rounds == 0)
+				{
+					cancel(timer);
+					timer.next = due;
+					due = timer;
+				}
+				else
+				{
+					timer.rounds--;
+				}
+				timer = next;
+			}
+			while(due != null)
+			{
+				Timer next = due.next;
+				due.next = null;
+				expiry.expired(due);
+				due = next;
+			}
+		}
+		if(size == 0 && tick < target)
+		{
+			//nothing scheduled, skip the idle ticks
+			tick = target;
+		}
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+}
@@ -0,0 +1,91 @@
+package cmsc433.p4.bench;
+import java.util.Map;
+import cmsc433.p4.enums.*;
+import cmsc433.p4.messages.*;
+import cmsc433.p4.util.*;
+import akka.actor.ActorRef;
+
+/**
+ * One operation of a request trace.  A trace line looks like
+ *
+ * <pre>
+ * {"timestamp": 1500, "user": "u7", "op": "access", "resource": "db", "type": "EXCLUSIVE_WRITE_BLOCKING"}
+ * </pre>
+ *
+ * where timestamp is in milliseconds from any origin, op is access, release or
+ * management, and type names an AccessRequestType, AccessType or
+ * ManagementRequestType to match.
+ */
+final class TraceEvent {
+
+	enum Op {
+		ACCESS, RELEASE, MANAGEMENT
+	}
+
+	final long timestamp;
+	final String user;
+	final Op op;
+	final String resource;
+	private final Enum<?> type;
+
+	private TraceEvent(long timestamp, String user, Op op, String resource, Enum<?> type) {
+		this.timestamp = timestamp;
+		this.user = user;
+		this.op = op;
+		this.resource = resource;
+		this.type = type;
+	}
+
+	/**
+	 * @param fields			Fields of one trace line
+	 * @param lineNumber		Line the fields came from, for errors
+	 * @return					the event the line describes
+	 * @throws IllegalArgumentException if a field is missing or has a bad value
+	 */
+	static TraceEvent of(Map<String, Object> fields, int lineNumber) {
+		try
+		{
+			Object timestamp = fields.get("timestamp");
+			if(!(timestamp instanceof Number))
+			{
+				throw new IllegalArgumentException("timestamp must be a number");
+			}
+			Op op = Op.valueOf(text(fields, "op").toUpperCase());
+			String type = text(fields, "type");
+			Enum<?> parsed;
+			switch(op)
+			{
+				case ACCESS: parsed = AccessRequestType.valueOf(type); break;
+				case RELEASE: parsed = AccessType.valueOf(type); break;
+				default: parsed = ManagementRequestType.valueOf(type);
+			}
+			return new TraceEvent(((Number) timestamp).longValue(), text(fields, "user"), op, text(fields, "resource"), parsed);
+		}
+		catch(IllegalArgumentException e)
+		{
+			throw new IllegalArgumentException("Trace line " + lineNumber + ": " + e.getMessage(), e);
+		}
+	}
+
+	private static String text(Map<String, Object> fields, String name) {
+		Object value = fields.get(name);
+		if(!(value instanceof String))
+		{
+			throw new IllegalArgumentException(name + " must be a string");
+		}
+		return (String) value;
+	}
+
+	/**
+	 * @param userRef			Actor playing the event's user
+	 * @return					the message the user sends to its manager
+	 */
+	Object toMessage(ActorRef userRef) {
+		switch(op)
+		{
+			case ACCESS: return new AccessRequestMsg(new AccessRequest(resource, (AccessRequestType) type), userRef);
+			case RELEASE: return new AccessReleaseMsg(new AccessRelease(resource, (AccessType) type), userRef);
+			default: return new ManagementRequestMsg(new ManagementRequest(resource, (ManagementRequestType) type), userRef);
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package cmsc433.p4.bench;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Reads a request trace: one flat JSON object per line, blank lines skipped.
+ * Only what a trace needs of JSON is understood: strings, numbers, true,
+ * false and null as values, and no nested objects or arrays.
+ */
+final class TraceReader {
+
+	private final String line;
+	private final int lineNumber;
+	private int pos = 0;
+
+	private TraceReader(String line, int lineNumber) {
+		this.line = line;
+		this.lineNumber = lineNumber;
+	}
+
+	/**
+	 * @param file				Trace file
+	 * @return					the trace's events, in file order
+	 * @throws IllegalArgumentException naming the line of the first malformed event
+	 */
+	static List<TraceEvent> read(File file) throws IOException {
+		ArrayList<TraceEvent> events = new ArrayList<TraceEvent>();
+		try(BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))
+		{
+			String line;
+			int lineNumber = 0;
+			while((line = in.readLine()) != null)
+			{
+				lineNumber++;
+				if(!line.trim().isEmpty())
+				{
+					events.add(TraceEvent.of(new TraceReader(line, lineNumber).object(), lineNumber));
+				}
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * @return  the fields of the line's object; numbers are Long if integral, else Double
+	 */
+	private HashMap<String, Object> object() {
+		HashMap<String, Object> fields = new HashMap<String, Object>();
+		skipSpace();
+		expect('{');
+		skipSpace();
+		if(peek() == '}')
+		{
+			pos++;
+			return end(fields);
+		}
+		while(true)
+		{
+			skipSpace();
+			String name = string();
+			skipSpace();
+			expect(':');
+			skipSpace();
+			fields.put(name, value());
+			skipSpace();
+			char c = next();
+			if(c == '}')
+			{
+				return end(fields);
+			}
+			if(c != ',')
+			{
+				throw error("expected , or }");
+			}
+		}
+	}
+
+	private HashMap<String, Object> end(HashMap<String, Object> fields) {
+		skipSpace();
+		if(pos != line.length())
+		{
+			throw error("text after the object");
+		}
+		return fields;
+	}
+
+	private Object value() {
+		char c = peek();
+		if(c == '"')
+		{
+			return string();
+		}
+		if(c == '-' || (c >= '0' && c <= '9'))
+		{
+			return number();
+		}
+		if(line.startsWith("true", pos))
+		{
+			pos += 4;
+			return Boolean.TRUE;
+		}
+		if(line.startsWith("false", pos))
+		{
+			pos += 5;
+			return Boolean.FALSE;
+		}
+		if(line.startsWith("null", pos))
+		{
+			pos += 4;
+			return null;
+		}
+		throw error("unsupported value");
+	}
+
+	private String string() {
+		expect('"');
+		StringBuilder text = new StringBuilder();
+		while(true)
+		{
+			char c = next();
+			if(c == '"')
+			{
+				return text.toString();
+			}
+			if(c != '\\')
+			{
+				text.append(c);
+				continue;
+			}
+			char escaped = next();
+			switch(escaped)
+			{
+				case 'b': text.append('\b'); break;
+				case 'f': text.append('\f'); break;
+				case 'n': text.append('\n'); break;
+				case 'r': text.append('\r'); break;
+				case 't': text.append('\t'); break;
+				case 'u':
+					if(pos + 4 > line.length())
+					{
+						throw error("short \\u escape");
+					}
+					text.append((char) Integer.parseInt(line.substring(pos, pos + 4), 16));
+					pos += 4;
+					break;
+				default: text.append(escaped);		// \" \\ \/
+			}
+		}
+	}
+
+	private Object number() {
+		int start = pos;
+		boolean integral = true;
+		while(pos < line.length() && "+-0123456789.eE".indexOf(line.charAt(pos)) >= 0)
+		{
+			char c = line.charAt(pos++);
+			if(c == '.' || c == 'e' || c == 'E')
+			{
+				integral = false;
+			}
+		}
+		String text = line.substring(start, pos);
+		try
+		{
+			return integral ? (Object) Long.valueOf(text) : (Object) Double.valueOf(text);
+		}
+		catch(NumberFormatException e)
+		{
+			throw error("bad number " + text);
+		}
+	}
+
+	private void skipSpace() {
+		while(pos < line.length() && Character.isWhitespace(line.charAt(pos)))
+		{
+			pos++;
+		}
+	}
+
+	private char peek() {
+		if(pos >= line.length())
+		{
+			throw error("unexpected end of line");
+		}
+		return line.charAt(pos);
+	}
+
+	private char next() {
+		char c = peek();
+		pos++;
+		return c;
+	}
+
+	private void expect(char c) {
+		if(next() != c)
+		{
+			throw error("expected " + c);
+		}
+	}
+
+	private IllegalArgumentException error(String problem) {
+		return new IllegalArgumentException("Trace line " + lineNumber + ", column " + (pos + 1) + ": " + problem);
+	}
+}
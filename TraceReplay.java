@@ -0,0 +1,311 @@
+package cmsc433.p4.bench;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import cmsc433.p4.actors.LogLinearHistogram;
+import cmsc433.p4.actors.ResourceManagerSettings;
+import cmsc433.p4.messages.*;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+
+/**
+ * Replays a request trace against a set of resource managers in one
+ * ActorSystem, to reproduce a recorded contention pattern locally.  Every
+ * resource and every user is placed on a manager by the hash of its name, so
+ * the same trace and topology always put the same load on the same managers.
+ * Users send to their own manager, which forwards requests for resources
+ * held elsewhere.  The report gives the throughput, a histogram of grant
+ * latencies and the deepest queues seen while sampling.  See TraceEvent for
+ * the trace format.
+ *
+ * Usage: java cmsc433.p4.bench.TraceReplay trace.jsonl [--managers K] [--shards S]
+ *        [--speed X] [--sample-millis M] [--drain-millis D]
+ *
+ *   --managers			Number of managers, default 1
+ *   --shards			Shards per manager, default 0
+ *   --speed			1 replays at the recorded pace, 2 twice as fast, 0 (default) as fast as possible
+ *   --sample-millis	Time between queue depth samples, default 100
+ *   --drain-millis		Longest wait for outstanding answers after the last event, default 5000
+ */
+public final class TraceReplay {
+
+	private final int managerCount;
+	private final int shards;
+	private final double speed;
+	private final long sampleMillis;
+	private final long drainMillis;
+
+	private ActorSystem system;
+	private ActorRef probe;
+	private final BlockingQueue<Object> probeReplies = new LinkedBlockingQueue<Object>();
+	private final BlockingQueue<Object> reports = new LinkedBlockingQueue<Object>();
+	private List<ActorRef> managers;
+	private final LinkedHashMap<String, ActorRef> owners = new LinkedHashMap<String, ActorRef>();
+	private final HashMap<String, ActorRef> users = new HashMap<String, ActorRef>();
+
+	//deepest queues seen while sampling
+	private final HashMap<String, Integer> peakDepths = new HashMap<String, Integer>();
+	private int peakManagerDepth = 0;
+
+	private TraceReplay(int managerCount, int shards, double speed, long sampleMillis, long drainMillis) {
+		this.managerCount = managerCount;
+		this.shards = shards;
+		this.speed = speed;
+		this.sampleMillis = sampleMillis;
+		this.drainMillis = drainMillis;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length == 0)
+		{
+			System.out.println("Usage: TraceReplay trace.jsonl [--managers K] [--shards S] [--speed X] [--sample-millis M] [--drain-millis D]");
+			return;
+		}
+		HashMap<String, String> options = new HashMap<String, String>();
+		for(int i = 1; i + 1 < args.length; i += 2)
+		{
+			options.put(args[i], args[i + 1]);
+		}
+		TraceReplay replay = new TraceReplay(
+				Integer.parseInt(option(options, "--managers", "1")),
+				Integer.parseInt(option(options, "--shards", "0")),
+				Double.parseDouble(option(options, "--speed", "0")),
+				Long.parseLong(option(options, "--sample-millis", "100")),
+				Long.parseLong(option(options, "--drain-millis", "5000")));
+		replay.run(TraceReader.read(new File(args[0])));
+	}
+
+	private static String option(Map<String, String> options, String name, String fallback) {
+		String value = options.get(name);
+		return (value == null) ? fallback : value;
+	}
+
+	private void run(List<TraceEvent> events) throws InterruptedException {
+		if(events.isEmpty())
+		{
+			System.out.println("Trace is empty");
+			return;
+		}
+		system = ActorSystem.create("trace-replay");
+		try
+		{
+			start(events);
+			replay(events);
+		}
+		finally
+		{
+			system.terminate();
+		}
+	}
+
+	/**
+	 * Creates the managers with the trace's resources, and an actor for every user
+	 */
+	private void start(List<TraceEvent> events) throws InterruptedException {
+		probe = system.actorOf(BenchmarkUser.props(probeReplies, false));
+		List<List<String>> resources = new ArrayList<List<String>>();
+		for(int i = 0; i < managerCount; i++)
+		{
+			resources.add(new ArrayList<String>());
+		}
+		for(TraceEvent event : events)
+		{
+			if(!owners.containsKey(event.resource))
+			{
+				owners.put(event.resource, null);
+				resources.get(place(event.resource)).add(event.resource);
+			}
+		}
+		ResourceManagerSettings settings = ResourceManagerSettings.defaults().withShards(shards);
+		managers = BenchmarkFixture.managers(system, settings, resources, probe, probeReplies);
+		for(String resource : owners.keySet())
+		{
+			owners.put(resource, managers.get(place(resource)));
+		}
+		for(TraceEvent event : events)
+		{
+			if(!users.containsKey(event.user))
+			{
+				users.put(event.user, system.actorOf(ReplayUser.props(managers.get(place(event.user)), reports)));
+			}
+		}
+	}
+
+	private int place(String name) {
+		return Math.floorMod(name.hashCode(), managerCount);
+	}
+
+	private void replay(List<TraceEvent> events) throws InterruptedException {
+		long origin = events.get(0).timestamp;
+		long start = System.nanoTime();
+		long nextSample = start;
+		int[] ops = new int[TraceEvent.Op.values().length];
+
+		for(TraceEvent event : events)
+		{
+			long now = System.nanoTime();
+			if(speed > 0)
+			{
+				long due = start + (long) (TimeUnit.MILLISECONDS.toNanos(event.timestamp - origin) / speed);
+				while(due - now > 0)
+				{
+					if(nextSample - now <= 0)
+					{
+						nextSample = sample(now);
+					}
+					TimeUnit.NANOSECONDS.sleep(Math.min(due - now, nextSample - now));
+					now = System.nanoTime();
+				}
+			}
+			if(nextSample - now <= 0)
+			{
+				nextSample = sample(now);
+			}
+			users.get(event.user).tell(event, ActorRef.noSender());
+			ops[event.op.ordinal()]++;
+		}
+		long sent = System.nanoTime();
+
+		//wait for the answers still on their way, sampling meanwhile
+		long deadline = sent + TimeUnit.MILLISECONDS.toNanos(drainMillis);
+		ArrayList<ReplayUser.Stats> stats = collect();
+		while(unanswered(stats) > 0 && deadline - System.nanoTime() > 0)
+		{
+			sample(System.nanoTime());
+			Thread.sleep(Math.min(sampleMillis, 100));
+			stats = collect();
+		}
+		long finished = System.nanoTime();
+		sample(finished);
+		Thread.sleep(Math.min(sampleMillis, 100));
+		drainSamples();
+
+		report(events.size(), ops, sent - start, finished - start, stats);
+	}
+
+	/**
+	 * Asks the owner of every resource for its queue depth; the answers are
+	 * picked up by the next sample
+	 * @return					time of the next sample
+	 */
+	private long sample(long now) {
+		drainSamples();
+		for(Map.Entry<String, ActorRef> owner : owners.entrySet())
+		{
+			owner.getValue().tell(new QueueDepthRequestMsg(owner.getKey(), probe), ActorRef.noSender());
+		}
+		return now + TimeUnit.MILLISECONDS.toNanos(sampleMillis);
+	}
+
+	private void drainSamples() {
+		Object reply;
+		while((reply = probeReplies.poll()) != null)
+		{
+			if(reply instanceof QueueDepthResponseMsg)
+			{
+				QueueDepthResponseMsg depth = (QueueDepthResponseMsg) reply;
+				Integer peak = peakDepths.get(depth.getResourceName());
+				if(peak == null || depth.getResourceDepth() > peak)
+				{
+					peakDepths.put(depth.getResourceName(), depth.getResourceDepth());
+				}
+				peakManagerDepth = Math.max(peakManagerDepth, depth.getManagerDepth());
+			}
+		}
+	}
+
+	private ArrayList<ReplayUser.Stats> collect() throws InterruptedException {
+		for(ActorRef user : users.values())
+		{
+			user.tell(ReplayUser.Report.INSTANCE, ActorRef.noSender());
+		}
+		ArrayList<ReplayUser.Stats> stats = new ArrayList<ReplayUser.Stats>();
+		for(int i = 0; i < users.size(); i++)
+		{
+			stats.add(BenchmarkFixture.await(reports, ReplayUser.Stats.class));
+		}
+		return stats;
+	}
+
+	private static long unanswered(List<ReplayUser.Stats> stats) {
+		long total = 0;
+		for(ReplayUser.Stats user : stats)
+		{
+			total += user.unanswered;
+		}
+		return total;
+	}
+
+	private void report(int eventCount, int[] ops, long sendNanos, long totalNanos, List<ReplayUser.Stats> stats) {
+		LogLinearHistogram latency = new LogLinearHistogram();
+		long granted = 0, denied = 0, rejected = 0;
+		for(ReplayUser.Stats user : stats)
+		{
+			latency.add(user.grantLatency);
+			granted += user.granted;
+			denied += user.denied;
+			rejected += user.rejected;
+		}
+
+		System.out.printf("Replayed %d events (%d access, %d release, %d management) for %d users on %d managers%s%n",
+				eventCount, ops[TraceEvent.Op.ACCESS.ordinal()], ops[TraceEvent.Op.RELEASE.ordinal()],
+				ops[TraceEvent.Op.MANAGEMENT.ordinal()], users.size(), managerCount,
+				shards > 0 ? " of " + shards + " shards" : "");
+		System.out.printf("Sent in %.1f ms (%.0f events/s), answered in %.1f ms (%.0f events/s)%n",
+				sendNanos / 1e6, eventCount / (sendNanos / 1e9), totalNanos / 1e6, eventCount / (totalNanos / 1e9));
+		System.out.printf("Access requests: %d granted, %d denied, %d rejected, %d unanswered%n",
+				granted, denied, rejected, unanswered(stats));
+
+		System.out.printf("Grant latency (us): mean %.1f, p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+				latency.mean() / 1e3, latency.percentile(50) / 1e3, latency.percentile(90) / 1e3,
+				latency.percentile(99) / 1e3, latency.percentile(99.9) / 1e3, latency.max() / 1e3);
+		printHistogram(latency);
+
+		System.out.println("Peak queue depths: " + peakManagerDepth + " at one manager");
+		ArrayList<Map.Entry<String, Integer>> deepest = new ArrayList<Map.Entry<String, Integer>>(peakDepths.entrySet());
+		Collections.sort(deepest, new Comparator<Map.Entry<String, Integer>>() {
+			public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b) {
+				return b.getValue().compareTo(a.getValue());
+			}
+		});
+		for(int i = 0; i < Math.min(10, deepest.size()) && deepest.get(i).getValue() > 0; i++)
+		{
+			System.out.printf("  %-30s %d%n", deepest.get(i).getKey(), deepest.get(i).getValue());
+		}
+	}
+
+	/**
+	 * Prints the latency histogram with one row per power of two
+	 */
+	private static void printHistogram(LogLinearHistogram latency) {
+		long[] rows = new long[64];
+		long widest = 0;
+		for(int i = 0; i < LogLinearHistogram.buckets(); i++)
+		{
+			long count = latency.countAt(i);
+			if(count > 0)
+			{
+				int row = 63 - Long.numberOfLeadingZeros(Math.max(1, LogLinearHistogram.lowerBound(i)));
+				rows[row] += count;
+				widest = Math.max(widest, rows[row]);
+			}
+		}
+		for(int row = 0; row < rows.length; row++)
+		{
+			if(rows[row] > 0)
+			{
+				int bar = (int) Math.max(1, rows[row] * 50 / widest);
+				System.out.printf("  %12.1f us  %10d  %s%n", (1L << row) / 1e3, rows[row], new String(new char[bar]).replace('\0', '#'));
+			}
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package cmsc433.p4.actors;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import cmsc433.p4.enums.*;
+import cmsc433.p4.messages.*;
+
+/**
+ * FIFO of blocked access requests for one resource, backed by a circular array
+ * that doubles when full.  The requesting user is taken from the message's
+ * reply-to, so there is no second list to keep in step.  A request can be
+ * cancelled from anywhere in the queue in O(1): it is marked and skipped,
+ * and marked entries are dropped when they reach the head or by a sweep.
+ * Every entry keeps the time it was queued, for the manager's queue time metric.
+ */
+class WaitQueue {
+
+	/**
+	 * Decides, in queue order, which entries a sweep removes.
+	 */
+	interface Filter {
+		/**
+		 * @param msg			Queued request
+		 * @return				true to remove the request from the queue
+		 */
+		boolean take(AccessRequestMsg msg);
+	}
+
+	private static final int INITIAL_CAPACITY = 8;		// Must be a power of two
+
+	private AccessRequestMsg[] entries = new AccessRequestMsg[INITIAL_CAPACITY];
+	private long[] queuedAt = new long[INITIAL_CAPACITY];	// System.nanoTime() each entry was added
+	private long takenQueuedAt = 0;				// Queue time of the entry last polled or offered to a filter
+	private int head = 0;						// Index of the oldest entry
+	private int size = 0;						// Entries in the array, cancelled ones included
+	private int writeRequests = 0;				// Queued requests asking for write access
+	private final IdentityHashMap<AccessRequestMsg, Boolean> cancelled = new IdentityHashMap<AccessRequestMsg, Boolean>();
+
+	/**
+	 * Appends a request to the back of the queue
+	 * @param msg				Blocked request
+	 */
+	void add(AccessRequestMsg msg) {
+		if(size == entries.length)
+		{
+			grow();
+		}
+		int tail = (head + size) & (entries.length - 1);
+		entries[tail] = msg;
+		queuedAt[tail] = System.nanoTime();
+		size++;
+		if(!isRead(msg))
+		{
+			writeRequests++;
+		}
+	}
+
+	/**
+	 * @return  the oldest request, or null if the queue is empty
+	 */
+	AccessRequestMsg peek() {
+		skipCancelled();
+		return size == 0 ? null : entries[head];
+	}
+
+	/**
+	 * Removes the oldest request
+	 * @return  the oldest request, or null if the queue is empty
+	 */
+	AccessRequestMsg poll() {
+		skipCancelled();
+		if(size == 0)
+		{
+			return null;
+		}
+		AccessRequestMsg msg = entries[head];
+		entries[head] = null;
+		takenQueuedAt = queuedAt[head];
+		head = (head + 1) & (entries.length - 1);
+		size--;
+		if(!isRead(msg))
+		{
+			writeRequests--;
+		}
+		return msg;
+	}
+
+	/**
+	 * Offers every queued request to a filter, oldest first, and removes the ones
+	 * it takes.  The remaining requests keep their order.  Runs in one pass.
+	 * While a request is offered, takenQueuedAt() gives the time it was queued.
+	 * @param filter			Decides which requests to remove
+	 * @return					number of requests removed
+	 */
+	int removeMatching(Filter filter) {
+		int mask = entries.length - 1;
+		int kept = 0;
+		int removed = 0;
+		for(int i = 0; i < size; i++)
+		{
+			AccessRequestMsg msg = entries[(head + i) & mask];
+			long since = queuedAt[(head + i) & mask];
+			if(!cancelled.isEmpty() && cancelled.remove(msg) != null)
+			{
+				//already cancelled, drop without offering it
+				continue;
+			}
+			takenQueuedAt = since;
+			if(!filter.take(msg))
+			{
+				entries[(head + kept) & mask] = msg;
+				queuedAt[(head + kept) & mask] = since;
+				kept++;
+			}
+			else
+			{
+				removed++;
+				if(!isRead(msg))
+				{
+					writeRequests--;
+				}
+			}
+		}
+		for(int i = kept; i < size; i++)
+		{
+			entries[(head + i) & mask] = null;
+		}
+		size = kept;
+		return removed;
+	}
+
+	/**
+	 * Takes a queued request out of the queue in O(1).  The request must be in
+	 * the queue and not cancelled already.
+	 * @param msg				Queued request
+	 */
+	void cancel(AccessRequestMsg msg) {
+		cancelled.put(msg, Boolean.TRUE);
+		if(!isRead(msg))
+		{
+			writeRequests--;
+		}
+		if(cancelled.size() > 16 && cancelled.size() > size / 2)
+		{
+			//mostly dead entries, sweep them out; amortized O(1) per cancel
+			removeMatching(new Filter() {
+				public boolean take(AccessRequestMsg queued) {
+					return false;
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return  the queued requests, oldest first, for snapshots
+	 */
+	ArrayList<AccessRequestMsg> toList() {
+		ArrayList<AccessRequestMsg> list = new ArrayList<AccessRequestMsg>(size());
+		for(int i = 0; i < size; i++)
+		{
+			AccessRequestMsg msg = entries[(head + i) & (entries.length - 1)];
+			if(!cancelled.containsKey(msg))
+			{
+				list.add(msg);
+			}
+		}
+		return list;
+	}
+
+	boolean isEmpty() {
+		return size() == 0;
+	}
+
+	int size() {
+		return size - cancelled.size();
+	}
+
+	/**
+	 * @return  number of queued requests asking for write access
+	 */
+	int writeRequests() {
+		return writeRequests;
+	}
+
+	/**
+	 * @return  System.nanoTime() at which the request last returned by poll, or
+	 * 			last offered to a removeMatching filter, was queued
+	 */
+	long takenQueuedAt() {
+		return takenQueuedAt;
+	}
+
+	/**
+	 * @param msg				Access request
+	 * @return					true if the request asks for read access
+	 */
+	static boolean isRead(AccessRequestMsg msg) {
+		AccessRequestType type = msg.getAccessRequest().getType();
+		return type == AccessRequestType.CONCURRENT_READ_BLOCKING || type == AccessRequestType.CONCURRENT_READ_NONBLOCKING;
+	}
+
+	/**
+	 * Drops cancelled entries from the head, so the head is a live request
+	 */
+	private void skipCancelled() {
+		while(size > 0 && !cancelled.isEmpty() && cancelled.remove(entries[head]) != null)
+		{
+			entries[head] = null;
+			head = (head + 1) & (entries.length - 1);
+			size--;
+		}
+	}
+
+	private void grow() {
+		AccessRequestMsg[] larger = new AccessRequestMsg[entries.length << 1];
+		long[] largerQueuedAt = new long[larger.length];
+		for(int i = 0; i < size; i++)
+		{
+			larger[i] = entries[(head + i) & (entries.length - 1)];
+			largerQueuedAt[i] = queuedAt[(head + i) & (entries.length - 1)];
+		}
+		entries = larger;
+		queuedAt = largerQueuedAt;
+		head = 0;
+	}
+}
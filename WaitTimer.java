@@ -0,0 +1,28 @@
+package cmsc433.p4.actors;
+import cmsc433.p4.messages.*;
+
+/**
+ * Deadline of a queued request that may only wait for a limited time.
+ */
+class WaitTimer extends TimerWheel.Timer {
+
+	final ResourceLockState state;
+	final AccessRequestMsg accessMsg;
+	final long queuedAt;				// System.nanoTime() the request was queued
+	final long deadlineMillis;			// System.currentTimeMillis() it gives up, kept by the journal
+
+	/**
+	 * Constructor
+	 *
+	 * @param state				Lock state of the resource the request waits for
+	 * @param accessMsg			Queued request
+	 * @param queuedAt			System.nanoTime() the request was queued
+	 * @param deadlineMillis	System.currentTimeMillis() the request gives up
+	 */
+	WaitTimer(ResourceLockState state, AccessRequestMsg accessMsg, long queuedAt, long deadlineMillis) {
+		this.state = state;
+		this.accessMsg = accessMsg;
+		this.queuedAt = queuedAt;
+		this.deadlineMillis = deadlineMillis;
+	}
+}
@@ -8,11 +8,17 @@ public class WhoHasResourceRequestMsg {
 	//private final ActorRef requestingManager;
 	private final ActorRef requestingUser;
 	//private final AccessRequestType requestType;
+	private final long requestId;				// Echoed in the response to match it to this request
 	
 	public WhoHasResourceRequestMsg (String resource, ActorRef requestingUser) {
+		this(resource, requestingUser, 0);
+	}
+	
+	public WhoHasResourceRequestMsg (String resource, ActorRef requestingUser, long requestId) {
 		this.resource_name = resource;
 		this.requestingUser = requestingUser;
 		//this.requestType = requestType;
+		this.requestId = requestId;
 	}
 	
 	public String getResourceName () {
@@ -23,6 +29,10 @@ public class WhoHasResourceRequestMsg {
 		return requestingUser;
 	}
 	
+	public long getRequestId() {
+		return requestId;
+	}
+	
 	@Override 
 	public String toString () {
 		return "Who has " + resource_name + "?";
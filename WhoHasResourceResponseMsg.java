@@ -6,17 +6,20 @@ public class WhoHasResourceResponseMsg {
 	private final String resource_name;
 	private final boolean result;
 	private final ActorRef requestingUser;
+	private final long requestId;
 	
 	public WhoHasResourceResponseMsg (String resource_name, boolean result, ActorRef requestingUser) {
 		this.resource_name = resource_name;
 		this.result = result;
 		this.requestingUser = requestingUser;
+		this.requestId = 0;
 	}
 	
 	public WhoHasResourceResponseMsg (WhoHasResourceRequestMsg request, boolean result, ActorRef sender) {
 		this.resource_name = request.getResourceName();
 		this.result = result;
 		this.requestingUser = request.getRequestingUser();
+		this.requestId = request.getRequestId();
 	}
 	
 	public String getResourceName () {
@@ -31,6 +34,10 @@ public class WhoHasResourceResponseMsg {
 		return requestingUser;
 	}
 	
+	public long getRequestId() {
+		return requestId;
+	}
+	
 	@Override public String toString () {
 		return "I" + (result ? " have " : " do not have ") + resource_name;
 	}
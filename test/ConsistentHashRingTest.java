@@ -0,0 +1,97 @@
+package cmsc433.p4.actors;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+
+public class ConsistentHashRingTest {
+
+	private ActorSystem system;
+	private ArrayList<ActorRef> managers;
+
+	@Before
+	public void setUp() {
+		system = ActorSystem.create("ConsistentHashRingTest");
+		managers = new ArrayList<ActorRef>();
+		for(int i = 0; i < 4; i++)
+		{
+			managers.add(new TestKit(system).getRef());
+		}
+	}
+
+	@After
+	public void tearDown() {
+		TestKit.shutdownActorSystem(system);
+	}
+
+	@Test
+	public void emptyRingHasNoHome() {
+		ConsistentHashRing ring = new ConsistentHashRing(Collections.<ActorRef>emptyList(), 16);
+		assertNull(ring.home("r"));
+	}
+
+	@Test
+	public void everyMemberOrderAgreesOnHomes() {
+		ConsistentHashRing ring = new ConsistentHashRing(managers, 16);
+		ArrayList<ActorRef> reversed = new ArrayList<ActorRef>(managers);
+		Collections.reverse(reversed);
+		reversed.add(managers.get(0));
+		ConsistentHashRing other = new ConsistentHashRing(reversed, 16);
+		for(int i = 0; i < 1000; i++)
+		{
+			String name = "resource-" + i;
+			assertTrue(managers.contains(ring.home(name)));
+			assertSame(ring.home(name), other.home(name));
+		}
+	}
+
+	@Test
+	public void everyMemberGetsSomeNames() {
+		ConsistentHashRing ring = new ConsistentHashRing(managers, 64);
+		HashMap<ActorRef, Integer> counts = new HashMap<ActorRef, Integer>();
+		for(int i = 0; i < 4000; i++)
+		{
+			ActorRef home = ring.home("resource-" + i);
+			counts.put(home, counts.containsKey(home) ? counts.get(home) + 1 : 1);
+		}
+		for(ActorRef manager : managers)
+		{
+			assertTrue(counts.containsKey(manager));
+			assertTrue(counts.get(manager) > 4000 / managers.size() / 4);
+		}
+	}
+
+	@Test
+	public void removingMemberOnlyMovesItsNames() {
+		ConsistentHashRing ring = new ConsistentHashRing(managers, 16);
+		ArrayList<ActorRef> remaining = new ArrayList<ActorRef>(managers);
+		ActorRef removed = remaining.remove(2);
+		ConsistentHashRing smaller = new ConsistentHashRing(remaining, 16);
+		for(int i = 0; i < 1000; i++)
+		{
+			String name = "resource-" + i;
+			ActorRef before = ring.home(name);
+			ActorRef after = smaller.home(name);
+			if(before != removed)
+			{
+				assertSame(before, after);
+			}
+			else
+			{
+				assertNotSame(removed, after);
+			}
+		}
+	}
+
+	@Test
+	public void hashIsStable() {
+		assertEquals(ConsistentHashRing.hash("resource-1"), ConsistentHashRing.hash(new String("resource-1")));
+		assertFalse(ConsistentHashRing.hash("resource-1") == ConsistentHashRing.hash("resource-2"));
+	}
+}
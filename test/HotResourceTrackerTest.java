@@ -0,0 +1,67 @@
+package cmsc433.p4.actors;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import org.junit.Test;
+
+public class HotResourceTrackerTest {
+
+	@Test
+	public void mostContendedNamesComeFirst() {
+		HotResourceTracker tracker = new HotResourceTracker(3, 1024);
+		for(int i = 0; i < 200; i++)
+		{
+			String name = "r" + (i % 20);
+			tracker.requested(name);
+			tracker.contended(name);
+		}
+		for(int i = 0; i < 50; i++)
+		{
+			tracker.requested("hot");
+			tracker.contended("hot");
+			tracker.contended("warm");
+			if(i % 2 == 0)
+			{
+				tracker.contended("warm");
+			}
+		}
+
+		ArrayList<HotResourceTracker.Estimate> top = tracker.top();
+		assertEquals(3, top.size());
+		assertEquals("warm", top.get(0).resourceName);
+		assertEquals("hot", top.get(1).resourceName);
+		assertTrue(top.get(1).contended >= 50);
+		assertTrue(top.get(1).requests >= 50);
+		assertTrue(top.get(0).contended >= top.get(1).contended);
+		assertTrue(top.get(1).contended >= top.get(2).contended);
+	}
+
+	@Test
+	public void estimatesNeverUndercount() {
+		HotResourceTracker tracker = new HotResourceTracker(64, 16);
+		for(int i = 0; i < 64; i++)
+		{
+			String name = "resource-" + i;
+			for(int j = 0; j <= i; j++)
+			{
+				tracker.requested(name);
+				tracker.contended(name);
+				tracker.waited(name, 100);
+			}
+		}
+		for(HotResourceTracker.Estimate estimate : tracker.top())
+		{
+			long actual = Long.parseLong(estimate.resourceName.substring("resource-".length())) + 1;
+			assertTrue(estimate.requests >= actual);
+			assertTrue(estimate.contended >= actual);
+			assertTrue(estimate.waits >= actual);
+			assertTrue(estimate.waitNanos >= 100 * actual);
+		}
+	}
+
+	@Test
+	public void emptyTopListWhenNothingIsKept() {
+		HotResourceTracker tracker = new HotResourceTracker(0, 64);
+		tracker.contended("r");
+		assertTrue(tracker.top().isEmpty());
+	}
+}
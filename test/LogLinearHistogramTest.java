@@ -0,0 +1,80 @@
+package cmsc433.p4.actors;
+import static org.junit.Assert.*;
+import java.util.Random;
+import org.junit.Test;
+
+public class LogLinearHistogramTest {
+
+	@Test
+	public void bucketsCoverEveryValueWithoutGaps() {
+		assertEquals(0, LogLinearHistogram.lowerBound(0));
+		for(int i = 1; i < LogLinearHistogram.buckets(); i++)
+		{
+			assertEquals(LogLinearHistogram.upperBound(i - 1) + 1, LogLinearHistogram.lowerBound(i));
+		}
+		assertEquals(Long.MAX_VALUE, LogLinearHistogram.upperBound(LogLinearHistogram.buckets() - 1));
+	}
+
+	@Test
+	public void valuesLandInTheBucketThatBoundsThem() {
+		Random random = new Random(433);
+		for(int i = 0; i < 100000; i++)
+		{
+			long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+			int bucket = LogLinearHistogram.index(value);
+			assertTrue(LogLinearHistogram.lowerBound(bucket) <= value);
+			assertTrue(LogLinearHistogram.upperBound(bucket) >= value);
+		}
+		assertEquals(LogLinearHistogram.buckets() - 1, LogLinearHistogram.index(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void percentilesAreWithinOneSixteenth() {
+		LogLinearHistogram histogram = new LogLinearHistogram();
+		for(long value = 1; value <= 100000; value++)
+		{
+			histogram.record(value);
+		}
+		assertEquals(100000, histogram.count());
+		assertEquals(100000, histogram.max());
+		assertEquals(50000.5, histogram.mean(), 0.001);
+		long[] expected = { 50000, 90000, 99000 };
+		double[] percents = { 50, 90, 99 };
+		for(int i = 0; i < percents.length; i++)
+		{
+			long percentile = histogram.percentile(percents[i]);
+			assertTrue(percentile >= expected[i]);
+			assertTrue(percentile <= expected[i] + expected[i] / 16);
+		}
+		assertEquals(100000, histogram.percentile(100));
+	}
+
+	@Test
+	public void negativeValuesCountAsZero() {
+		LogLinearHistogram histogram = new LogLinearHistogram();
+		histogram.record(-5);
+		assertEquals(1, histogram.countAt(0));
+		assertEquals(0, histogram.max());
+		assertEquals(0, histogram.percentile(50));
+	}
+
+	@Test
+	public void copyIsIndependentAndAddMerges() {
+		LogLinearHistogram first = new LogLinearHistogram();
+		first.record(10);
+		first.record(1000);
+		LogLinearHistogram copy = first.copy();
+		first.reset();
+		assertEquals(0, first.count());
+		assertEquals(2, copy.count());
+		assertEquals(1000, copy.max());
+
+		LogLinearHistogram second = new LogLinearHistogram();
+		second.record(5000);
+		copy.add(second);
+		assertEquals(3, copy.count());
+		assertEquals(5000, copy.max());
+		assertEquals(6010 / 3.0, copy.mean(), 0.001);
+		assertEquals(1, copy.countAt(LogLinearHistogram.index(5000)));
+	}
+}
@@ -0,0 +1,373 @@
+package cmsc433.p4.actors;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import cmsc433.p4.enums.*;
+import cmsc433.p4.messages.*;
+import cmsc433.p4.util.*;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.InvalidActorNameException;
+import akka.testkit.javadsl.TestKit;
+
+/**
+ * Drives managers through their messages and checks what users are told.
+ * Users and administrators are test probes.
+ */
+public class ResourceManagerActorTest {
+
+	private static final Duration QUIET = Duration.ofMillis(200);	// How long "no answer" is waited for
+
+	private ActorSystem system;
+	private ActorRef logger;
+	private TestKit setup;								// Receives the initialization replies
+	private File journalDirectory;
+
+	@Before
+	public void setUp() {
+		system = ActorSystem.create("ResourceManagerActorTest");
+		logger = new TestKit(system).getRef();
+		setup = new TestKit(system);
+	}
+
+	@After
+	public void tearDown() {
+		TestKit.shutdownActorSystem(system);
+		if(journalDirectory != null)
+		{
+			delete(journalDirectory);
+		}
+	}
+
+	@Test
+	public void blockedWritersAreGrantedInArrivalOrder() {
+		ActorRef manager = manager(ResourceManagerSettings.defaults(), "r");
+		TestKit holder = new TestKit(system);
+		TestKit first = new TestKit(system);
+		TestKit second = new TestKit(system);
+		TestKit third = new TestKit(system);
+
+		request(manager, holder, "r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		holder.expectMsgClass(AccessRequestGrantedMsg.class);
+		request(manager, first, "r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		request(manager, second, "r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		request(manager, third, "r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		assertEquals(3, depth(manager, "r"));
+
+		release(manager, holder, "r", AccessType.EXCLUSIVE_WRITE);
+		first.expectMsgClass(AccessRequestGrantedMsg.class);
+		second.expectNoMessage(QUIET);
+		release(manager, first, "r", AccessType.EXCLUSIVE_WRITE);
+		second.expectMsgClass(AccessRequestGrantedMsg.class);
+		third.expectNoMessage(QUIET);
+		release(manager, second, "r", AccessType.EXCLUSIVE_WRITE);
+		third.expectMsgClass(AccessRequestGrantedMsg.class);
+		assertEquals(0, depth(manager, "r"));
+	}
+
+	@Test
+	public void queuedReadersAreGrantedTogetherWhenWriterLeaves() {
+		ActorRef manager = manager(ResourceManagerSettings.defaults(), "r");
+		TestKit writer = new TestKit(system);
+		TestKit firstReader = new TestKit(system);
+		TestKit secondReader = new TestKit(system);
+
+		request(manager, writer, "r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		writer.expectMsgClass(AccessRequestGrantedMsg.class);
+		request(manager, firstReader, "r", AccessRequestType.CONCURRENT_READ_BLOCKING);
+		request(manager, secondReader, "r", AccessRequestType.CONCURRENT_READ_BLOCKING);
+		firstReader.expectNoMessage(QUIET);
+
+		release(manager, writer, "r", AccessType.EXCLUSIVE_WRITE);
+		firstReader.expectMsgClass(AccessRequestGrantedMsg.class);
+		secondReader.expectMsgClass(AccessRequestGrantedMsg.class);
+	}
+
+	@Test
+	public void nonblockingRequestForHeldResourceIsDeniedBusy() {
+		ActorRef manager = manager(ResourceManagerSettings.defaults(), "r");
+		TestKit holder = new TestKit(system);
+		TestKit other = new TestKit(system);
+
+		request(manager, holder, "r", AccessRequestType.CONCURRENT_READ_NONBLOCKING);
+		holder.expectMsgClass(AccessRequestGrantedMsg.class);
+		request(manager, other, "r", AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+		assertEquals(AccessRequestDenialReason.RESOURCE_BUSY, other.expectMsgClass(AccessRequestDeniedMsg.class).getReason());
+		request(manager, other, "r", AccessRequestType.CONCURRENT_READ_NONBLOCKING);
+		other.expectMsgClass(AccessRequestGrantedMsg.class);
+	}
+
+	@Test
+	public void disableDeniesWaitersAndWaitsForHolders() {
+		ActorRef manager = manager(ResourceManagerSettings.defaults(), "r");
+		TestKit holder = new TestKit(system);
+		TestKit waiter = new TestKit(system);
+		TestKit admin = new TestKit(system);
+
+		request(manager, holder, "r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		holder.expectMsgClass(AccessRequestGrantedMsg.class);
+		request(manager, waiter, "r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		manage(manager, admin, "r", ManagementRequestType.DISABLE);
+
+		assertEquals(AccessRequestDenialReason.RESOURCE_DISABLED, waiter.expectMsgClass(AccessRequestDeniedMsg.class).getReason());
+		admin.expectNoMessage(QUIET);
+		request(manager, waiter, "r", AccessRequestType.CONCURRENT_READ_BLOCKING);
+		assertEquals(AccessRequestDenialReason.RESOURCE_DISABLED, waiter.expectMsgClass(AccessRequestDeniedMsg.class).getReason());
+
+		release(manager, holder, "r", AccessType.EXCLUSIVE_WRITE);
+		admin.expectMsgClass(ManagementRequestGrantedMsg.class);
+		request(manager, holder, "r", AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+		assertEquals(AccessRequestDenialReason.RESOURCE_DISABLED, holder.expectMsgClass(AccessRequestDeniedMsg.class).getReason());
+
+		manage(manager, admin, "r", ManagementRequestType.ENABLE);
+		admin.expectMsgClass(ManagementRequestGrantedMsg.class);
+		request(manager, holder, "r", AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+		holder.expectMsgClass(AccessRequestGrantedMsg.class);
+	}
+
+	@Test
+	public void holderCannotDisable() {
+		ActorRef manager = manager(ResourceManagerSettings.defaults(), "r");
+		TestKit holder = new TestKit(system);
+
+		request(manager, holder, "r", AccessRequestType.CONCURRENT_READ_BLOCKING);
+		holder.expectMsgClass(AccessRequestGrantedMsg.class);
+		manage(manager, holder, "r", ManagementRequestType.DISABLE);
+		assertEquals(ManagementRequestDenialReason.ACCESS_HELD_BY_USER, holder.expectMsgClass(ManagementRequestDeniedMsg.class).getReason());
+	}
+
+	@Test
+	public void failedAtomicRequestGivesBackWhatItAcquired() {
+		ActorRef manager = manager(ResourceManagerSettings.defaults(), "a", "b");
+		TestKit user = new TestKit(system);
+		TestKit other = new TestKit(system);
+		TestKit admin = new TestKit(system);
+
+		manage(manager, admin, "b", ManagementRequestType.DISABLE);
+		admin.expectMsgClass(ManagementRequestGrantedMsg.class);
+
+		//"a" comes first in the canonical order, so it is held when "b" fails
+		AtomicAccessRequestMsg atomic = new AtomicAccessRequestMsg(Arrays.asList(
+				new AccessRequest("b", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING),
+				new AccessRequest("a", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING)), user.getRef());
+		manager.tell(atomic, ActorRef.noSender());
+		AtomicAccessDeniedMsg denied = user.expectMsgClass(AtomicAccessDeniedMsg.class);
+		assertEquals("b", denied.getFailedRequest().getResourceName());
+		assertEquals(AccessRequestDenialReason.RESOURCE_DISABLED, denied.getReason());
+
+		request(manager, other, "a", AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+		other.expectMsgClass(AccessRequestGrantedMsg.class);
+	}
+
+	@Test
+	public void atomicRequestHoldsEveryResource() {
+		ActorRef manager = manager(ResourceManagerSettings.defaults(), "a", "b");
+		TestKit user = new TestKit(system);
+		TestKit other = new TestKit(system);
+
+		AtomicAccessRequestMsg atomic = new AtomicAccessRequestMsg(Arrays.asList(
+				new AccessRequest("a", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING),
+				new AccessRequest("b", AccessRequestType.CONCURRENT_READ_BLOCKING)), user.getRef());
+		manager.tell(atomic, ActorRef.noSender());
+		user.expectMsgClass(AtomicAccessGrantedMsg.class);
+
+		request(manager, other, "a", AccessRequestType.CONCURRENT_READ_NONBLOCKING);
+		assertEquals(AccessRequestDenialReason.RESOURCE_BUSY, other.expectMsgClass(AccessRequestDeniedMsg.class).getReason());
+		request(manager, other, "b", AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+		assertEquals(AccessRequestDenialReason.RESOURCE_BUSY, other.expectMsgClass(AccessRequestDeniedMsg.class).getReason());
+	}
+
+	@Test
+	public void journalRestoresHoldersAndWaitersAfterRestart() throws IOException {
+		journalDirectory = Files.createTempDirectory("journal").toFile();
+		ResourceManagerSettings settings = ResourceManagerSettings.defaults().withJournal(journalDirectory.getPath(), 1000);
+		TestKit holder = new TestKit(system);
+		TestKit waiter = new TestKit(system);
+		TestKit other = new TestKit(system);
+
+		ActorRef manager = namedManager(settings, "journaled", "r");
+		request(manager, holder, "r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		holder.expectMsgClass(AccessRequestGrantedMsg.class);
+		request(manager, waiter, "r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		assertEquals(1, depth(manager, "r"));
+		stop(manager);
+
+		//a fresh manager under the same name replays the journal
+		manager = namedManager(settings, "journaled", "r");
+		assertEquals(1, depth(manager, "r"));
+		request(manager, other, "r", AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+		assertEquals(AccessRequestDenialReason.RESOURCE_BUSY, other.expectMsgClass(AccessRequestDeniedMsg.class).getReason());
+
+		release(manager, holder, "r", AccessType.EXCLUSIVE_WRITE);
+		waiter.expectMsgClass(AccessRequestGrantedMsg.class);
+		assertEquals(0, depth(manager, "r"));
+	}
+
+	@Test
+	public void journalRestoresDisabledResource() throws IOException {
+		journalDirectory = Files.createTempDirectory("journal").toFile();
+		ResourceManagerSettings settings = ResourceManagerSettings.defaults().withJournal(journalDirectory.getPath(), 1);
+		TestKit admin = new TestKit(system);
+		TestKit user = new TestKit(system);
+
+		ActorRef manager = namedManager(settings, "journaled", "r");
+		manage(manager, admin, "r", ManagementRequestType.DISABLE);
+		admin.expectMsgClass(ManagementRequestGrantedMsg.class);
+		stop(manager);
+
+		manager = namedManager(settings, "journaled", "r");
+		request(manager, user, "r", AccessRequestType.CONCURRENT_READ_NONBLOCKING);
+		assertEquals(AccessRequestDenialReason.RESOURCE_DISABLED, user.expectMsgClass(AccessRequestDeniedMsg.class).getReason());
+	}
+
+	@Test
+	public void expiredLeaseHandsResourceToNextWaiter() {
+		ActorRef manager = manager(ResourceManagerSettings.defaults().withLeases(300).withTimerTick(10), "r");
+		TestKit holder = new TestKit(system);
+		TestKit waiter = new TestKit(system);
+
+		request(manager, holder, "r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		holder.expectMsgClass(AccessRequestGrantedMsg.class);
+		request(manager, waiter, "r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		waiter.expectNoMessage(Duration.ofMillis(100));
+
+		assertEquals("r", holder.expectMsgClass(Duration.ofSeconds(3), LeaseExpiredMsg.class).getResourceName());
+		waiter.expectMsgClass(Duration.ofSeconds(3), AccessRequestGrantedMsg.class);
+
+		//the expired holder's late release changes nothing
+		release(manager, holder, "r", AccessType.EXCLUSIVE_WRITE);
+		request(manager, holder, "r", AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+		assertEquals(AccessRequestDenialReason.RESOURCE_BUSY, holder.expectMsgClass(AccessRequestDeniedMsg.class).getReason());
+	}
+
+	@Test
+	public void migratedResourceKeepsItsWaiters() {
+		ActorRef source = ResourceManagerActor.makeResourceManager(logger, system, ResourceManagerSettings.defaults());
+		ActorRef target = ResourceManagerActor.makeResourceManager(logger, system, ResourceManagerSettings.defaults());
+		initialize(source, Collections.singletonList(target), "r");
+		initialize(target, Collections.singletonList(source));
+		TestKit holder = new TestKit(system);
+		TestKit waiter = new TestKit(system);
+		TestKit admin = new TestKit(system);
+
+		request(source, holder, "r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		holder.expectMsgClass(AccessRequestGrantedMsg.class);
+		request(source, waiter, "r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		source.tell(new MigrateResourceMsg("r", target, admin.getRef()), ActorRef.noSender());
+		assertEquals(target, admin.expectMsgClass(ResourceMovedMsg.class).getOwner());
+		assertEquals(1, depth(target, "r"));
+
+		//the old owner passes the release on to the new one
+		release(source, holder, "r", AccessType.EXCLUSIVE_WRITE);
+		waiter.expectMsgClass(AccessRequestGrantedMsg.class);
+		request(target, holder, "r", AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+		assertEquals(AccessRequestDenialReason.RESOURCE_BUSY, holder.expectMsgClass(AccessRequestDeniedMsg.class).getReason());
+	}
+
+	/**
+	 * Creates a manager with no peers, owning the given resources
+	 */
+	private ActorRef manager(ResourceManagerSettings settings, String... resourceNames) {
+		ActorRef manager = ResourceManagerActor.makeResourceManager(logger, system, settings);
+		initialize(manager, Collections.<ActorRef>emptyList(), resourceNames);
+		return manager;
+	}
+
+	/**
+	 * Creates a manager under a fixed name, so its journal directory is the
+	 * same each time.  A name is free again once the old actor's parent has
+	 * seen it stop, which may be just after the watcher has.
+	 */
+	private ActorRef namedManager(ResourceManagerSettings settings, String name, String... resourceNames) {
+		ActorRef manager = null;
+		for(int attempt = 0; manager == null; attempt++)
+		{
+			try
+			{
+				manager = system.actorOf(ResourceManagerActor.props(logger, settings), name);
+			}
+			catch(InvalidActorNameException e)
+			{
+				if(attempt == 50)
+				{
+					throw e;
+				}
+				sleep(20);
+			}
+		}
+		initialize(manager, Collections.<ActorRef>emptyList(), resourceNames);
+		return manager;
+	}
+
+	private void initialize(ActorRef manager, List<ActorRef> peers, String... resourceNames) {
+		manager.tell(new AddRemoteManagersRequestMsg(peers, setup.getRef()), setup.getRef());
+		setup.expectMsgClass(AddRemoteManagersResponseMsg.class);
+		manager.tell(new AddLocalUsersRequestMsg(Collections.<ActorRef>emptyList(), setup.getRef()), setup.getRef());
+		setup.expectMsgClass(AddLocalUsersResponseMsg.class);
+		ArrayList<Resource> resources = new ArrayList<Resource>();
+		for(String name : resourceNames)
+		{
+			resources.add(new Resource(name));
+		}
+		manager.tell(new AddInitialLocalResourcesRequestMsg(resources, setup.getRef()), setup.getRef());
+		setup.expectMsgClass(AddInitialLocalResourcesResponseMsg.class);
+	}
+
+	private void stop(ActorRef manager) {
+		setup.watch(manager);
+		system.stop(manager);
+		setup.expectTerminated(manager);
+	}
+
+	/**
+	 * @return  requests queued for the resource, once the manager has handled everything sent before
+	 */
+	private int depth(ActorRef manager, String resourceName) {
+		manager.tell(new QueueDepthRequestMsg(resourceName, setup.getRef()), ActorRef.noSender());
+		return setup.expectMsgClass(QueueDepthResponseMsg.class).getResourceDepth();
+	}
+
+	private static void request(ActorRef manager, TestKit user, String resourceName, AccessRequestType type) {
+		manager.tell(new AccessRequestMsg(new AccessRequest(resourceName, type), user.getRef()), ActorRef.noSender());
+	}
+
+	private static void release(ActorRef manager, TestKit user, String resourceName, AccessType type) {
+		manager.tell(new AccessReleaseMsg(new AccessRelease(resourceName, type), user.getRef()), ActorRef.noSender());
+	}
+
+	private static void manage(ActorRef manager, TestKit user, String resourceName, ManagementRequestType type) {
+		manager.tell(new ManagementRequestMsg(new ManagementRequest(resourceName, type), user.getRef()), ActorRef.noSender());
+	}
+
+	private static void sleep(long millis) {
+		try
+		{
+			Thread.sleep(millis);
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null)
+		{
+			for(File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,124 @@
+package cmsc433.p4.actors;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+	private static final long TICK = 1000;
+
+	/**
+	 * Collects fired timers, in firing order.
+	 */
+	private static final class Fired implements TimerWheel.Expiry {
+		final ArrayList<TimerWheel.Timer> timers = new ArrayList<TimerWheel.Timer>();
+
+		public void expired(TimerWheel.Timer timer) {
+			timers.add(timer);
+		}
+	}
+
+	@Test
+	public void firesNoEarlierThanDeadlineAndAtMostOneTickLate() {
+		TimerWheel wheel = new TimerWheel(8, TICK, 0);
+		TimerWheel.Timer timer = new TimerWheel.Timer();
+		wheel.schedule(timer, 2500, 0);
+		assertTrue(timer.isScheduled());
+		assertEquals(2500, timer.deadline());
+
+		Fired fired = new Fired();
+		wheel.advance(2499, fired);
+		assertTrue(fired.timers.isEmpty());
+		wheel.advance(2500 + TICK, fired);
+		assertEquals(1, fired.timers.size());
+		assertSame(timer, fired.timers.get(0));
+		assertFalse(timer.isScheduled());
+		assertTrue(wheel.isEmpty());
+	}
+
+	@Test
+	public void cancelledTimerNeverFires() {
+		TimerWheel wheel = new TimerWheel(8, TICK, 0);
+		TimerWheel.Timer kept = new TimerWheel.Timer();
+		TimerWheel.Timer cancelled = new TimerWheel.Timer();
+		wheel.schedule(kept, 3000, 0);
+		wheel.schedule(cancelled, 3000, 0);
+		wheel.cancel(cancelled);
+		wheel.cancel(cancelled);
+		assertEquals(1, wheel.size());
+
+		Fired fired = new Fired();
+		wheel.advance(10 * TICK, fired);
+		assertEquals(1, fired.timers.size());
+		assertSame(kept, fired.timers.get(0));
+	}
+
+	@Test
+	public void reschedulingReplacesDeadline() {
+		TimerWheel wheel = new TimerWheel(8, TICK, 0);
+		TimerWheel.Timer timer = new TimerWheel.Timer();
+		wheel.schedule(timer, 2 * TICK, 0);
+		wheel.schedule(timer, 5 * TICK, 0);
+		assertEquals(1, wheel.size());
+
+		Fired fired = new Fired();
+		wheel.advance(4 * TICK, fired);
+		assertTrue(fired.timers.isEmpty());
+		wheel.advance(6 * TICK, fired);
+		assertEquals(1, fired.timers.size());
+	}
+
+	@Test
+	public void delaysLongerThanOneTurnWaitForTheirRound() {
+		TimerWheel wheel = new TimerWheel(8, TICK, 0);
+		TimerWheel.Timer near = new TimerWheel.Timer();
+		TimerWheel.Timer far = new TimerWheel.Timer();
+		//same slot, two turns apart
+		wheel.schedule(near, 3 * TICK, 0);
+		wheel.schedule(far, 19 * TICK, 0);
+
+		Fired fired = new Fired();
+		wheel.advance(3 * TICK, fired);
+		assertEquals(1, fired.timers.size());
+		assertSame(near, fired.timers.get(0));
+		wheel.advance(18 * TICK, fired);
+		assertEquals(1, fired.timers.size());
+		wheel.advance(19 * TICK, fired);
+		assertEquals(2, fired.timers.size());
+		assertSame(far, fired.timers.get(1));
+	}
+
+	@Test
+	public void schedulingAfterIdlePeriodCountsFromNow() {
+		TimerWheel wheel = new TimerWheel(8, TICK, 0);
+		long idle = 1000000 * TICK;
+		TimerWheel.Timer timer = new TimerWheel.Timer();
+		wheel.schedule(timer, 2 * TICK, idle);
+
+		Fired fired = new Fired();
+		wheel.advance(idle + TICK, fired);
+		assertTrue(fired.timers.isEmpty());
+		wheel.advance(idle + 3 * TICK, fired);
+		assertEquals(1, fired.timers.size());
+	}
+
+	@Test
+	public void expiryMayScheduleAgain() {
+		final TimerWheel wheel = new TimerWheel(8, TICK, 0);
+		final TimerWheel.Timer timer = new TimerWheel.Timer();
+		wheel.schedule(timer, TICK, 0);
+		final int[] fired = new int[1];
+		TimerWheel.Expiry repeat = new TimerWheel.Expiry() {
+			public void expired(TimerWheel.Timer expired) {
+				fired[0]++;
+				wheel.schedule(expired, TICK, fired[0] * TICK);
+			}
+		};
+		for(int i = 1; i <= 5; i++)
+		{
+			wheel.advance(i * TICK, repeat);
+		}
+		assertEquals(5, fired[0]);
+		assertTrue(timer.isScheduled());
+	}
+}
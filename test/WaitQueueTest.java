@@ -0,0 +1,126 @@
+package cmsc433.p4.actors;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import org.junit.Test;
+import cmsc433.p4.enums.*;
+import cmsc433.p4.messages.*;
+import cmsc433.p4.util.*;
+
+public class WaitQueueTest {
+
+	private static AccessRequestMsg request(String resourceName, AccessRequestType type) {
+		return new AccessRequestMsg(new AccessRequest(resourceName, type), null);
+	}
+
+	@Test
+	public void pollsInArrivalOrderPastInitialCapacity() {
+		WaitQueue queue = new WaitQueue();
+		ArrayList<AccessRequestMsg> added = new ArrayList<AccessRequestMsg>();
+		for(int i = 0; i < 20; i++)
+		{
+			//wrap the ring first, so growing has to unwrap it
+			if(i == 4)
+			{
+				queue.poll();
+				queue.poll();
+				added.remove(0);
+				added.remove(0);
+			}
+			AccessRequestMsg msg = request("r" + i, AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+			queue.add(msg);
+			added.add(msg);
+		}
+		assertEquals(added.size(), queue.size());
+		assertEquals(added, queue.toList());
+		for(AccessRequestMsg msg : added)
+		{
+			assertSame(msg, queue.peek());
+			assertSame(msg, queue.poll());
+		}
+		assertTrue(queue.isEmpty());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void cancelledRequestsAreSkipped() {
+		WaitQueue queue = new WaitQueue();
+		AccessRequestMsg first = request("r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		AccessRequestMsg second = request("r", AccessRequestType.CONCURRENT_READ_BLOCKING);
+		AccessRequestMsg third = request("r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		queue.add(first);
+		queue.add(second);
+		queue.add(third);
+
+		queue.cancel(first);
+		queue.cancel(third);
+		assertEquals(1, queue.size());
+		assertEquals(0, queue.writeRequests());
+		assertSame(second, queue.peek());
+		assertSame(second, queue.poll());
+		assertNull(queue.poll());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void removeMatchingKeepsOrderOfTheRest() {
+		WaitQueue queue = new WaitQueue();
+		ArrayList<AccessRequestMsg> kept = new ArrayList<AccessRequestMsg>();
+		AccessRequestMsg cancelled = null;
+		for(int i = 0; i < 10; i++)
+		{
+			AccessRequestMsg msg = request("r", (i % 2 == 0) ? AccessRequestType.CONCURRENT_READ_BLOCKING : AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+			queue.add(msg);
+			if(i == 3)
+			{
+				cancelled = msg;
+			}
+			else if(i % 2 == 1)
+			{
+				kept.add(msg);
+			}
+		}
+		queue.cancel(cancelled);
+
+		final ArrayList<AccessRequestMsg> offered = new ArrayList<AccessRequestMsg>();
+		int removed = queue.removeMatching(new WaitQueue.Filter() {
+			public boolean take(AccessRequestMsg msg) {
+				offered.add(msg);
+				return WaitQueue.isRead(msg);
+			}
+		});
+		assertEquals(5, removed);
+		assertEquals(9, offered.size());
+		assertFalse(offered.contains(cancelled));
+		assertEquals(kept, queue.toList());
+		assertEquals(kept.size(), queue.writeRequests());
+		for(AccessRequestMsg msg : kept)
+		{
+			assertSame(msg, queue.poll());
+		}
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void countsWriteRequests() {
+		WaitQueue queue = new WaitQueue();
+		queue.add(request("r", AccessRequestType.CONCURRENT_READ_NONBLOCKING));
+		queue.add(request("r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING));
+		queue.add(request("r", AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING));
+		assertEquals(2, queue.writeRequests());
+		queue.poll();
+		assertEquals(2, queue.writeRequests());
+		queue.poll();
+		assertEquals(1, queue.writeRequests());
+	}
+
+	@Test
+	public void remembersWhenPolledRequestWasQueued() {
+		WaitQueue queue = new WaitQueue();
+		long before = System.nanoTime();
+		queue.add(request("r", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING));
+		long after = System.nanoTime();
+		queue.poll();
+		assertTrue(queue.takenQueuedAt() >= before);
+		assertTrue(queue.takenQueuedAt() <= after);
+	}
+}